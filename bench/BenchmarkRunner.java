@@ -0,0 +1,282 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * A small microbenchmark harness in the style of JMH.  Each benchmark runs a
+ * number of untimed warmup iterations and then timed measurement iterations
+ * of a fixed length, calling {@link Microbenchmark#op} in a loop.  The score
+ * is the average time per operation, with a 99.9% confidence interval over
+ * the measurement iterations.
+ * <p>
+ * The operations are timed in batches, so the clock is read once per batch
+ * rather than once per operation, which would cost as much as the fastest
+ * operations themselves.  Each benchmark's batch size is calibrated before it
+ * is measured, so that a batch takes at least {@link #MIN_BATCH_NANOS}.
+ * <p>
+ * Results can be written as JSON laid out the same way as JMH's
+ * <tt>-rf json</tt> output (one object per benchmark, with <tt>benchmark</tt>,
+ * <tt>mode</tt>, <tt>params</tt> and a <tt>primaryMetric</tt> holding
+ * <tt>score</tt>, <tt>scoreError</tt>, <tt>scoreUnit</tt> and
+ * <tt>rawData</tt>), so that existing tools for comparing JMH runs can
+ * track regressions between releases.
+ * <p>
+ * The iteration counts and length can be changed with the system properties
+ * <tt>bench.warmups</tt>, <tt>bench.iterations</tt> and <tt>bench.millis</tt>.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Two-sided Student's t values for 99.9% confidence, indexed by degrees
+     * of freedom (1-10).  Larger samples use the normal value.
+     */
+    private static final double[] T_999 = {
+	Double.NaN, 636.62, 31.599, 12.924, 8.610, 6.869,
+	5.959, 5.408, 5.041, 4.781, 4.587
+    };
+
+    /** Shortest time a batch of operations may take, in nanoseconds */
+    static final long MIN_BATCH_NANOS = 20 * 1000;
+
+    /** Largest number of operations in a batch */
+    private static final int MAX_BATCH = 1 << 24;
+
+    /** Number of untimed iterations before measuring */
+    private final int _warmups = Integer.getInteger("bench.warmups", 3);
+
+    /** Number of timed iterations */
+    private final int _iterations = Integer.getInteger("bench.iterations", 5);
+
+    /** Length of each iteration, in nanoseconds */
+    private final long _iterationNanos =
+	Long.getLong("bench.millis", 500) * 1000000;
+
+    /** Results of every benchmark run so far */
+    private final List<Result> _results = new ArrayList<Result>();
+
+    /** Keeps the results of {@link Microbenchmark#op} reachable */
+    private volatile int _sink;
+
+    /**
+     * Object the results are compared with, which no result is.  The JIT
+     * can't know that, so it has to compute every result to compare it.
+     */
+    private Object _marker = new Object();
+
+    /**
+     * The measurements of one benchmark
+     */
+    public static class Result {
+	/** The benchmark that was measured */
+	final Microbenchmark benchmark;
+
+	/** Nanoseconds per operation in each measurement iteration */
+	final double[] nanosPerOp;
+
+	Result(Microbenchmark benchmark, double[] nanosPerOp) {
+	    this.benchmark = benchmark;
+	    this.nanosPerOp = nanosPerOp;
+	}
+
+	/** Returns the mean nanoseconds per operation */
+	public double getScore() {
+	    double sum = 0;
+	    for (double d : nanosPerOp) {
+		sum += d;
+	    }
+	    return sum / nanosPerOp.length;
+	}
+
+	/** Returns the half-width of the 99.9% confidence interval */
+	public double getScoreError() {
+	    int n = nanosPerOp.length;
+	    if (n < 2) {
+		return Double.NaN;
+	    }
+	    double mean = getScore();
+	    double sq = 0;
+	    for (double d : nanosPerOp) {
+		sq += (d - mean) * (d - mean);
+	    }
+	    double t = (n - 1 < T_999.length) ? T_999[n - 1] : 3.291;
+	    return t * Math.sqrt(sq / (n - 1)) / Math.sqrt(n);
+	}
+    }
+
+    /**
+     * Runs the operation a number of times
+     *
+     * @param b Benchmark to run
+     * @param batch Number of times to run it
+     * @return Count of the results that were the marker, which is always 0
+     */
+    private int batch(Microbenchmark b, int batch) throws Exception {
+	Object marker = _marker;
+	int sink = 0;
+	for (int i = 0; i < batch; i++) {
+	    if (b.op() == marker) {
+		sink++;
+	    }
+	}
+	return sink;
+    }
+
+    /**
+     * Finds how many operations a batch needs to take at least
+     * {@link #MIN_BATCH_NANOS}
+     *
+     * @param b Benchmark to run
+     * @return Number of operations per batch
+     */
+    private int calibrate(Microbenchmark b) throws Exception {
+	int size = 1;
+	while (size < MAX_BATCH) {
+	    long start = System.nanoTime();
+	    _sink += batch(b, size);
+	    if (System.nanoTime() - start >= MIN_BATCH_NANOS) {
+		break;
+	    }
+	    size *= 2;
+	}
+	return size;
+    }
+
+    /**
+     * Runs the operation for one iteration, in batches
+     *
+     * @param b Benchmark to run
+     * @param batch Number of operations per batch
+     * @return Nanoseconds per operation over the iteration
+     */
+    private double iteration(Microbenchmark b, int batch) throws Exception {
+	long ops = 0;
+	int sink = 0;
+	long start = System.nanoTime();
+	long elapsed;
+	do {
+	    sink += batch(b, batch);
+	    ops += batch;
+	    elapsed = System.nanoTime() - start;
+	} while (elapsed < _iterationNanos);
+	_sink += sink;
+	return (double) elapsed / ops;
+    }
+
+    /**
+     * Sets up, warms up and measures a benchmark, and prints its score
+     *
+     * @param b Benchmark to run
+     * @return The benchmark's measurements
+     * @throws Exception if the benchmark fails
+     */
+    public Result run(Microbenchmark b) throws Exception {
+	b.setup();
+	int batch = calibrate(b);
+	for (int i = 0; i < _warmups; i++) {
+	    iteration(b, batch);
+	}
+
+	// Compiled code is faster, so a batch may need to be bigger now
+	batch = calibrate(b);
+	double[] measured = new double[_iterations];
+	for (int i = 0; i < _iterations; i++) {
+	    measured[i] = iteration(b, batch);
+	}
+
+	Result r = new Result(b, measured);
+	_results.add(r);
+	System.out.printf("%-40s %-28s %14.1f +- %10.1f ns/op%n",
+			  b.getName(), b.getParams(), r.getScore(),
+			  r.getScoreError());
+	return r;
+    }
+
+    /**
+     * Returns every result measured so far
+     */
+    public List<Result> getResults() {
+	return Collections.unmodifiableList(_results);
+    }
+
+    /**
+     * Quotes a string for JSON
+     */
+    private static String quote(String s) {
+	StringBuilder sb = new StringBuilder("\"");
+	for (char c : s.toCharArray()) {
+	    if (c == '"' || c == '\\') {
+		sb.append('\\').append(c);
+	    }
+	    else if (c < 0x20) {
+		sb.append(String.format("\\u%04x", (int) c));
+	    }
+	    else {
+		sb.append(c);
+	    }
+	}
+	return sb.append('"').toString();
+    }
+
+    /**
+     * Formats a number for JSON, which has no NaN
+     */
+    private static String number(double d) {
+	return Double.isNaN(d) ? "\"NaN\"" : String.valueOf(d);
+    }
+
+    /**
+     * Writes every result measured so far as a JSON array
+     *
+     * @param filename Name of the file to write
+     * @throws IOException if the file can't be written
+     */
+    public void writeJson(String filename) throws IOException {
+	PrintWriter out = new PrintWriter(new FileWriter(filename));
+	try {
+	    out.println("[");
+	    for (int i = 0; i < _results.size(); i++) {
+		Result r = _results.get(i);
+		out.println("    {");
+		out.println("        \"benchmark\" : "
+			    + quote(r.benchmark.getName()) + ",");
+		out.println("        \"mode\" : \"avgt\",");
+		out.println("        \"threads\" : 1,");
+		out.println("        \"forks\" : 0,");
+		out.println("        \"jvm\" : "
+			    + quote(System.getProperty("java.home")) + ",");
+		out.println("        \"jdkVersion\" : "
+			    + quote(System.getProperty("java.version")) + ",");
+		out.println("        \"warmupIterations\" : " + _warmups + ",");
+		out.println("        \"measurementIterations\" : "
+			    + _iterations + ",");
+
+		out.print("        \"params\" : {");
+		String sep = "";
+		for (Map.Entry<String, String> e :
+			 r.benchmark.getParams().entrySet()) {
+		    out.print(sep + " " + quote(e.getKey()) + " : "
+			      + quote(e.getValue()));
+		    sep = ",";
+		}
+		out.println(" },");
+
+		out.println("        \"primaryMetric\" : {");
+		out.println("            \"score\" : "
+			    + number(r.getScore()) + ",");
+		out.println("            \"scoreError\" : "
+			    + number(r.getScoreError()) + ",");
+		out.println("            \"scoreUnit\" : \"ns/op\",");
+		out.print("            \"rawData\" : [ [");
+		for (int j = 0; j < r.nanosPerOp.length; j++) {
+		    out.print((j > 0 ? ", " : " ") + number(r.nanosPerOp[j]));
+		}
+		out.println(" ] ]");
+		out.println("        }");
+		out.println((i < _results.size() - 1) ? "    }," : "    }");
+	    }
+	    out.println("]");
+	}
+	finally {
+	    out.close();
+	}
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.*;
+
+/**
+ * Measures how fast {@link BoardGenerator} makes 4x4 boards, both in bulk
+ * (letter codes packed into one array) and as {@link BoggleBoard} objects.
+ * For comparison it also times the generator that <tt>BoggleBoard</tt> used
+ * to have, which made a new <tt>Random</tt> for every cell and walked a
+ * <tt>HashMap</tt> of letter frequencies.
+ */
+public class BoardGeneratorBench {
+
+    /** Number of boards per bulk call */
+    private static final int BATCH = 1 << 16;
+
+    /** Cells per board */
+    private static final int CELLS = BoggleBoard.DEFAULT_SIZE *
+	BoggleBoard.DEFAULT_SIZE;
+
+    /** Letter frequencies in the order the old generator's HashMap had */
+    private static final Map<String, Integer> oldDistribution
+	= new HashMap<String, Integer>();
+    static {
+	for (int i = 0; i < 26; i++) {
+	    String s = (i == BoardGenerator.QU) ?
+		"Qu" : String.valueOf((char) ('A' + i));
+	    oldDistribution.put(s, BoardGenerator.frequency(i));
+	}
+    }
+
+    /** The old per-cell sampling method, for comparison */
+    static String oldRandomString() {
+	Random rand = new Random();
+	int randInt = rand.nextInt(96);
+
+	String randString = null;
+	int cdf = 0;
+	for (Map.Entry<String, Integer> entry : oldDistribution.entrySet()) {
+	    if (cdf + entry.getValue() >= randInt) {
+		randString = entry.getKey();
+		break;
+	    }
+	    cdf += entry.getValue();
+	}
+	return randString;
+    }
+
+    /**
+     * Runs a task a few times and returns the best rate
+     *
+     * @param boards Number of boards the task makes
+     * @param task Task to time
+     * @return Boards per second of the fastest run
+     */
+    static double rate(int boards, Runnable task) {
+	long best = Long.MAX_VALUE;
+	for (int r = 0; r < 5; r++) {
+	    long start = System.nanoTime();
+	    task.run();
+	    best = Math.min(best, System.nanoTime() - start);
+	}
+	return boards * 1e9 / best;
+    }
+
+    public static void main(String[] args) {
+	final BoardGenerator generator = new BoardGenerator(42);
+	final byte[] cells = new byte[BATCH * CELLS];
+
+	double bulk = rate(BATCH * 16, new Runnable() {
+		public void run() {
+		    for (int i = 0; i < 16; i++) {
+			generator.fill(cells);
+		    }
+		}
+	    });
+
+	double objects = rate(BATCH, new Runnable() {
+		public void run() {
+		    for (int i = 0; i < BATCH; i++) {
+			generator.generate(BoggleBoard.DEFAULT_SIZE);
+		    }
+		}
+	    });
+
+	final String[] oldCells = new String[CELLS];
+	double old = rate(BATCH / 16, new Runnable() {
+		public void run() {
+		    for (int i = 0; i < BATCH / 16; i++) {
+			for (int c = 0; c < CELLS; c++) {
+			    oldCells[c] = oldRandomString();
+			}
+		    }
+		}
+	    });
+
+	System.out.printf("%-24s %16s%n", "4x4 boards", "boards/sec");
+	System.out.printf("%-24s %16.0f%n", "bulk fill", bulk);
+	System.out.printf("%-24s %16.0f%n", "BoggleBoard objects", objects);
+	System.out.printf("%-24s %16.0f%n", "old Random per cell", old);
+    }
+}
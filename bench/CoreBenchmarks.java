@@ -0,0 +1,282 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Microbenchmarks for the core classes, run by {@link BenchmarkRunner}:
+ * <ul>
+ *   <li><tt>WordList</tt> loading, <tt>contains</tt>, <tt>add</tt> and
+ *       <tt>subtract</tt></li>
+ *   <li><tt>BoggleBoard</tt> generation</li>
+ *   <li><tt>GameResults.computeResults</tt> for varying numbers of players
+ *       and submitted words</li>
+ *   <li>serialization of <tt>BoggleBoard</tt>, <tt>WordList</tt> and
+ *       <tt>GameResults</tt></li>
+ * </ul>
+ * Usage: java CoreBenchmarks &lt;sowpods.txt.gz&gt; &lt;results.json&gt;
+ * [name-filter]
+ * <p>
+ * Only benchmarks whose name contains the filter are run, if one is given.
+ */
+public class CoreBenchmarks {
+
+    /** Dictionary word list */
+    private static String dictionaryFile;
+
+    /** The dictionary, loaded once and shared by the benchmarks */
+    private static WordList dictionary;
+
+    /** The dictionary's words, for picking samples */
+    private static String[] dictionaryWords;
+
+    /**
+     * Returns a list of distinct random dictionary words
+     */
+    static WordList sample(Random rand, int count) {
+	WordList list = new WordList();
+	while (list.size() < count) {
+	    list.add(dictionaryWords[rand.nextInt(dictionaryWords.length)]);
+	}
+	return list;
+    }
+
+    /**
+     * Makes a scored round: players submit random words from a 4x4 board
+     */
+    static GameResults round(Random rand, BoggleSolution solution,
+			     int players, int words) {
+	ArrayList<ClientInfo> room = new ArrayList<ClientInfo>();
+	for (int p = 0; p < players; p++) {
+	    room.add(player(rand, solution, p, words));
+	}
+	GameResults results = new GameResults();
+	results.computeResults(room, solution);
+	return results;
+    }
+
+    /**
+     * Makes a player who submitted random words from a board
+     */
+    static ClientInfo player(Random rand, BoggleSolution solution, int p,
+			     int words) {
+	List<String> found = solution.getWords();
+	WordList list = new WordList();
+	for (int w = 0; w < words; w++) {
+	    list.add(found.get(rand.nextInt(found.size())));
+	}
+	ClientInfo info = new ClientInfo("player" + p);
+	info.setPlaying();
+	info.setWords(list);
+	return info;
+    }
+
+    /**
+     * Serializes an object into bytes
+     */
+    static byte[] serialize(Object o) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(o);
+	out.close();
+	return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes an object from bytes
+     */
+    static Object deserialize(byte[] bytes)
+	throws IOException, ClassNotFoundException {
+	ObjectInputStream in =
+	    new ObjectInputStream(new ByteArrayInputStream(bytes));
+	return in.readObject();
+    }
+
+    /**
+     * Adds a serialize and a deserialize benchmark for an object
+     */
+    static void serialization(List<Microbenchmark> benchmarks, String type,
+			      final Object value, Object[] params) {
+	Microbenchmark ser = new Microbenchmark("serialize." + type) {
+		public Object op() throws Exception {
+		    return serialize(value);
+		}
+	    };
+	Microbenchmark deser = new Microbenchmark("deserialize." + type) {
+		byte[] bytes;
+
+		public void setup() throws Exception {
+		    bytes = serialize(value);
+		    param("bytes", bytes.length);
+		}
+
+		public Object op() throws Exception {
+		    return deserialize(bytes);
+		}
+	    };
+	for (int i = 0; i < params.length; i += 2) {
+	    ser.param((String) params[i], params[i + 1]);
+	    deser.param((String) params[i], params[i + 1]);
+	}
+	benchmarks.add(ser);
+	benchmarks.add(deser);
+    }
+
+    /**
+     * Builds the list of every benchmark
+     */
+    static List<Microbenchmark> benchmarks() throws IOException {
+	final Random rand = new Random(42);
+	ArrayList<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+
+	// WordList
+
+	benchmarks.add(new Microbenchmark("WordList.loadFromGZipFile") {
+		public Object op() throws Exception {
+		    return WordList.loadFromGZipFile(dictionaryFile);
+		}
+	    });
+
+	benchmarks.add(new Microbenchmark("WordList.contains") {
+		String[] queries = new String[1024];
+		int next;
+
+		public void setup() {
+		    param("hitRatio", 0.5);
+		    for (int i = 0; i < queries.length; i++) {
+			String w = dictionaryWords[rand.nextInt(
+			    dictionaryWords.length)];
+			queries[i] = (i % 2 == 0) ? w : w + "zq";
+		    }
+		}
+
+		public Object op() {
+		    next = (next + 1) & (queries.length - 1);
+		    return dictionary.contains(queries[next]);
+		}
+	    });
+
+	for (final int size : new int[] { 10, 100, 1000 }) {
+	    benchmarks.add(new Microbenchmark("WordList.add") {
+		    String[] words;
+
+		    public void setup() {
+			words = new String[size];
+			Iterator<String> iter = sample(rand, size).iterator();
+			for (int i = 0; i < size; i++) {
+			    words[i] = iter.next();
+			}
+		    }
+
+		    public Object op() {
+			WordList list = new WordList();
+			for (String w : words) {
+			    list.add(w);
+			}
+			return list;
+		    }
+		}.param("words", size));
+
+	    benchmarks.add(new Microbenchmark("WordList.subtract") {
+		    WordList mine;
+		    WordList theirs;
+
+		    public void setup() {
+			mine = sample(rand, size);
+			theirs = sample(rand, size);
+			for (String w : mine) {
+			    if (theirs.size() >= 2 * size) {
+				break;
+			    }
+			    theirs.add(w); // make them overlap
+			}
+		    }
+
+		    public Object op() {
+			WordList list = new WordList(mine);
+			list.subtract(theirs);
+			return list;
+		    }
+		}.param("words", size));
+	}
+
+	// BoggleBoard
+
+	for (final int size : new int[] { 4, 10 }) {
+	    benchmarks.add(new Microbenchmark("BoggleBoard.new") {
+		    public Object op() {
+			return new BoggleBoard(size);
+		    }
+		}.param("size", size));
+	}
+
+	// GameResults
+
+	BoggleSolver solver = new BoggleSolver(Dawg.fromWords(dictionary));
+	BoggleSolution solution;
+	do {
+	    solution = solver.solve(new BoggleBoard());
+	} while (solution.size() < 100);
+	final BoggleSolution board = solution;
+
+	for (final int players : new int[] { 2, 50, 500 }) {
+	    for (final int words : new int[] { 10, 50 }) {
+		benchmarks.add(new Microbenchmark("GameResults.computeResults") {
+			List<ClientInfo> room = new ArrayList<ClientInfo>();
+
+			public void setup() {
+			    for (int p = 0; p < players; p++) {
+				room.add(player(rand, board, p, words));
+			    }
+			}
+
+			public Object op() {
+			    GameResults results = new GameResults();
+			    results.computeResults(room, board);
+			    return results;
+			}
+		    }.param("players", players).param("words", words));
+	    }
+	}
+
+	// Serialization
+
+	serialization(benchmarks, "BoggleBoard", new BoggleBoard(),
+		      new Object[] { "size", 4 });
+	serialization(benchmarks, "WordList", sample(rand, 50),
+		      new Object[] { "words", 50 });
+	for (int players : new int[] { 2, 50, 500 }) {
+	    serialization(benchmarks, "GameResults",
+			  round(rand, board, players, 30),
+			  new Object[] { "players", players, "words", 30 });
+	}
+
+	return benchmarks;
+    }
+
+    public static void main(String[] args) throws Exception {
+	String usage =
+	    "Usage: java CoreBenchmarks <word-list.gz> <results.json> [filter]";
+	if (args.length < 2 || args.length > 3) {
+	    System.err.println(usage);
+	    System.exit(1);
+	}
+	dictionaryFile = args[0];
+	String filter = (args.length > 2) ? args[2] : "";
+
+	dictionary = WordList.loadFromGZipFile(dictionaryFile);
+	ArrayList<String> words = new ArrayList<String>();
+	for (String w : dictionary) {
+	    words.add(w);
+	}
+	Collections.sort(words); // so samples don't depend on hash order
+	dictionaryWords = words.toArray(new String[0]);
+
+	BenchmarkRunner runner = new BenchmarkRunner();
+	for (Microbenchmark b : benchmarks()) {
+	    if (b.getName().contains(filter)) {
+		runner.run(b);
+	    }
+	}
+	runner.writeJson(args[1]);
+	System.out.println("Results written to " + args[1]);
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Compares the {@link Dawg} dictionary against the <tt>HashSet</tt>-backed
+ * {@link WordList} on the SOWPODS word list: the heap each one retains, how
+ * long each takes to load, and how many <tt>contains</tt> lookups each can
+ * answer per second.  If a compiled image is given, the mapped {@link Dawg} is
+ * measured as well.
+ * <p>
+ * Usage: java DictionaryBench [sowpods.txt.gz [sowpods.dawg]]
+ */
+public class DictionaryBench {
+
+    /** Number of timed passes over the query set */
+    private static final int ROUNDS = 10;
+
+    /**
+     * Returns the heap in use after encouraging the collector to run
+     */
+    static long usedHeap() {
+	Runtime rt = Runtime.getRuntime();
+	for (int i = 0; i < 4; i++) {
+	    System.gc();
+	    try {
+		Thread.sleep(50);
+	    }
+	    catch (InterruptedException e) {
+		// Ignore.
+	    }
+	}
+	return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Builds the query set: every dictionary word, plus the same number of
+     * misses made by changing one letter of each word
+     */
+    static String[] queries(WordList list) {
+	ArrayList<String> q = new ArrayList<String>();
+	Random rand = new Random(42);
+	for (String w : list) {
+	    q.add(w);
+	    char[] miss = w.toCharArray();
+	    miss[rand.nextInt(miss.length)] = (char) ('a' + rand.nextInt(26));
+	    q.add(new String(miss));
+	}
+	Collections.shuffle(q, rand);
+	return q.toArray(new String[0]);
+    }
+
+    public static void main(String[] args) throws IOException {
+	String file = (args.length > 0) ? args[0] : "res/sowpods.txt.gz";
+	String image = (args.length > 1) ? args[1] : null;
+
+	long base = usedHeap();
+	long start = System.nanoTime();
+	WordList list = WordList.loadFromGZipFile(file);
+	long listLoad = System.nanoTime() - start;
+	long listHeap = usedHeap() - base;
+
+	base = usedHeap();
+	start = System.nanoTime();
+	Dawg dawg = Dawg.loadFromGZipFile(file);
+	long dawgLoad = System.nanoTime() - start;
+	long dawgHeap = usedHeap() - base;
+
+	Dawg mapped = null;
+	long mappedLoad = 0;
+	long mappedHeap = 0;
+	if (image != null) {
+	    base = usedHeap();
+	    start = System.nanoTime();
+	    mapped = Dawg.load(image);
+	    mappedLoad = System.nanoTime() - start;
+	    mappedHeap = usedHeap() - base;
+	}
+
+	String[] q = queries(list);
+
+	System.out.println("Words: " + list.size() + " / " + dawg.size());
+	System.out.printf("%-10s %12s %12s %16s%n",
+			  "", "heap (KB)", "load (ms)", "lookups/sec");
+
+	int listHits = 0;
+	int dawgHits = 0;
+	int mappedHits = 0;
+	long listNanos = Long.MAX_VALUE;
+	long dawgNanos = Long.MAX_VALUE;
+	long mappedNanos = Long.MAX_VALUE;
+	for (int r = 0; r < ROUNDS; r++) {
+	    start = System.nanoTime();
+	    for (String s : q) {
+		if (list.contains(s)) listHits++;
+	    }
+	    listNanos = Math.min(listNanos, System.nanoTime() - start);
+
+	    start = System.nanoTime();
+	    for (String s : q) {
+		if (dawg.contains(s)) dawgHits++;
+	    }
+	    dawgNanos = Math.min(dawgNanos, System.nanoTime() - start);
+
+	    if (mapped != null) {
+		start = System.nanoTime();
+		for (String s : q) {
+		    if (mapped.contains(s)) mappedHits++;
+		}
+		mappedNanos = Math.min(mappedNanos, System.nanoTime() - start);
+	    }
+	}
+	if (dawgHits != listHits || (mapped != null && mappedHits != listHits)) {
+	    throw new AssertionError("Dictionaries disagree");
+	}
+
+	System.out.printf("%-10s %12d %12d %16.0f%n", "HashSet",
+			  listHeap / 1024, listLoad / 1000000,
+			  q.length * 1e9 / listNanos);
+	System.out.printf("%-10s %12d %12d %16.0f%n", "Dawg",
+			  dawgHeap / 1024, dawgLoad / 1000000,
+			  q.length * 1e9 / dawgNanos);
+	if (mapped != null) {
+	    System.out.printf("%-10s %12d %12.2f %16.0f%n", "Mapped",
+			      mappedHeap / 1024, mappedLoad / 1e6,
+			      q.length * 1e9 / mappedNanos);
+	}
+	System.out.println("Dawg edges: " + dawg.edgeCount());
+    }
+}
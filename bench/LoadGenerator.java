@@ -0,0 +1,499 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.rmi.*;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * Load generator for {@link BoggleServerApp}, for sizing servers.  Headless
+ * bots play rounds over RMI the way the GUI client does: each one joins,
+ * waits for its board, thinks for a while, submits a word list, and waits for
+ * the results, for a number of rounds.
+ * <p>
+ * Bots arrive at a rate that ramps up from nothing to a peak, holds there,
+ * and ramps back down.  Each bot finds the words on its board with its own
+ * solver, and submits a list of a given size of which a given share are
+ * really on the board; the rest are made up.
+ * <p>
+ * Every few seconds a line shows the arrival rate, the number of bots
+ * playing and the rounds finished per second.  At the end the latency of
+ * each step is printed as percentiles:
+ * <ul>
+ * <li>join: the <tt>joinGame</tt> call, which only registers the bot;
+ * <li>round start: from joining until the board arrives, which includes
+ *     waiting in the lobby for a room to fill;
+ * <li>gameOver: from submitting the words until the results arrive, which
+ *     includes waiting for the rest of the room.
+ * </ul>
+ * With <tt>-blocking</tt> the bots make the blocking {@link BoggleServer}
+ * calls instead, on a thread each; <tt>startGame</tt> is the round start, and
+ * there is no separate join.
+ * <p>
+ * Unless <tt>-connect</tt> is given, the server is started in this process,
+ * with an RMI registry of its own.  Either way everything runs on localhost.
+ * <p>
+ * Usage: java LoadGenerator [options], where the options are
+ * <pre>
+ * -dictionary FILE  dictionary image (build/sowpods.dawg)
+ * -bots N           number of bots that arrive (1000)
+ * -rounds N         rounds each bot plays (2)
+ * -ramp S           seconds to ramp arrivals up, and again down (20)
+ * -hold S           seconds at the peak arrival rate (20)
+ * -words N          words each bot submits (30)
+ * -accuracy F       share of the words that are on the board (0.8)
+ * -think S          most seconds a bot plays before submitting (5)
+ * -room N           players per room, for the server started here (8)
+ * -port N           port of the RMI registry (1099)
+ * -connect          use the server already registered on localhost
+ * -blocking         play through the blocking interface
+ * </pre>
+ */
+public class LoadGenerator {
+
+    /** Seconds between progress lines */
+    private static final int REPORT_INTERVAL = 5;
+
+    /** Longest time to wait for a round, past the bots' think time, in s */
+    private static final int ROUND_WAIT = 120;
+
+    /** Letters made-up words are built from */
+    private static final String LETTERS = "etaoinshrdlucmfwypvbgkqjxz";
+
+    /** Latencies of one kind of step, in nanoseconds */
+    static class Latencies {
+	private final String _name;
+	private long[] _samples = new long[1024];
+	private int _count;
+
+	Latencies(String name) {
+	    _name = name;
+	}
+
+	synchronized void add(long nanos) {
+	    if (_count == _samples.length) {
+		_samples = Arrays.copyOf(_samples, 2 * _count);
+	    }
+	    _samples[_count++] = nanos;
+	}
+
+	/** Prints a line of percentiles, in milliseconds */
+	synchronized void report() {
+	    if (_count == 0) {
+		return;
+	    }
+	    long[] sorted = Arrays.copyOf(_samples, _count);
+	    Arrays.sort(sorted);
+	    System.out.printf("%-12s %8d %10.1f %10.1f %10.1f %10.1f%n", _name,
+			      _count, percentile(sorted, 0.5) / 1e6,
+			      percentile(sorted, 0.9) / 1e6,
+			      percentile(sorted, 0.99) / 1e6,
+			      sorted[_count - 1] / 1e6);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+	    return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+	}
+    }
+
+    /** Settings, from the command line */
+    private String _dictionary = "build/sowpods.dawg";
+    private int _bots = 1000;
+    private int _rounds = 2;
+    private double _ramp = 20;
+    private double _hold = 20;
+    private int _words = 30;
+    private double _accuracy = 0.8;
+    private double _think = 5;
+    private int _roomSize = BoggleServerApp.DEFAULT_ROOM_SIZE;
+    private int _port = 1099;
+    private boolean _connect;
+    private boolean _blocking;
+
+    /** Finds the words on the bots' boards */
+    private BoggleSolver _solver;
+
+    /** Server stub, looked up in the registry */
+    private Remote _server;
+
+    /** Runs the bots' think time and their calls to the server */
+    private ScheduledExecutorService _clients;
+
+    private final Latencies _join = new Latencies("join");
+    private final Latencies _roundStart = new Latencies("round start");
+    private final Latencies _gameOver = new Latencies("gameOver");
+
+    private final AtomicInteger _arrived = new AtomicInteger();
+    private final AtomicInteger _playing = new AtomicInteger();
+    private final AtomicInteger _roundsDone = new AtomicInteger();
+    private final AtomicLong _wordsSent = new AtomicLong();
+    private final AtomicInteger _errors = new AtomicInteger();
+
+    /** Counted down as each bot finishes or gives up */
+    private CountDownLatch _finished;
+
+    /**
+     * A bot that plays through the callback interface.  Its steps run on
+     * the client executor; the server's callbacks only hand them over.
+     */
+    class Bot implements BoggleCallback {
+	private final String _name;
+	private final Random _rand;
+	private BoggleServerV2 _stub;
+	private volatile int _round;
+	private volatile long _joined;
+	private volatile long _submitted;
+
+	Bot(int id) {
+	    _name = "bot" + id;
+	    _rand = new Random(id);
+	}
+
+	/** Name the bot plays the current round under */
+	private String name() {
+	    return _name + "." + _round;
+	}
+
+	void join() {
+	    try {
+		if (_stub == null) {
+		    UnicastRemoteObject.exportObject(this, 0);
+		    _stub = (BoggleServerV2) _server;
+		}
+		_joined = System.nanoTime();
+		_stub.joinGame(name(), this);
+		_join.add(System.nanoTime() - _joined);
+	    }
+	    catch (Exception e) {
+		fail(e.toString());
+	    }
+	}
+
+	public void onRoundStarted(final BoggleBoard board) {
+	    _roundStart.add(System.nanoTime() - _joined);
+	    _clients.schedule(new Runnable() {
+		    public void run() {
+			submit(board);
+		    }
+		}, thinkTime(_rand), TimeUnit.MILLISECONDS);
+	}
+
+	private void submit(BoggleBoard board) {
+	    WordList words = wordsFor(board, _rand);
+	    try {
+		_submitted = System.nanoTime();
+		_stub.submitWords(name(), words);
+		_wordsSent.addAndGet(words.size());
+	    }
+	    catch (Exception e) {
+		fail(e.toString());
+	    }
+	}
+
+	public void onResults(GameResults results) {
+	    _gameOver.add(System.nanoTime() - _submitted);
+	    _roundsDone.incrementAndGet();
+	    if (++_round < _rounds) {
+		_clients.execute(new Runnable() {
+			public void run() {
+			    join();
+			}
+		    });
+	    }
+	    else {
+		done();
+	    }
+	}
+
+	public void onError(String message) {
+	    fail(message);
+	}
+
+	private void fail(String message) {
+	    if (_errors.incrementAndGet() <= 10) {
+		System.err.println(name() + ": " + message);
+	    }
+	    done();
+	}
+
+	private void done() {
+	    try {
+		UnicastRemoteObject.unexportObject(this, true);
+	    }
+	    catch (NoSuchObjectException e) {
+		// Never exported
+	    }
+	    _playing.decrementAndGet();
+	    _finished.countDown();
+	}
+    }
+
+    /**
+     * A bot that plays through the blocking interface, on a thread of its
+     * own
+     */
+    class BlockingBot implements Runnable {
+	private final int _id;
+
+	BlockingBot(int id) {
+	    _id = id;
+	}
+
+	public void run() {
+	    Random rand = new Random(_id);
+	    BoggleServer stub = (BoggleServer) _server;
+	    try {
+		for (int round = 0; round < _rounds; round++) {
+		    String name = "bot" + _id + "." + round;
+		    long start = System.nanoTime();
+		    BoggleBoard board = stub.startGame(name);
+		    _roundStart.add(System.nanoTime() - start);
+
+		    Thread.sleep(thinkTime(rand));
+		    WordList words = wordsFor(board, rand);
+		    start = System.nanoTime();
+		    stub.gameOver(name, words);
+		    _gameOver.add(System.nanoTime() - start);
+		    _wordsSent.addAndGet(words.size());
+		    _roundsDone.incrementAndGet();
+		}
+	    }
+	    catch (Exception e) {
+		if (_errors.incrementAndGet() <= 10) {
+		    System.err.println("bot" + _id + ": " + e);
+		}
+	    }
+	    finally {
+		_playing.decrementAndGet();
+		_finished.countDown();
+	    }
+	}
+    }
+
+    /**
+     * Picks how long a bot plays before submitting
+     *
+     * @return Think time in milliseconds
+     */
+    private long thinkTime(Random rand) {
+	return (long) (rand.nextDouble() * _think * 1000);
+    }
+
+    /**
+     * Makes the word list a bot submits: words on the board, as many as the
+     * accuracy asks for and the board has, and made-up words for the rest
+     *
+     * @param board The bot's board
+     * @param rand The bot's source of random numbers
+     * @return Words to submit
+     */
+    WordList wordsFor(BoggleBoard board, Random rand) {
+	List<String> found = new ArrayList<String>(
+	    _solver.solve(board).getWords());
+	Collections.shuffle(found, rand);
+	int valid = Math.min(found.size(), (int) Math.round(_words * _accuracy));
+
+	WordList words = new WordList();
+	for (int i = 0; i < valid; i++) {
+	    words.add(found.get(i));
+	}
+	while (words.size() < _words) {
+	    StringBuilder made = new StringBuilder();
+	    int length = 3 + rand.nextInt(5);
+	    for (int i = 0; i < length; i++) {
+		// Skewed towards common letters
+		int l = rand.nextInt(LETTERS.length());
+		made.append(LETTERS.charAt(rand.nextInt(l + 1)));
+	    }
+	    words.add(made.toString());
+	}
+	return words;
+    }
+
+    /**
+     * Returns when each bot arrives, so that arrivals ramp up linearly to a
+     * peak rate, hold it, and ramp down again
+     *
+     * @return Arrival time of each bot, in seconds from the start
+     */
+    double[] arrivalTimes() {
+	// With a peak rate of 1, the total area is ramp + hold
+	double total = _ramp + _hold;
+	double[] times = new double[_bots];
+	for (int k = 0; k < _bots; k++) {
+	    double area = total * (k + 0.5) / _bots;
+	    if (area <= _ramp / 2) {
+		times[k] = Math.sqrt(2 * _ramp * area);
+	    }
+	    else if (area <= _ramp / 2 + _hold) {
+		times[k] = _ramp + (area - _ramp / 2);
+	    }
+	    else {
+		double left = total - area;
+		times[k] = _ramp + _hold + _ramp - Math.sqrt(2 * _ramp * left);
+	    }
+	}
+	return times;
+    }
+
+    /**
+     * Reads the command line
+     */
+    void parse(String[] args) {
+	for (int i = 0; i < args.length; i++) {
+	    String option = args[i];
+	    if (option.equals("-connect")) {
+		_connect = true;
+		continue;
+	    }
+	    if (option.equals("-blocking")) {
+		_blocking = true;
+		continue;
+	    }
+	    if (i + 1 == args.length) {
+		throw new IllegalArgumentException("No value for " + option);
+	    }
+	    String value = args[++i];
+	    if (option.equals("-dictionary")) {
+		_dictionary = value;
+	    }
+	    else if (option.equals("-bots")) {
+		_bots = Integer.parseInt(value);
+	    }
+	    else if (option.equals("-rounds")) {
+		_rounds = Integer.parseInt(value);
+	    }
+	    else if (option.equals("-ramp")) {
+		_ramp = Double.parseDouble(value);
+	    }
+	    else if (option.equals("-hold")) {
+		_hold = Double.parseDouble(value);
+	    }
+	    else if (option.equals("-words")) {
+		_words = Integer.parseInt(value);
+	    }
+	    else if (option.equals("-accuracy")) {
+		_accuracy = Double.parseDouble(value);
+	    }
+	    else if (option.equals("-think")) {
+		_think = Double.parseDouble(value);
+	    }
+	    else if (option.equals("-room")) {
+		_roomSize = Integer.parseInt(value);
+	    }
+	    else if (option.equals("-port")) {
+		_port = Integer.parseInt(value);
+	    }
+	    else {
+		throw new IllegalArgumentException("Unknown option " + option);
+	    }
+	}
+	if (_bots < 1 || _rounds < 1 || _ramp + _hold <= 0 ||
+	    _accuracy < 0 || _accuracy > 1) {
+	    throw new IllegalArgumentException("Bad settings");
+	}
+    }
+
+    /**
+     * Starts the server, unless one is already running, and looks it up
+     */
+    void connect() throws Exception {
+	System.setProperty("java.rmi.server.hostname", "localhost");
+	Dawg dictionary = Dawg.open(_dictionary);
+	_solver = new BoggleSolver(dictionary);
+
+	if (!_connect) {
+	    BoggleServerApp server = new BoggleServerApp(dictionary, _roomSize);
+	    Remote stub = UnicastRemoteObject.exportObject(server, 0);
+	    LocateRegistry.createRegistry(_port).rebind("BoggleServer", stub);
+	}
+	Registry registry = LocateRegistry.getRegistry("localhost", _port);
+	_server = registry.lookup("BoggleServer");
+    }
+
+    /**
+     * Sends every bot on its way at its arrival time, printing progress, and
+     * waits for them all to finish
+     */
+    void run() throws Exception {
+	_clients = Executors.newScheduledThreadPool(16);
+	_finished = new CountDownLatch(_bots);
+	double[] arrivals = arrivalTimes();
+
+	System.out.printf("%d bots, %d rounds each, %.0f s ramp, %.0f s " +
+			  "hold, peak %.1f arrivals/sec%n", _bots, _rounds,
+			  _ramp, _hold, _bots / (_ramp + _hold));
+	System.out.printf("%8s %12s %10s %12s %8s%n", "time s", "arrivals/s",
+			  "playing", "rounds/s", "errors");
+
+	final long start = System.nanoTime();
+	for (int k = 0; k < _bots; k++) {
+	    final int id = k;
+	    _clients.schedule(new Runnable() {
+		    public void run() {
+			_arrived.incrementAndGet();
+			_playing.incrementAndGet();
+			if (_blocking) {
+			    new Thread(new BlockingBot(id)).start();
+			}
+			else {
+			    new Bot(id).join();
+			}
+		    }
+		}, (long) (arrivals[k] * 1000), TimeUnit.MILLISECONDS);
+	}
+
+	long limit = (long) (arrivals[_bots - 1] +
+			     _rounds * (_think + ROUND_WAIT));
+	int lastArrived = 0;
+	int lastRounds = 0;
+	long firstRound = 0;
+	for (long tick = REPORT_INTERVAL; ; tick += REPORT_INTERVAL) {
+	    long wait = start + tick * 1000000000L - System.nanoTime();
+	    boolean done = _finished.await(Math.max(0, wait),
+					   TimeUnit.NANOSECONDS);
+	    int arrived = _arrived.get();
+	    int rounds = _roundsDone.get();
+	    System.out.printf("%8d %12.1f %10d %12.1f %8d%n", tick,
+			      (arrived - lastArrived) / (double) REPORT_INTERVAL,
+			      _playing.get(),
+			      (rounds - lastRounds) / (double) REPORT_INTERVAL,
+			      _errors.get());
+	    if (firstRound == 0 && rounds > 0) {
+		firstRound = tick - REPORT_INTERVAL;
+	    }
+	    lastArrived = arrived;
+	    lastRounds = rounds;
+	    if (done || tick > limit) {
+		break;
+	    }
+	}
+	double seconds = (System.nanoTime() - start) / 1e9;
+	_clients.shutdownNow();
+
+	System.out.println();
+	System.out.printf("%-12s %8s %10s %10s %10s %10s%n", "latency",
+			  "count", "p50 ms", "p90 ms", "p99 ms", "max ms");
+	_join.report();
+	_roundStart.report();
+	_gameOver.report();
+
+	System.out.println();
+	double playing = seconds - firstRound;
+	System.out.printf("Player rounds: %d in %.1f s, %.1f/sec from the " +
+			  "first results; %.0f words/sec%n", _roundsDone.get(),
+			  seconds, _roundsDone.get() / playing,
+			  _wordsSent.get() / playing);
+	System.out.printf("Unfinished bots: %d; errors: %d%n",
+			  _finished.getCount(), _errors.get());
+    }
+
+    public static void main(String[] args) throws Exception {
+	LoadGenerator generator = new LoadGenerator();
+	generator.parse(args);
+	generator.connect();
+	generator.run();
+	System.exit(0);
+    }
+}
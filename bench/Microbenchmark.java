@@ -0,0 +1,64 @@
+import java.util.*;
+
+/**
+ * One operation to be timed by {@link BenchmarkRunner}.  Subclasses prepare
+ * their inputs in {@link #setup}, which is not timed, and do the work being
+ * measured in {@link #op}.  Whatever <tt>op</tt> returns is handed to the
+ * runner, so the JIT can't optimize the work away.
+ */
+public abstract class Microbenchmark {
+
+    /** Name the benchmark is reported under */
+    private final String _name;
+
+    /** Parameters the benchmark was set up with, in order */
+    private final Map<String, String> _params
+	= new LinkedHashMap<String, String>();
+
+    /**
+     * Constructs a benchmark with the given name
+     *
+     * @param name Name to report, such as "WordList.contains"
+     */
+    public Microbenchmark(String name) {
+	_name = name;
+    }
+
+    /**
+     * Records a parameter, so that it is reported with the results
+     *
+     * @param key Name of the parameter
+     * @param value Value of the parameter
+     * @return This benchmark, so calls can be chained
+     */
+    public Microbenchmark param(String key, Object value) {
+	_params.put(key, String.valueOf(value));
+	return this;
+    }
+
+    /** Returns the name of the benchmark */
+    public String getName() {
+	return _name;
+    }
+
+    /** Returns an unmodifiable view of the benchmark's parameters */
+    public Map<String, String> getParams() {
+	return Collections.unmodifiableMap(_params);
+    }
+
+    /**
+     * Prepares the inputs of the benchmark.  Called once before any timing.
+     *
+     * @throws Exception if the inputs can't be prepared
+     */
+    public void setup() throws Exception {
+    }
+
+    /**
+     * Performs the operation being measured once
+     *
+     * @return Any result of the operation, so it isn't optimized away
+     * @throws Exception if the operation fails
+     */
+    public abstract Object op() throws Exception;
+}
@@ -0,0 +1,82 @@
+import java.util.*;
+import java.io.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reports how the fork/join mode of {@link BoggleSolver} scales with the
+ * number of worker threads on large boards.  For each board size the same
+ * boards are solved sequentially and then on pools of 1, 2, 4, ... threads
+ * up to the number of available processors, and the speedup over the
+ * sequential solver is printed.
+ * <p>
+ * Usage: java ParallelSolverBench [sowpods.dawg]
+ */
+public class ParallelSolverBench {
+
+    /** Board sizes to measure */
+    private static final int[] SIZES = { 10, 16, 24, 32 };
+
+    /** Number of boards solved per size and thread count */
+    private static final int BOARDS = 20;
+
+    /**
+     * Returns the best time of a few passes over the boards
+     *
+     * @param solver Solver to use
+     * @param boards Boards to be solved
+     * @param pool Pool to solve on, or null to solve sequentially
+     * @return Nanoseconds taken by the fastest pass
+     */
+    static long time(BoggleSolver solver, BoggleBoard[] boards,
+		     ForkJoinPool pool) {
+	long best = Long.MAX_VALUE;
+	for (int r = 0; r < 3; r++) {
+	    long start = System.nanoTime();
+	    for (BoggleBoard b : boards) {
+		if (pool == null) {
+		    solver.solve(b);
+		}
+		else {
+		    solver.solve(b, pool);
+		}
+	    }
+	    best = Math.min(best, System.nanoTime() - start);
+	}
+	return best;
+    }
+
+    public static void main(String[] args) throws IOException {
+	String image = (args.length > 0) ? args[0] : "build/sowpods.dawg";
+	BoggleSolver solver = new BoggleSolver(Dawg.load(image));
+	int cores = Runtime.getRuntime().availableProcessors();
+
+	ArrayList<Integer> threadCounts = new ArrayList<Integer>();
+	for (int t = 1; t < cores; t *= 2) {
+	    threadCounts.add(t);
+	}
+	threadCounts.add(cores);
+
+	System.out.println("Available processors: " + cores);
+	System.out.printf("%-6s %-10s %12s %10s%n",
+			  "size", "threads", "ms/board", "speedup");
+	for (int size : SIZES) {
+	    BoggleBoard[] boards = new BoggleBoard[BOARDS];
+	    for (int i = 0; i < BOARDS; i++) {
+		boards[i] = new BoggleBoard(size);
+	    }
+
+	    long serial = time(solver, boards, null);
+	    System.out.printf("%-6s %-10s %12.2f %10.2f%n", size + "x" + size,
+			      "serial", serial / 1e6 / BOARDS, 1.0);
+
+	    for (int threads : threadCounts) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long t = time(solver, boards, pool);
+		pool.shutdown();
+
+		System.out.printf("%-6s %-10d %12.2f %10.2f%n", "", threads,
+				  t / 1e6 / BOARDS, (double) serial / t);
+	    }
+	}
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Load report for the room subsystem.  Simulated clients fill thousands of
+ * {@link GameRoom}s through a {@link RoomManager}, so that every room is in
+ * progress at the same time, and then all submit their words.  This is run
+ * with pools of 1, 2, 4, ... threads up to the number of available
+ * processors, for both the board pipeline and the room executor, and the
+ * round throughput is printed for each.
+ * <p>
+ * The start phase includes generating and solving every room's board; the
+ * scoring phase is validating and scoring the submitted words.
+ * <p>
+ * Usage: java RoomBench [sowpods.dawg]
+ */
+public class RoomBench {
+
+    /** Number of rooms played per thread count */
+    private static final int ROOMS = 2000;
+
+    /** Players in each room */
+    private static final int ROOM_SIZE = 4;
+
+    /** Words each player submits, found or made up */
+    private static final int WORDS = 20;
+
+    /**
+     * Plays every room once
+     *
+     * @param solver Solver for the rooms' boards
+     * @param threads Number of pipeline and executor threads
+     * @return Nanoseconds to start every room, and to score every room
+     */
+    static long[] play(BoggleSolver solver, int threads) throws Exception {
+	BoardPipeline pipeline = new BoardPipeline(solver,
+	    BoggleBoard.DEFAULT_SIZE, 256, threads, 0, Integer.MAX_VALUE);
+	ScheduledExecutorService scheduler =
+	    Executors.newSingleThreadScheduledExecutor();
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	RoomManager rooms = new RoomManager(pipeline, scheduler, executor,
+					    60 * 1000, ROOM_SIZE, ROOM_SIZE);
+	pipeline.start();
+
+	ClientInfo[] clients = new ClientInfo[ROOMS * ROOM_SIZE];
+	List<Future<BoggleBoard>> boards = new ArrayList<Future<BoggleBoard>>();
+
+	long start = System.nanoTime();
+	for (int i = 0; i < clients.length; i++) {
+	    clients[i] = new ClientInfo("bot" + i);
+	    boards.add(rooms.join(clients[i]));
+	}
+	for (Future<BoggleBoard> b : boards) {
+	    b.get();
+	}
+	long started = System.nanoTime();
+	if (rooms.getActiveCount() != ROOMS) {
+	    throw new IllegalStateException("Only " + rooms.getActiveCount() +
+					    " rooms in progress");
+	}
+
+	// Each player submits some of its board's words, and some made up
+	Random rand = new Random(42);
+	WordList[] words = new WordList[clients.length];
+	for (int i = 0; i < clients.length; i++) {
+	    List<String> found =
+		rooms.getRoom(clients[i]).getSolution().getWords();
+	    words[i] = new WordList();
+	    for (int w = 0; w < WORDS; w++) {
+		words[i].add((w % 4 == 0 || found.isEmpty()) ? "zz" + w :
+			     found.get(rand.nextInt(found.size())));
+	    }
+	}
+
+	long scoreStart = System.nanoTime();
+	List<Future<GameResults>> results =
+	    new ArrayList<Future<GameResults>>();
+	for (int i = 0; i < clients.length; i++) {
+	    results.add(rooms.submit(clients[i], words[i]));
+	}
+	for (Future<GameResults> r : results) {
+	    r.get();
+	}
+	long finished = System.nanoTime();
+
+	pipeline.shutdown();
+	scheduler.shutdown();
+	executor.shutdown();
+	return new long[] { started - start, finished - scoreStart };
+    }
+
+    public static void main(String[] args) throws Exception {
+	String image = (args.length > 0) ? args[0] : "build/sowpods.dawg";
+	BoggleSolver solver = new BoggleSolver(Dawg.load(image));
+	int cores = Runtime.getRuntime().availableProcessors();
+
+	ArrayList<Integer> threadCounts = new ArrayList<Integer>();
+	for (int t = 1; t < cores; t *= 2) {
+	    threadCounts.add(t);
+	}
+	threadCounts.add(cores);
+
+	play(solver, cores); // warm up
+
+	System.out.println("Available processors: " + cores);
+	System.out.println(ROOMS + " concurrent rooms of " + ROOM_SIZE +
+			   " players, " + WORDS + " words each");
+	System.out.printf("%-8s %12s %14s %14s %14s%n", "threads",
+			  "start ms", "score ms", "rounds/sec", "scored/sec");
+	for (int threads : threadCounts) {
+	    long[] t = play(solver, threads);
+	    System.out.printf("%-8d %12.1f %14.1f %14.0f %14.0f%n", threads,
+			      t[0] / 1e6, t[1] / 1e6,
+			      ROOMS / ((t[0] + t[1]) / 1e9), ROOMS / (t[1] / 1e9));
+	}
+    }
+}
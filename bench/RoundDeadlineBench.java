@@ -0,0 +1,162 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Measures how long rounds take to finish when some clients fail.  Rooms of
+ * simulated clients are played through a {@link RoomManager}; each client
+ * submits its words after a random think time, except that a given share of
+ * them crash and never submit.  The time from a room's start to its results
+ * is recorded, and its median, 99th percentile and maximum are printed for
+ * each failure rate, with and without room deadlines.  Without a deadline,
+ * a room with a crashed client never finishes; such rooms are counted as
+ * stalled once the others are done.
+ * <p>
+ * Usage: java RoundDeadlineBench [sowpods.dawg]
+ */
+public class RoundDeadlineBench {
+
+    /** Number of rooms played per run */
+    private static final int ROOMS = 200;
+
+    /** Players in each room */
+    private static final int ROOM_SIZE = 8;
+
+    /** Longest time a live client thinks before submitting, in ms */
+    private static final int THINK_TIME = 200;
+
+    /** Deadline of each room, in ms */
+    private static final long ROUND_LIMIT = 400;
+
+    /** How long to wait for rooms without a deadline, in ms */
+    private static final long STALL_WAIT = 2000;
+
+    /** Shares of clients that crash */
+    private static final double[] FAILURE_RATES = { 0, 0.01, 0.05, 0.2 };
+
+    /**
+     * Plays every room once
+     *
+     * @param solver Solver for the rooms' boards
+     * @param failureRate Share of clients that never submit
+     * @param roundLimit Deadline of each room, or 0 for none
+     * @return Milliseconds from each room's start to its results, in order,
+     *         or -1 for each room that never finished
+     */
+    static double[] play(BoggleSolver solver, double failureRate,
+			 long roundLimit) throws Exception {
+	BoardPipeline pipeline = new BoardPipeline(solver,
+	    BoggleBoard.DEFAULT_SIZE, 64, 1, 0, Integer.MAX_VALUE);
+	ScheduledExecutorService scheduler =
+	    Executors.newScheduledThreadPool(2);
+	ExecutorService executor = Executors.newFixedThreadPool(
+	    Runtime.getRuntime().availableProcessors());
+	RoomManager rooms = new RoomManager(pipeline, scheduler, executor,
+	    60 * 1000, ROOM_SIZE, ROOM_SIZE, roundLimit);
+	pipeline.start();
+	Random rand = new Random(42);
+
+	final long[] started = new long[ROOMS];
+	final long[] finished = new long[ROOMS];
+	List<CompletableFuture<GameResults>> results =
+	    new ArrayList<CompletableFuture<GameResults>>();
+	for (int r = 0; r < ROOMS; r++) {
+	    final ClientInfo[] clients = new ClientInfo[ROOM_SIZE];
+	    List<CompletableFuture<BoggleBoard>> boards =
+		new ArrayList<CompletableFuture<BoggleBoard>>();
+	    for (int i = 0; i < ROOM_SIZE; i++) {
+		clients[i] = new ClientInfo("bot" + r + "." + i);
+		boards.add(rooms.join(clients[i]));
+	    }
+	    for (CompletableFuture<BoggleBoard> b : boards) {
+		b.get();
+	    }
+	    started[r] = System.nanoTime();
+	    final int room = r;
+	    CompletableFuture<GameResults> done =
+		rooms.getRoom(clients[0]).getResults();
+	    done.thenRun(new Runnable() {
+		    public void run() {
+			finished[room] = System.nanoTime();
+		    }
+		});
+	    results.add(done);
+
+	    for (final ClientInfo c : clients) {
+		if (rand.nextDouble() < failureRate) {
+		    continue; // crashed
+		}
+		scheduler.schedule(new Runnable() {
+			public void run() {
+			    try {
+				rooms.submit(c, new WordList());
+			    }
+			    catch (IllegalStateException e) {
+				// Cut off already
+			    }
+			}
+		    }, rand.nextInt(THINK_TIME), TimeUnit.MILLISECONDS);
+	    }
+	}
+
+	long wait = System.currentTimeMillis() + STALL_WAIT +
+	    Math.max(roundLimit, THINK_TIME);
+	for (CompletableFuture<GameResults> r : results) {
+	    try {
+		r.get(Math.max(1, wait - System.currentTimeMillis()),
+		      TimeUnit.MILLISECONDS);
+	    }
+	    catch (TimeoutException e) {
+		// Stalled
+	    }
+	}
+
+	double[] millis = new double[ROOMS];
+	for (int r = 0; r < ROOMS; r++) {
+	    millis[r] = results.get(r).isDone() ?
+		(finished[r] - started[r]) / 1e6 : -1;
+	}
+	pipeline.shutdown();
+	scheduler.shutdownNow();
+	executor.shutdownNow();
+	return millis;
+    }
+
+    /**
+     * Prints the latency of the rooms that finished, and how many stalled
+     */
+    static void report(String deadline, double failureRate, double[] millis) {
+	double[] done = new double[millis.length];
+	int count = 0;
+	for (double m : millis) {
+	    if (m >= 0) {
+		done[count++] = m;
+	    }
+	}
+	Arrays.sort(done, 0, count);
+	if (count == 0) {
+	    System.out.printf("%-10s %8.0f%% %10s %10s %10s %8d%n", deadline,
+			      100 * failureRate, "-", "-", "-", millis.length);
+	    return;
+	}
+	System.out.printf("%-10s %8.0f%% %10.1f %10.1f %10.1f %8d%n", deadline,
+			  100 * failureRate, done[count / 2],
+			  done[(int) Math.ceil(0.99 * count) - 1],
+			  done[count - 1], millis.length - count);
+    }
+
+    public static void main(String[] args) throws Exception {
+	String image = (args.length > 0) ? args[0] : "build/sowpods.dawg";
+	BoggleSolver solver = new BoggleSolver(Dawg.load(image));
+
+	play(solver, 0, ROUND_LIMIT); // warm up
+
+	System.out.println(ROOMS + " rooms of " + ROOM_SIZE + " players, " +
+			   "think time up to " + THINK_TIME + " ms");
+	System.out.printf("%-10s %9s %10s %10s %10s %8s%n", "deadline",
+			  "crashed", "p50 ms", "p99 ms", "max ms", "stalled");
+	for (double rate : FAILURE_RATES) {
+	    report("none", rate, play(solver, rate, 0));
+	    report(ROUND_LIMIT + " ms", rate, play(solver, rate, ROUND_LIMIT));
+	}
+    }
+}
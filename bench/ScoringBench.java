@@ -0,0 +1,108 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Measures how long {@link GameResults#computeResults} takes to score a round
+ * for rooms of 2, 50, 500 and 5,000 players.  Each player submits a random
+ * selection of the words on a 4x4 board, plus a few made-up words.  For
+ * comparison, the pairwise algorithm that scoring used to use (a word list of
+ * all other players' words, built for every player) is timed as well, for
+ * the room sizes where it finishes in reasonable time.
+ * <p>
+ * Usage: java ScoringBench [sowpods.dawg]
+ */
+public class ScoringBench {
+
+    /** Room sizes to measure */
+    private static final int[] PLAYERS = { 2, 50, 500, 5000 };
+
+    /** Largest room the pairwise algorithm is timed for */
+    private static final int MAX_PAIRWISE = 500;
+
+    /** Number of words each player submits */
+    private static final int WORDS = 30;
+
+    /**
+     * Makes a room of players with random submissions
+     */
+    static List<ClientInfo> room(int players, BoggleSolution solution,
+				 Random rand) {
+	List<String> words = solution.getWords();
+	ArrayList<ClientInfo> room = new ArrayList<ClientInfo>();
+	for (int p = 0; p < players; p++) {
+	    WordList list = new WordList();
+	    for (int w = 0; w < WORDS; w++) {
+		list.add(words.get(rand.nextInt(words.size())));
+	    }
+	    list.add("xyzzy" + rand.nextInt(100));
+
+	    ClientInfo info = new ClientInfo("player" + p);
+	    info.setPlaying();
+	    info.setWords(list);
+	    room.add(info);
+	}
+	return room;
+    }
+
+    /**
+     * The scoring algorithm that computeResults used to use, without word
+     * validation, for comparison
+     */
+    static void pairwise(List<ClientInfo> playerResults) {
+	for (ClientInfo playerInfo : playerResults) {
+	    WordList otherList = new WordList();
+	    for (ClientInfo otherInfo : playerResults) {
+		if (!playerInfo.getName().equals(otherInfo.getName())) {
+		    otherList.add(otherInfo.getWords());
+		}
+	    }
+
+	    WordList playerUniqueWords = new WordList(playerInfo.getWords());
+	    playerUniqueWords.subtract(otherList);
+
+	    int playerScore = 0;
+	    for (String word : playerUniqueWords) {
+		playerScore += GameResults.wordScore(word.length());
+	    }
+	    playerInfo.setScore(playerScore);
+	}
+    }
+
+    public static void main(String[] args) throws IOException {
+	String image = (args.length > 0) ? args[0] : "build/sowpods.dawg";
+	BoggleSolver solver = new BoggleSolver(Dawg.load(image));
+	Random rand = new Random(42);
+
+	// Pick a board with a typical number of words
+	BoggleSolution solution;
+	do {
+	    solution = solver.solve(new BoggleBoard());
+	} while (solution.size() < 100);
+
+	System.out.println("Board words: " + solution.size()
+			   + ", words per player: " + WORDS);
+	System.out.printf("%-8s %16s %16s%n",
+			  "players", "two-pass (ms)", "pairwise (ms)");
+	for (int players : PLAYERS) {
+	    long best = Long.MAX_VALUE;
+	    long bestPairwise = Long.MAX_VALUE;
+	    for (int r = 0; r < 5; r++) {
+		List<ClientInfo> room = room(players, solution, rand);
+		long start = System.nanoTime();
+		new GameResults().computeResults(room, solution);
+		best = Math.min(best, System.nanoTime() - start);
+
+		if (players <= MAX_PAIRWISE) {
+		    start = System.nanoTime();
+		    pairwise(room);
+		    bestPairwise = Math.min(bestPairwise,
+					    System.nanoTime() - start);
+		}
+	    }
+
+	    System.out.printf("%-8d %16.3f %16s%n", players, best / 1e6,
+			      (players <= MAX_PAIRWISE) ?
+			      String.format("%.3f", bestPairwise / 1e6) : "-");
+	}
+    }
+}
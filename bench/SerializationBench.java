@@ -0,0 +1,167 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Measures what it costs to send a round's results to every player over RMI,
+ * for rooms of 2 to 500 players.  Each player submits a random selection of
+ * the words on a 4x4 board, plus a made-up word, and every player is sent the
+ * results, so a round serializes them once per player.  For each room size it
+ * prints the bytes sent for the whole round and the time to serialize them,
+ * and the time one player takes to read them, for:
+ * <ul>
+ * <li>the default Java serialization the classes used to have (a
+ *     <tt>HashMap</tt> of client objects holding <tt>HashSet</tt>s, mirrored
+ *     by the <tt>Legacy</tt> classes below);
+ * <li>the hand-written form, serialized again for each player;
+ * <li>the hand-written form encoded once per room, as the server sends it;
+ * <li>summaries, as rooms of more than
+ *     {@link BoggleServerApp#SUMMARY_ROOM_SIZE} players send them.
+ * </ul>
+ * <p>
+ * Usage: java SerializationBench [sowpods.dawg]
+ */
+public class SerializationBench {
+
+    /** Room sizes to measure */
+    private static final int[] PLAYERS = { 2, 10, 50, 100, 500 };
+
+    /** Number of words each player submits */
+    private static final int WORDS = 30;
+
+    /** Number of times each measurement is repeated; the best is kept */
+    private static final int RUNS = 5;
+
+    /** The word list as default serialization used to write it */
+    static class LegacyWordList implements Serializable {
+	Set<String> words = new HashSet<String>();
+    }
+
+    /** The client information as default serialization used to write it */
+    static class LegacyClientInfo implements Serializable {
+	String name;
+	ClientInfo.State state;
+	LegacyWordList words;
+	LegacyWordList filteredWords;
+	LegacyWordList rejectedWords;
+	int score;
+    }
+
+    /** The results as default serialization used to write them */
+    static class LegacyResults implements Serializable {
+	HashMap<String, LegacyClientInfo> clientResults =
+	    new HashMap<String, LegacyClientInfo>();
+    }
+
+    /**
+     * Copies a word list into its legacy form
+     */
+    static LegacyWordList legacy(WordList list) {
+	LegacyWordList legacy = new LegacyWordList();
+	for (String word : list) {
+	    legacy.words.add(word);
+	}
+	return legacy;
+    }
+
+    /**
+     * Copies results into their legacy form
+     */
+    static LegacyResults legacy(GameResults results) {
+	LegacyResults legacy = new LegacyResults();
+	for (ClientInfo info : results.getClientResults().values()) {
+	    LegacyClientInfo l = new LegacyClientInfo();
+	    l.name = info.getName();
+	    l.state = info.getState();
+	    l.words = legacy(info.getWords());
+	    l.filteredWords = legacy(info.getFilteredWords());
+	    l.rejectedWords = legacy(info.getRejectedWords());
+	    l.score = info.getScore();
+	    legacy.clientResults.put(l.name, l);
+	}
+	return legacy;
+    }
+
+    /**
+     * Serializes an object the way RMI does for each call
+     */
+    static byte[] serialize(Object o) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(o);
+	out.close();
+	return bytes.toByteArray();
+    }
+
+    /**
+     * Reads back a serialized object
+     */
+    static Object deserialize(byte[] bytes) throws Exception {
+	return new ObjectInputStream(
+	    new ByteArrayInputStream(bytes)).readObject();
+    }
+
+    /**
+     * Times sending results to every player of a room, and prints a line
+     *
+     * @param form Name of the form being measured
+     * @param perPlayer The object sent to each player, by player
+     */
+    static void measure(String form, List<?> perPlayer) throws Exception {
+	long bestWrite = Long.MAX_VALUE;
+	long bestRead = Long.MAX_VALUE;
+	long bytes = 0;
+	for (int run = 0; run < RUNS; run++) {
+	    bytes = 0;
+	    byte[] last = null;
+	    long start = System.nanoTime();
+	    for (Object o : perPlayer) {
+		last = serialize(o);
+		bytes += last.length;
+	    }
+	    bestWrite = Math.min(bestWrite, System.nanoTime() - start);
+
+	    start = System.nanoTime();
+	    deserialize(last);
+	    bestRead = Math.min(bestRead, System.nanoTime() - start);
+	}
+	System.out.printf("%6d  %-10s %12d %12.2f %12.3f%n", perPlayer.size(),
+			  form, bytes, bestWrite / 1e6, bestRead / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+	String image = (args.length > 0) ? args[0] : "build/sowpods.dawg";
+	Dawg dictionary = Dawg.load(image);
+	BoggleSolver solver = new BoggleSolver(dictionary);
+	Random rand = new Random(17);
+
+	BoggleSolution solution;
+	do {
+	    solution = solver.solve(new BoardGenerator(rand.nextLong()).generate(4));
+	} while (solution.size() < 100);
+
+	System.out.println("Results sent to every player of a round");
+	System.out.printf("%6s  %-10s %12s %12s %12s%n", "Room", "Form",
+			  "Bytes", "Write (ms)", "Read (ms)");
+	for (int players : PLAYERS) {
+	    GameResults results = new GameResults();
+	    results.computeResults(
+		ScoringBench.room(players, solution, rand), solution);
+
+	    measure("legacy", Collections.nCopies(players, legacy(results)));
+	    measure("custom", Collections.nCopies(players, results));
+
+	    GameResults encoded = new GameResults();
+	    for (ClientInfo info : results.getClientResults().values()) {
+		encoded.addClientResult(info);
+	    }
+	    encoded.encode();
+	    measure("encoded", Collections.nCopies(players, encoded));
+
+	    List<GameResults> summaries = new ArrayList<GameResults>();
+	    for (String name : encoded.getClientNames()) {
+		summaries.add(encoded.summaryFor(name));
+	    }
+	    measure("summary", summaries);
+	}
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Load test for {@link BoggleSocketServer}.  Opens thousands of connections
+ * to a server in the same process, all of which join at once and fill rooms,
+ * then submit their words and wait for the results.  The clients are driven
+ * by one selector thread of their own, so the only other threads are the
+ * server's.  Prints the time each phase took and the number of live threads.
+ * <p>
+ * Each connection takes a file descriptor at both ends, so the number of
+ * clients is limited by the open file limit.
+ * <p>
+ * Usage: java SocketBench [sowpods.dawg] [clients]
+ */
+public class SocketBench {
+
+    /** Players in each room */
+    private static final int ROOM_SIZE = 8;
+
+    /** One simulated client */
+    static class Bot {
+	final SocketChannel channel;
+	final String name;
+	ByteBuffer out;
+	ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+	byte reply;
+
+	Bot(SocketChannel channel, String name) {
+	    this.channel = channel;
+	    this.name = name;
+	}
+
+	/** Reads until a whole frame is in, and returns its type, or 0 */
+	byte read() throws IOException {
+	    if (channel.read(in) < 0) {
+		throw new EOFException(name);
+	    }
+	    if (in.position() >= 4 && in.position() >= 4 + in.getInt(0)) {
+		byte type = in.get(4);
+		in.clear();
+		return type;
+	    }
+	    return 0;
+	}
+    }
+
+    /**
+     * Sends a frame to every bot, then waits for every reply
+     *
+     * @return Number of replies of the expected type
+     */
+    static int exchange(Selector selector, List<Bot> bots, byte expected,
+			boolean join) throws IOException {
+	for (Bot b : bots) {
+	    b.out = join ? BoggleProtocol.join(b.name) :
+		BoggleProtocol.submit(new WordList(), null);
+	    b.reply = 0;
+	    b.channel.keyFor(selector).interestOps(SelectionKey.OP_WRITE);
+	}
+
+	int waiting = bots.size();
+	int ok = 0;
+	while (waiting > 0) {
+	    selector.select();
+	    for (SelectionKey key : selector.selectedKeys()) {
+		Bot b = (Bot) key.attachment();
+		if (key.isWritable()) {
+		    b.channel.write(b.out);
+		    if (!b.out.hasRemaining()) {
+			key.interestOps(SelectionKey.OP_READ);
+		    }
+		}
+		else if (key.isReadable() && b.reply == 0) {
+		    b.reply = b.read();
+		    if (b.reply != 0) {
+			waiting--;
+			ok += (b.reply == expected) ? 1 : 0;
+		    }
+		}
+	    }
+	    selector.selectedKeys().clear();
+	}
+	return ok;
+    }
+
+    public static void main(String[] args) throws Exception {
+	String image = (args.length > 0) ? args[0] : "build/sowpods.dawg";
+	int clients = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+	clients -= clients % ROOM_SIZE;
+
+	BoggleServerApp game =
+	    new BoggleServerApp(Dawg.load(image), ROOM_SIZE);
+	BoggleSocketServer server = new BoggleSocketServer(game, 0);
+	server.start();
+
+	Selector selector = Selector.open();
+	List<Bot> bots = new ArrayList<Bot>();
+	long start = System.nanoTime();
+	for (int i = 0; i < clients; i++) {
+	    SocketChannel channel = SocketChannel.open(
+		new InetSocketAddress("localhost", server.getPort()));
+	    channel.configureBlocking(false);
+	    Bot b = new Bot(channel, "bot" + i);
+	    channel.register(selector, 0, b);
+	    bots.add(b);
+	}
+	long connected = System.nanoTime();
+	while (server.getConnectionCount() < clients) {
+	    Thread.sleep(10);
+	}
+
+	int boards = exchange(selector, bots, BoggleProtocol.BOARD, true);
+	long joined = System.nanoTime();
+	int threads = Thread.activeCount();
+	int results = exchange(selector, bots, BoggleProtocol.RESULTS, false);
+	long finished = System.nanoTime();
+
+	System.out.println("Available processors: " +
+			   Runtime.getRuntime().availableProcessors());
+	System.out.printf("%d connections opened in %.0f ms%n", clients,
+			  (connected - start) / 1e6);
+	System.out.printf("%d boards for %d rooms in %.0f ms%n", boards,
+			  clients / ROOM_SIZE, (joined - connected) / 1e6);
+	System.out.printf("%d results in %.0f ms%n", results,
+			  (finished - joined) / 1e6);
+	System.out.println("Live threads while every room was playing: " +
+			   threads);
+
+	for (Bot b : bots) {
+	    b.channel.close();
+	}
+	server.close();
+	System.exit(0);
+    }
+}
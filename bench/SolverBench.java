@@ -0,0 +1,45 @@
+import java.util.*;
+import java.io.*;
+
+/**
+ * Measures how long {@link BoggleSolver} takes to find every word on random
+ * boards of a few sizes, using the mapped SOWPODS dictionary.
+ * <p>
+ * Usage: java SolverBench [sowpods.dawg]
+ */
+public class SolverBench {
+
+    /** Board sizes to measure */
+    private static final int[] SIZES = { 4, 5, 10 };
+
+    /** Number of distinct boards solved per size */
+    private static final int BOARDS = 2000;
+
+    public static void main(String[] args) throws IOException {
+	String image = (args.length > 0) ? args[0] : "build/sowpods.dawg";
+	BoggleSolver solver = new BoggleSolver(Dawg.load(image));
+
+	System.out.printf("%-6s %14s %14s%n", "size", "usec/board", "words/board");
+	for (int size : SIZES) {
+	    BoggleBoard[] boards = new BoggleBoard[BOARDS];
+	    for (int i = 0; i < BOARDS; i++) {
+		boards[i] = new BoggleBoard(size);
+	    }
+
+	    // Warm up, then keep the best of several passes
+	    long words = 0;
+	    long best = Long.MAX_VALUE;
+	    for (int r = 0; r < 5; r++) {
+		words = 0;
+		long start = System.nanoTime();
+		for (BoggleBoard b : boards) {
+		    words += solver.solve(b).size();
+		}
+		best = Math.min(best, System.nanoTime() - start);
+	    }
+
+	    System.out.printf("%-6s %14.1f %14.1f%n", size + "x" + size,
+			      best / 1e3 / BOARDS, (double) words / BOARDS);
+	}
+    }
+}
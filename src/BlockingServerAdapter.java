@@ -0,0 +1,111 @@
+import java.rmi.RemoteException;
+import java.util.concurrent.*;
+
+/**
+ * Provides the blocking {@link BoggleServer} interface on top of a
+ * {@link BoggleServerV2}.  Each call makes its request, then waits for the
+ * matching notification to arrive at a callback registered for the client.
+ */
+public class BlockingServerAdapter implements BoggleServer {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The server doing the work */
+    private final BoggleServerV2 _server;
+
+    /** The callback of each client with a round in progress, by name */
+    private final ConcurrentMap<String, Waiter> _waiters =
+	new ConcurrentHashMap<String, Waiter>();
+
+    /**
+     * A callback that turns one client's notifications into futures
+     */
+    private static class Waiter implements BoggleCallback {
+	/** Completes with the client's board */
+	final CompletableFuture<BoggleBoard> board =
+	    new CompletableFuture<BoggleBoard>();
+
+	/** Completes with the client's results */
+	final CompletableFuture<GameResults> results =
+	    new CompletableFuture<GameResults>();
+
+	public void onRoundStarted(BoggleBoard b) {
+	    board.complete(b);
+	}
+
+	public void onResults(GameResults r) {
+	    results.complete(r);
+	}
+
+	public void onError(String message) {
+	    PlayerException e = new PlayerException(message);
+	    if (!board.completeExceptionally(e)) {
+		results.completeExceptionally(e);
+	    }
+	}
+    }
+
+    /**
+     * Constructs an adapter
+     *
+     * @param server The server doing the work
+     */
+    public BlockingServerAdapter(BoggleServerV2 server) {
+	if (server == null) {
+	    throw new NullPointerException();
+	}
+	_server = server;
+    }
+
+    public BoggleBoard startGame(String clientName)
+	throws PlayerException, RemoteException {
+	Waiter w = new Waiter();
+	_server.joinGame(clientName, w);
+	_waiters.put(clientName, w);
+	try {
+	    return await(w.board);
+	}
+	catch (PlayerException e) {
+	    _waiters.remove(clientName, w);
+	    throw e;
+	}
+    }
+
+    public GameResults gameOver(String clientName, WordList myWords)
+	throws PlayerException, RemoteException {
+	Waiter w = _waiters.get(clientName);
+	if (w == null) {
+	    throw new PlayerException(clientName + " is unrecognized!");
+	}
+	try {
+	    _server.submitWords(clientName, myWords);
+	    return await(w.results);
+	}
+	finally {
+	    _waiters.remove(clientName, w);
+	}
+    }
+
+    /**
+     * Waits for a notification.  If the thread is interrupted, it just keeps
+     * waiting, since the request can't be taken back.
+     *
+     * @throws PlayerException if the server reported an error
+     */
+    private static <T> T await(Future<T> future) throws PlayerException {
+	while (true) {
+	    try {
+		return future.get();
+	    }
+	    catch (InterruptedException e) {
+		// Keep waiting
+	    }
+	    catch (ExecutionException e) {
+		if (e.getCause() instanceof PlayerException) {
+		    throw (PlayerException) e.getCause();
+		}
+		throw new PlayerException(e.getCause());
+	    }
+	}
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.SplittableRandom;
+
+/**
+ * Generates the letters of random Boggle boards.  Letters are drawn from the
+ * frequencies of the Boggle-clone Loggle, which add up to 96 dice faces; the
+ * generator keeps a 96-entry table with one entry per face, so drawing a
+ * letter is a single random number and an array lookup.
+ * <p>
+ * Cells are generated as letter codes, 0 for 'A' through 25 for 'Z', where
+ * the code for 'Q' ({@link #QU}) stands for the "Qu" die.  Boards are filled
+ * into caller-supplied byte arrays, so generating boards in bulk allocates
+ * nothing.
+ * <p>
+ * Each generator has its own <tt>SplittableRandom</tt>, so a generator created
+ * with a seed always produces the same boards.  Generators are not
+ * thread-safe; use {@link #split} to give each thread its own.
+ */
+public class BoardGenerator {
+
+    /** Letter code of the "Qu" die */
+    public static final int QU = 'Q' - 'A';
+
+    /** Number of dice faces the letter frequencies add up to */
+    static final int FACES = 96;
+
+    /** Letter frequencies, based on the Boggle-clone Loggle, for A through Z */
+    private static final int[] letterDistribution = {
+	8,  // A
+	3,  // B
+	3,  // C
+	4,  // D
+	10, // E
+	2,  // F
+	3,  // G
+	3,  // H
+	7,  // I
+	1,  // J
+	2,  // K
+	5,  // L
+	3,  // M
+	5,  // N
+	6,  // O
+	3,  // P
+	1,  // Qu
+	4,  // R
+	5,  // S
+	5,  // T
+	4,  // U
+	2,  // V
+	2,  // W
+	1,  // X
+	3,  // Y
+	1   // Z
+    };
+
+    /** Letter code of each dice face */
+    private static final byte[] faces = new byte[FACES];
+    static { // Gives each letter as many faces as its frequency
+	int face = 0;
+	for (int letter = 0; letter < letterDistribution.length; letter++) {
+	    for (int i = 0; i < letterDistribution[letter]; i++) {
+		faces[face++] = (byte) letter;
+	    }
+	}
+	assert face == FACES; // makes sure the frequencies add up
+    }
+
+    /** Source of random numbers */
+    private final SplittableRandom _random;
+
+    /**
+     * Default constructor that seeds the generator randomly
+     */
+    public BoardGenerator() {
+	_random = new SplittableRandom();
+    }
+
+    /**
+     * Constructor for a reproducible generator
+     *
+     * @param seed Seed; generators with the same seed produce the same boards
+     */
+    public BoardGenerator(long seed) {
+	_random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Constructor that wraps an existing source of random numbers
+     *
+     * @param random Source of random numbers
+     */
+    private BoardGenerator(SplittableRandom random) {
+	_random = random;
+    }
+
+    /**
+     * Returns a new generator whose boards are independent of this one's,
+     * for use by another thread
+     *
+     * @return New generator split off from this one
+     */
+    public BoardGenerator split() {
+	return new BoardGenerator(_random.split());
+    }
+
+    /**
+     * Draws the letter code for one cell
+     *
+     * @return Letter code, 0-25
+     */
+    public int nextLetter() {
+	return faces[_random.nextInt(FACES)];
+    }
+
+    /**
+     * Fills an array with the letter codes of one board
+     *
+     * @param cells Array to fill, one element per cell
+     */
+    public void fill(byte[] cells) {
+	fill(cells, 0, cells.length);
+    }
+
+    /**
+     * Fills part of an array with random letter codes.  This is the bulk
+     * interface: boards of N*N cells can be packed back to back in one array,
+     * and all filled with a single call.
+     *
+     * @param cells Array to fill
+     * @param offset Index of the first element to fill
+     * @param length Number of elements to fill
+     */
+    public void fill(byte[] cells, int offset, int length) {
+	for (int i = offset; i < offset + length; i++) {
+	    cells[i] = faces[_random.nextInt(FACES)];
+	}
+    }
+
+    /**
+     * Generates a new board
+     *
+     * @param size Length of the NxN board
+     * @return Board filled with random letters
+     */
+    public BoggleBoard generate(int size) {
+	return new BoggleBoard(size, this);
+    }
+
+    /**
+     * Returns the frequency of a letter, as a number of dice faces out of
+     * {@link #FACES}
+     *
+     * @param letter Letter code, 0-25
+     * @return Number of faces showing the letter
+     */
+    static int frequency(int letter) {
+	return letterDistribution[letter];
+    }
+}
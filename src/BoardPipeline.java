@@ -0,0 +1,232 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates and solves Boggle boards ahead of time on background threads, so
+ * that starting a round only has to take the next ready board off a queue.
+ * <p>
+ * Boards can be filtered as they are produced: a board is thrown away if it
+ * has fewer than a minimum number of words, or if the total score of all its
+ * words is above a maximum.  The queue is bounded, so the producers stop
+ * working once enough boards are ready, and pick up again as rounds take
+ * them.
+ * <p>
+ * Each board that is kept is given the {@link WordHashes} of its words, so
+ * that clients can check their players' words without a dictionary.
+ * <p>
+ * The pipeline keeps counts of boards generated, rejected by the filter and
+ * taken, which can be read at any time to watch its queue depth, generation
+ * rate and rejection rate.
+ */
+public class BoardPipeline {
+
+    /** Boards that are solved and ready to play */
+    private final BlockingQueue<BoggleSolution> _ready;
+
+    /** Solver used to solve each board as it is generated */
+    private final BoggleSolver _solver;
+
+    /** Length of the NxN boards to generate */
+    private final int _size;
+
+    /** Fewest words a board may have */
+    private final int _minWords;
+
+    /** Largest total score a board may have */
+    private final int _maxScore;
+
+    /** Background threads generating boards */
+    private final Thread[] _producers;
+
+    /** Number of boards generated and solved */
+    private final AtomicLong _generated = new AtomicLong();
+
+    /** Number of generated boards thrown away by the filter */
+    private final AtomicLong _rejected = new AtomicLong();
+
+    /** Number of boards handed out by {@link #take} */
+    private final AtomicLong _taken = new AtomicLong();
+
+    /** Time (in milliseconds) when the pipeline was started */
+    private volatile long _startTime;
+
+    /** Set when the pipeline is shut down */
+    private volatile boolean _stopped;
+
+    /**
+     * This is the loop run by each producer thread.  It generates, solves and
+     * filters boards, and blocks while the queue is full.
+     */
+    private class Producer implements Runnable {
+	/** This producer's own source of random boards */
+	private final BoardGenerator _generator = new BoardGenerator();
+
+	public void run() {
+	    while (!_stopped) {
+		BoggleSolution solution =
+		    _solver.solve(_generator.generate(_size));
+		_generated.incrementAndGet();
+
+		if (!accept(solution)) {
+		    _rejected.incrementAndGet();
+		    continue;
+		}
+		if (solution.size() <= WordHashes.MAX_WORDS) {
+		    solution.getBoard().setWordHashes(
+			WordHashes.of(solution.getWords()));
+		}
+
+		try {
+		    _ready.put(solution);
+		}
+		catch (InterruptedException e) {
+		    // Shutting down; the loop condition will see it.
+		}
+	    }
+	}
+    }
+
+    /**
+     * Constructs a pipeline that keeps up to <tt>depth</tt> boards ready.  The
+     * producer threads don't run until {@link #start} is called.
+     *
+     * @param solver Solver used to solve each board
+     * @param size Length of the NxN boards to generate
+     * @param depth Number of ready boards to keep queued
+     * @param threads Number of producer threads
+     * @param minWords Fewest words a board may have, or 0 for no minimum
+     * @param maxScore Largest total score a board may have, or
+     *        <tt>Integer.MAX_VALUE</tt> for no maximum
+     */
+    public BoardPipeline(BoggleSolver solver, int size, int depth, int threads,
+			 int minWords, int maxScore) {
+	if (solver == null) {
+	    throw new NullPointerException();
+	}
+	if (depth < 1 || threads < 1) {
+	    throw new IllegalArgumentException();
+	}
+	_solver = solver;
+	_size = size;
+	_minWords = minWords;
+	_maxScore = maxScore;
+	_ready = new ArrayBlockingQueue<BoggleSolution>(depth);
+
+	_producers = new Thread[threads];
+	for (int i = 0; i < threads; i++) {
+	    _producers[i] = new Thread(new Producer(), "BoardPipeline-" + i);
+	    _producers[i].setDaemon(true);
+	}
+    }
+
+    /**
+     * Checks a solved board against the filter
+     *
+     * @param solution Solved board
+     * @return True if the board can be played
+     */
+    private boolean accept(BoggleSolution solution) {
+	return solution.size() >= _minWords &&
+	    solution.getTotalScore() <= _maxScore;
+    }
+
+    /**
+     * Starts the producer threads
+     */
+    public void start() {
+	_startTime = System.currentTimeMillis();
+	for (Thread t : _producers) {
+	    t.start();
+	}
+    }
+
+    /**
+     * Stops the producer threads.  Boards already queued can still be taken.
+     */
+    public void shutdown() {
+	_stopped = true;
+	for (Thread t : _producers) {
+	    t.interrupt();
+	}
+    }
+
+    /**
+     * Takes the next ready board, waiting for one if none are queued
+     *
+     * @return Solved board that passed the filter
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public BoggleSolution take() throws InterruptedException {
+	BoggleSolution solution = _ready.take();
+	_taken.incrementAndGet();
+	return solution;
+    }
+
+    /**
+     * Returns the solver the boards are solved with
+     *
+     * @return The pipeline's solver
+     */
+    public BoggleSolver getSolver() {
+	return _solver;
+    }
+
+    /**
+     * Returns the number of boards that are ready to be taken
+     *
+     * @return Current queue depth
+     */
+    public int getQueueDepth() {
+	return _ready.size();
+    }
+
+    /**
+     * Returns the number of boards generated and solved so far, including
+     * the ones the filter rejected
+     *
+     * @return Number of boards generated
+     */
+    public long getGeneratedCount() {
+	return _generated.get();
+    }
+
+    /**
+     * Returns the number of boards the filter has rejected so far
+     *
+     * @return Number of boards rejected
+     */
+    public long getRejectedCount() {
+	return _rejected.get();
+    }
+
+    /**
+     * Returns the number of boards taken so far
+     *
+     * @return Number of boards taken
+     */
+    public long getTakenCount() {
+	return _taken.get();
+    }
+
+    /**
+     * Returns the average number of boards generated per second since the
+     * pipeline was started.  The producers idle while the queue is full, so
+     * this is the rate the pipeline has needed, not the most it could do.
+     *
+     * @return Boards generated per second
+     */
+    public double getGenerationRate() {
+	long elapsed = System.currentTimeMillis() - _startTime;
+	return (elapsed > 0) ? 1000.0 * _generated.get() / elapsed : 0;
+    }
+
+    /**
+     * Returns the fraction of generated boards that the filter has rejected
+     *
+     * @return Rejected boards over generated boards, between 0 and 1
+     */
+    public double getRejectionRate() {
+	long generated = _generated.get();
+	return (generated > 0) ? (double) _rejected.get() / generated : 0;
+    }
+}
@@ -1,86 +1,87 @@
 import java.util.*;
-import java.io.Serializable;
+import java.io.*;
 
 /**
  * A class to represent the actual Boggle Board of size NxN, with randomly generated
  * strings that represent distribution of letters of the English language
+ * <p>
+ * Internally each cell is stored as a one-byte letter code, 0 for 'A' through
+ * 25 for 'Z', where the code for 'Q' ({@link BoardGenerator#QU}) is the "Qu"
+ * die.  Cell (x,y) is numbered <tt>x * size + y</tt>.  The serialized form is
+ * just the size and the letter codes, so a 4x4 board takes 17 bytes of data,
+ * followed by the {@link WordHashes} of the board's words if the server has
+ * set them, so that clients can check words without a dictionary.
+ * <p>
+ * For boards of up to 8x8, all the cell numbers fit in the bits of a
+ * <tt>long</tt>, so the cells adjacent to each cell are kept as a bitboard
+ * mask, and adjacency and path checks are bit operations.
  *
  * @author Joey Hong
  */
 public class BoggleBoard implements Serializable{
    
-    /** Hashmap of letter distribution, based on the Boggle-clone Loggle */
-    private static final Map<String,Integer> letterDistribution 
-	= new HashMap<String, Integer>();
-    static { //Initializes the HashMap
-	letterDistribution.put("A", 8);
-	letterDistribution.put("B", 3);
-	letterDistribution.put("C", 3);
-	letterDistribution.put("D", 4);
-	letterDistribution.put("E", 10);
-	letterDistribution.put("F", 2);
-	letterDistribution.put("G", 3);
-	letterDistribution.put("H", 3);
-	letterDistribution.put("I", 7);
-	letterDistribution.put("J", 1);
-	letterDistribution.put("K", 2);
-	letterDistribution.put("L", 5);
-	letterDistribution.put("M", 3);
-	letterDistribution.put("N", 5);
-	letterDistribution.put("O", 6);
-	letterDistribution.put("P", 3);
-	letterDistribution.put("Qu", 1);
-	letterDistribution.put("R", 4);
-	letterDistribution.put("S", 5);
-	letterDistribution.put("T", 5);
-	letterDistribution.put("U", 4);
-	letterDistribution.put("V", 2);
-	letterDistribution.put("W", 2);
-	letterDistribution.put("X", 1);
-	letterDistribution.put("Y", 3);
-	letterDistribution.put("Z", 1);
-    }
-
-    /** 2D array that represents the board */
-    private String[][] _board;
+    /** String shown on the die for each letter code; Q is always "Qu" */
+    private static final String[] cellStrings = new String[26];
+    static { //Initializes the die strings
+	for (int i = 0; i < 26; i++) {
+	    cellStrings[i] = String.valueOf((char) ('A' + i));
+	}
+	cellStrings[BoardGenerator.QU] = "Qu";
+    }
 
-    /**
-     * Selects a random string from the letterDistribution, taking into account
-     * each string's frequency from the distribution
-     *
-     * @return Random string [A-Z] excluding Q, and Qu
-     */
-    private String randomString() {
-	Random rand = new Random();
-	int randInt = rand.nextInt(96);
-
-	String randString = null;
-	int cdf = 0; // tracks the cumulative frequency of letter distribution
-	for (Map.Entry<String, Integer> entry : letterDistribution.entrySet()){
-	    if (cdf + entry.getValue() >= randInt) {
-		randString = entry.getKey();
-		break;
+    /** Generator for each thread that creates boards without one */
+    private static final ThreadLocal<BoardGenerator> generators
+	= new ThreadLocal<BoardGenerator>() {
+	    @Override protected BoardGenerator initialValue() {
+		return new BoardGenerator();
 	    }
-	    cdf += entry.getValue();
-	}
+	};
 
-	assert randString != null; // makes sure random letter was chosen
-	return randString;
-    }
+    /** Largest board that fits in a bitboard */
+    public static final int MAX_BITBOARD_SIZE = 8;
 
-    /** 
-     *Fills the board with random strings 
-     *
-     * @param size Length of the NxN board
-     */
-    private void generateBoard(int size) {
-	for (int i = 0; i < size(); i++) {
-	    for (int j =0; j < size(); j++) {
-		_board[i][j] = randomString();
+    /** Largest board size, so that the size fits in one serialized byte */
+    public static final int MAX_SIZE = 255;
+
+    /** Neighbor bitboards for each size up to MAX_BITBOARD_SIZE */
+    private static final long[][] neighborMasks
+	= new long[MAX_BITBOARD_SIZE + 1][];
+    static { //Initializes the bitboards
+	for (int size = 1; size <= MAX_BITBOARD_SIZE; size++) {
+	    long[] masks = new long[size * size];
+	    for (int x = 0; x < size; x++) {
+		for (int y = 0; y < size; y++) {
+		    for (int i = x - 1; i <= x + 1; i++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+			    if ((i >= 0 && i < size) && (j >= 0 && j < size) &&
+				(i != x || j != y)) {
+				masks[x * size + y] |= 1L << (i * size + j);
+			    }
+			}
+		    }
+		}
 	    }
+	    neighborMasks[size] = masks;
 	}
     }
 
+    private static final long serialVersionUID = 1L;
+
+    /** Version of the serialized form written by {@link #writeObject} */
+    static final int SERIAL_VERSION = 2;
+
+    /** The first version, which has no word hashes; it can still be read */
+    private static final int NO_HASHES_VERSION = 1;
+
+    /** Length of the NxN board */
+    private transient int _size;
+
+    /** Letter code of each cell, indexed by cell number */
+    private transient byte[] _cells;
+
+    /** Every word on the board, as hashes, or null if they aren't known */
+    private transient volatile WordHashes _words;
+
     /** Constant for the default size of board */
     public static final int DEFAULT_SIZE = 4;
 
@@ -89,9 +90,7 @@ public class BoggleBoard implements Serializable{
      * constant DEFAULT_SIZE, and fills the board with random strings
      */
     BoggleBoard() {
-	_board = new String[DEFAULT_SIZE][DEFAULT_SIZE];
-
-	generateBoard(DEFAULT_SIZE);
+	this(DEFAULT_SIZE);
     }
 
     /**
@@ -101,9 +100,118 @@ public class BoggleBoard implements Serializable{
      * @param size length of the NxN board
      */
     BoggleBoard(int size) {
-	_board = new String[size][size];
+	this(size, generators.get());
+    }
+
+    /**
+     * Constructor that fills the board from a specific generator, so that
+     * seeded generators give reproducible boards
+     *
+     * @param size length of the NxN board
+     * @param generator Source of the random letters
+     */
+    BoggleBoard(int size, BoardGenerator generator) {
+	checkSize(size);
+	_size = size;
+	_cells = new byte[size * size];
+
+	generator.fill(_cells);
+    }
+
+    /**
+     * Constructor that takes the contents of every cell, so that boards can
+     * be set up exactly (for example in tests)
+     *
+     * @param cells NxN array of cell strings, indexed by (x,y)
+     * @throws IllegalArgumentException if the array isn't square, or a cell
+     *         isn't a single letter other than Q, or "Qu"
+     */
+    BoggleBoard(String[][] cells) {
+	checkSize(cells.length);
+	_size = cells.length;
+	_cells = new byte[_size * _size];
+
+	for (int i = 0; i < _size; i++) {
+	    if (cells[i].length != _size) {
+		throw new IllegalArgumentException("Board must be square");
+	    }
+	    for (int j = 0; j < _size; j++) {
+		_cells[i * _size + j] = (byte) letterCode(cells[i][j]);
+	    }
+	}
+    }
 
-	generateBoard(size);
+    /**
+     * Constructor that takes the letter code of every cell, as read back from
+     * {@link #getLetterCode}
+     *
+     * @param size length of the NxN board
+     * @param codes Letter codes, one per cell in row-major order
+     * @throws IllegalArgumentException if there aren't size * size codes, or a
+     *         code isn't 0-25
+     */
+    BoggleBoard(int size, byte[] codes) {
+	checkSize(size);
+	if (codes.length != size * size) {
+	    throw new IllegalArgumentException("Expected " + (size * size) +
+					       " cells, got " + codes.length);
+	}
+	for (byte code : codes) {
+	    if (code < 0 || code >= cellStrings.length) {
+		throw new IllegalArgumentException("Bad letter code: " + code);
+	    }
+	}
+	_size = size;
+	_cells = codes.clone();
+    }
+
+    /**
+     * Checks that a board size is supported
+     *
+     * @param size length of the NxN board
+     * @throws IllegalArgumentException if the size is out of range
+     */
+    private static void checkSize(int size) {
+	if (size < 1 || size > MAX_SIZE) {
+	    throw new IllegalArgumentException("Bad board size: " + size);
+	}
+    }
+
+    /**
+     * Returns the letter code for the string on a die
+     *
+     * @param cell String on the die, such as "A" or "Qu"
+     * @return Letter code, 0-25
+     * @throws IllegalArgumentException if the string isn't a die
+     */
+    private static int letterCode(String cell) {
+	for (int code = 0; code < cellStrings.length; code++) {
+	    if (cellStrings[code].equals(cell)) {
+		return code;
+	    }
+	}
+	throw new IllegalArgumentException("Not a Boggle die: " + cell);
+    }
+
+    /**
+     * Returns the words that can be found on the board, for clients to check
+     * their players' words against
+     *
+     * @return Hashes of the board's words, or null if the server didn't send
+     *         them
+     */
+    public WordHashes getWordHashes() {
+	return _words;
+    }
+
+    /**
+     * Sets the words that can be found on the board.  The server does this
+     * once the board is solved, before handing it out.
+     *
+     * @param words Hashes of the board's words, or null
+     */
+    void setWordHashes(WordHashes words) {
+	_words = words;
     }
 
     /** 
@@ -112,7 +220,7 @@ public class BoggleBoard implements Serializable{
      * @return Length of the board
      */
     public int size() {
-	return _board.length;
+	return _size;
     }
 
     /**
@@ -129,7 +237,138 @@ public class BoggleBoard implements Serializable{
 	if (y < 0 || y >= size()) {
 	    throw new IndexOutOfBoundsException();
 	}
-	return _board[x][y];
+	return cellStrings[_cells[x * _size + y]];
     }
 
-}
\ No newline at end of file
+    /**
+     * Returns the letter code of a cell, without bounds checks on the
+     * coordinates
+     *
+     * @param cell Cell number, <tt>x * size + y</tt>
+     * @return Letter code, 0-25, where {@link BoardGenerator#QU} is "Qu"
+     */
+    public int getLetterCode(int cell) {
+	return _cells[cell];
+    }
+
+    /**
+     * Returns the neighbor bitboards for an NxN board.  Bit <tt>b</tt> of
+     * entry <tt>c</tt> is set when cells <tt>b</tt> and <tt>c</tt> are adjacent.
+     *
+     * @param size Length of the NxN board, at most {@link #MAX_BITBOARD_SIZE}
+     * @return Shared array of masks; callers must not modify it
+     */
+    static long[] neighborMasks(int size) {
+	return neighborMasks[size];
+    }
+
+    /**
+     * Checks if two cells are adjacent: horizontally, vertically or
+     * diagonally next to each other
+     *
+     * @param a Cell number of the first cell
+     * @param b Cell number of the second cell
+     * @return True if the cells are different and touch; false if either
+     *         is off the board
+     */
+    public boolean isAdjacent(int a, int b) {
+	int cells = _size * _size;
+	if (a < 0 || a >= cells || b < 0 || b >= cells) {
+	    return false;
+	}
+	if (_size <= MAX_BITBOARD_SIZE) {
+	    return (neighborMasks[_size][a] & (1L << b)) != 0;
+	}
+	int dx = a / _size - b / _size;
+	int dy = a % _size - b % _size;
+	return a != b && dx >= -1 && dx <= 1 && dy >= -1 && dy <= 1;
+    }
+
+    /**
+     * Checks that a sequence of cells is a legal Boggle path: every cell is
+     * on the board, each cell is adjacent to the one before it, and no cell
+     * is used twice
+     *
+     * @param path Cell numbers along the path
+     * @return True if the path is legal
+     */
+    public boolean isValidPath(int[] path) {
+	int cells = _size * _size;
+	if (_size <= MAX_BITBOARD_SIZE) {
+	    long[] masks = neighborMasks[_size];
+	    long visited = 0;
+	    long allowed = (cells == 64) ? -1L : (1L << cells) - 1;
+	    for (int cell : path) {
+		if (cell < 0 || cell >= cells) {
+		    return false;
+		}
+		long bit = 1L << cell;
+		if ((allowed & bit) == 0) {
+		    return false;
+		}
+		visited |= bit;
+		allowed = masks[cell] & ~visited;
+	    }
+	    return true;
+	}
+
+	BitSet visited = new BitSet(cells);
+	for (int i = 0; i < path.length; i++) {
+	    int cell = path[i];
+	    if (cell < 0 || cell >= cells || visited.get(cell) ||
+		(i > 0 && !isAdjacent(path[i - 1], cell))) {
+		return false;
+	    }
+	    visited.set(cell);
+	}
+	return true;
+    }
+
+    /**
+     * Writes the board as its size followed by one letter code per cell, then
+     * the hashes of its words
+     *
+     * @serialData The version as a byte, the size as an unsigned byte, then
+     *             the size * size letter codes as bytes, then a boolean that
+     *             is true if the word hashes follow, in the form written by
+     *             {@link WordHashes#write}
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	out.writeByte(SERIAL_VERSION);
+	out.writeByte(_size);
+	out.write(_cells);
+	WordHashes words = _words;
+	out.writeBoolean(words != null);
+	if (words != null) {
+	    words.write(out);
+	}
+    }
+
+    /**
+     * Reads a board written by {@link #writeObject}
+     */
+    private void readObject(ObjectInputStream in)
+	throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	int version = in.readByte();
+	if (version != SERIAL_VERSION && version != NO_HASHES_VERSION) {
+	    throw new InvalidObjectException("Unknown version " + version);
+	}
+	_size = in.readUnsignedByte();
+	if (_size < 1) {
+	    throw new InvalidObjectException("Bad board size: " + _size);
+	}
+	_cells = new byte[_size * _size];
+	in.readFully(_cells);
+
+	for (byte code : _cells) {
+	    if (code < 0 || code >= cellStrings.length) {
+		throw new InvalidObjectException("Bad letter code: " + code);
+	    }
+	}
+	if (version != NO_HASHES_VERSION && in.readBoolean()) {
+	    _words = WordHashes.read(in);
+	}
+    }
+}
@@ -0,0 +1,37 @@
+import java.rmi.*;
+
+/**
+ * This interface is implemented by Boggle clients that use the
+ * {@link BoggleServerV2} interface.  The server calls it to tell the client
+ * when its round has started, and when the results of the round are ready,
+ * so that the client doesn't need to keep a call open while it waits.
+ * <p>
+ * Notifications are made from a pool of server threads, so implementations
+ * shouldn't do any slow work on the calling thread.  Swing clients should hand
+ * the notifications over to the event-dispatch thread.
+ **/
+public interface BoggleCallback extends Remote {
+
+  /**
+   * This method is called when the client has been put into a round.
+   *
+   * @param board The Boggle board to use for the round.
+   **/
+  public void onRoundStarted(BoggleBoard board) throws RemoteException;
+
+  /**
+   * This method is called when every player in the client's round has
+   * submitted their words, and the round has been scored.
+   *
+   * @param results The results of the round.
+   **/
+  public void onResults(GameResults results) throws RemoteException;
+
+  /**
+   * This method is called instead of the others if the client's request
+   * couldn't be carried out.
+   *
+   * @param message A description of what went wrong.
+   **/
+  public void onError(String message) throws RemoteException;
+}
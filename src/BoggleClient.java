@@ -1,13 +1,15 @@
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.io.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.concurrent.ExecutionException;
 
 import java.rmi.*;
 import java.rmi.registry.Registry;
 import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
 
 import javax.swing.*;
 
@@ -39,50 +41,106 @@ public class BoggleClient extends JFrame {
     /** Username of client acessing the Boggle Server */
     private String _username;
     
-    /** RMI Server being used */
-    private BoggleServer _server;
+    /** Server being used, over RMI or sockets */
+    private BoggleServerV2 _server;
+
+    /** Callback the server sends the board and results to */
+    private BoggleCallback _callback;
     
     /** Dialog-object that displays when waiting to join new game */
     private JStartDialog _startDialog;
 
+    /** Number of found words that are sent to the server as a batch */
+    private static final int BATCH_SIZE = 10;
+
+    /** Most time found words wait before they are sent, in milliseconds */
+    private static final int BATCH_DELAY = 5000;
+
+    /** Words found since the last batch was sent to the server */
+    private WordList _pendingWords = new WordList();
+
+    /** Sends the pending words every {@link #BATCH_DELAY} during a round */
+    private javax.swing.Timer _batchTimer;
+
     /**
-     * Allows for swing multithreading so UI doesn't freeze when starting
-     * new game.
+     * Thread requests are sent from, one at a time, so that the last words
+     * of a round never overtake a batch sent before them
+     */
+    private final ExecutorService _requests =
+	Executors.newSingleThreadExecutor();
+
+    /**
+     * Receives notifications from the server, and hands them to the Swing
+     * event thread.
+     */
+    private class RoundCallback implements BoggleCallback {
+
+	public void onRoundStarted(final BoggleBoard board) {
+	    SwingUtilities.invokeLater(new Runnable() {
+		    public void run() {
+			roundStarted(board);
+		    }
+		});
+	}
+
+	public void onResults(final GameResults results) {
+	    SwingUtilities.invokeLater(new Runnable() {
+		    public void run() {
+			JGameResultsDialog dialog =
+			    new JGameResultsDialog(results, BoggleClient.this, true);
+			dialog.setVisible(true);
+		    }
+		});
+	}
+
+	public void onError(final String message) {
+	    SwingUtilities.invokeLater(new Runnable() {
+		    public void run() {
+			if (_startDialog != null) {
+			    _startDialog.dispose();
+			}
+			showError("Server error:\n" + message);
+			roundEnded();
+		    }
+		});
+	}
+    }
+
+    /**
+     * Sends a request to the server off the Swing event thread, so the UI
+     * doesn't freeze while it is on its way.  Requests are sent in the order
+     * they are made.  The reply comes back through the callback.
      *
      * @author Joey Hong
      */
-    private class StartGameWorker extends SwingWorker<BoggleBoard, Object> {
-	
-	/** Empty default constructor */
-	public StartGameWorker() {           
+    private abstract class RequestWorker extends SwingWorker<Object, Object> {
+
+	/** Sends the request */
+	protected abstract void request() throws PlayerException, RemoteException;
+
+	/** Queues the request behind any others still being sent */
+	void send() {
+	    _requests.execute(this);
 	}
-	
-	@Override protected BoggleBoard doInBackground() 
+
+	@Override protected Object doInBackground()
 	    throws PlayerException, RemoteException {
-	    
-	    return _server.startGame(_username);
+	    request();
+	    return null;
 	}
 
 	@Override protected void done() {
 	    try {
-		_startDialog.dispose();
-		_board.setBoard(get());
-		
-		_startGame.setEnabled(false);
-		
-		_addWord.setEnabled(true);
-		_clearWord.setEnabled(true);
-		
-		_timer.startTimer();
+		get();
 	    }
-	    catch(Exception e) {
-		JOptionPane.showMessageDialog(null, 
-					      "Error connecting to server:\n" + e.getCause(),					      
-					      "Server Error", JOptionPane.ERROR_MESSAGE);
-		_startGame.setEnabled(true);
+	    catch (Exception e) {
+		if (_startDialog != null) {
+		    _startDialog.dispose();
+		}
+		showError("Error connecting to server:\n" + e.getCause());
+		roundEnded();
 	    }
 	}
-	
     }
 
     /**
@@ -91,11 +149,16 @@ public class BoggleClient extends JFrame {
      */
     private void newGame() {
 	_foundWords.clear_words();
+	_pendingWords = new WordList();
 	_board.removeAll();
+	_startGame.setEnabled(false);
 	
-	// creates a SwingWorker that connects to server 
-	StartGameWorker startWorker = new StartGameWorker();
-	startWorker.execute();    
+	// asks to join a round; the board arrives at the callback
+	new RequestWorker() {
+	    protected void request() throws PlayerException, RemoteException {
+		_server.joinGame(_username, _callback);
+	    }
+	}.send();
 	
 	_startDialog = new JStartDialog(this);
 	_startDialog.setVisible(true);
@@ -103,31 +166,94 @@ public class BoggleClient extends JFrame {
     }
 
     /**
-     * Helper method that ends the round
+     * Helper method called once the board arrives. Starts the timer.
+     *
+     * @param board The board of the round
      */
-    private void endGame() {
-	try {
-	    GameResults finalResults = _server.gameOver(_username, _foundWords.getWords());
+    private void roundStarted(BoggleBoard board) {
+	_startDialog.dispose();
+	_board.setBoard(board);
+	_foundWords.setBoard(board);
 	
-	    JGameResultsDialog results = new JGameResultsDialog(finalResults, this, true);
-	    results.setVisible(true);
-	}
-	catch (Exception e) {
-	    JOptionPane.showMessageDialog(null, 
-					  "Error exiting server:\n" + e.getCause(),					      
-					  "Server Error", JOptionPane.ERROR_MESSAGE);
+	_addWord.setEnabled(true);
+	_clearWord.setEnabled(true);
+	
+	_timer.startTimer();
+	_batchTimer.restart();
+    }
 
-	}
-	finally {
-	    _board.disableBoard();
-	    
-	    _startGame.setEnabled(true);
-	    
-	    _addWord.setEnabled(false);
-	    _clearWord.setEnabled(false);
+    /**
+     * Helper method that records a found word, and sends the pending words
+     * to the server once there are enough of them
+     *
+     * @param word Word that was found
+     */
+    private void addWord(String word) {
+	int found = _foundWords.getSize();
+	_foundWords.add_word(word);
+	if (_foundWords.getSize() > found) {
+	    _pendingWords.add(word);
+	    if (_pendingWords.size() >= BATCH_SIZE) {
+		sendBatch();
+	    }
 	}
     }
 
+    /**
+     * Helper method that sends the words found since the last batch, so the
+     * server can check and count them while the round goes on.  The batch is
+     * sent even if it is empty, as a heartbeat that renews the client's lease.
+     */
+    private void sendBatch() {
+	final WordList batch = _pendingWords;
+	_pendingWords = new WordList();
+	new RequestWorker() {
+	    protected void request() throws PlayerException, RemoteException {
+		_server.streamWords(_username, batch);
+	    }
+	}.send();
+    }
+
+    /**
+     * Helper method that ends the round. The words not yet sent in a batch
+     * are sent from a worker thread, and the results arrive at the callback
+     * once every player in the room is done.
+     */
+    private void endGame() {
+	final WordList words = _pendingWords;
+	_pendingWords = new WordList();
+	new RequestWorker() {
+	    protected void request() throws PlayerException, RemoteException {
+		_server.submitWords(_username, words);
+	    }
+	}.send();
+
+	roundEnded();
+    }
+
+    /**
+     * Helper method that resets the controls between rounds
+     */
+    private void roundEnded() {
+	_batchTimer.stop();
+	_board.disableBoard();
+	
+	_startGame.setEnabled(true);
+	
+	_addWord.setEnabled(false);
+	_clearWord.setEnabled(false);
+    }
+
+    /**
+     * Helper method that shows an error dialog
+     *
+     * @param message What went wrong
+     */
+    private void showError(String message) {
+	JOptionPane.showMessageDialog(null, message, "Server Error",
+				      JOptionPane.ERROR_MESSAGE);
+    }
+
     /**
      * This class handles all the actions in the Boggle GUI
      *
@@ -149,7 +275,7 @@ public class BoggleClient extends JFrame {
 		break;
 
 	    case "add":
-		_foundWords.add_word(_board.getWord());
+		addWord(_board.getWord());
 		_board.clearSelections();
 		break;
 
@@ -160,6 +286,10 @@ public class BoggleClient extends JFrame {
 	    case "end":
 		endGame();
 		break;
+
+	    case "batch":
+		sendBatch();
+		break;
 	    }
 	}
     }
@@ -170,13 +300,23 @@ public class BoggleClient extends JFrame {
     /**
      * Default constructor that creates a frame and initializes class fields 
      */
-    public BoggleClient(String name, BoggleServer s) {
+    public BoggleClient(String name, BoggleServerV2 s) {
 	super("Boggle!");
 	setDefaultCloseOperation(EXIT_ON_CLOSE);
 
 	// Initializes client username and server being connected to
 	_username = name;
 	_server = s;
+	_callback = new RoundCallback();
+	if (!(s instanceof BoggleSocketClient)) {
+	    // An RMI server calls back through a stub of the callback
+	    try {
+		UnicastRemoteObject.exportObject(_callback, 0);
+	    }
+	    catch (RemoteException e) {
+		throw new IllegalStateException("Couldn't export callback", e);
+	    }
+	}
 
 	getContentPane().setLayout( new BorderLayout());
 
@@ -206,6 +346,10 @@ public class BoggleClient extends JFrame {
 
 	// Boggle Timer
 	_timer = new JBoggleTimer();
+
+	// sends found words in batches while the round goes on
+	_batchTimer = new javax.swing.Timer(BATCH_DELAY, handler);
+	_batchTimer.setActionCommand("batch");
 	_timer.setTimeRemaining(3 * 10); // timer goes for 3 minutes
 
 	_timer.setActionCommand("end");
@@ -269,17 +413,32 @@ public class BoggleClient extends JFrame {
     }
 
     public static void main(String[] args) {
-	String usage = "Usage: java BoggleClient <username> <hostname>";
-	if (args.length < 1 || args.length > 2) {
+	String usage =
+	    "Usage: java BoggleClient <username> <hostname> <rmi|socket>";
+	if (args.length < 1 || args.length > 3) {
 	    System.err.println(usage);
 	    System.exit(1);
 	}
 	String username = args[0];
 	String hostname = (args.length == 1) ? null : args[1];
+	String transport = (args.length < 3) ? "rmi" : args[2];
        
 	try {
-            Registry registry = LocateRegistry.getRegistry(hostname, 1099);
-            BoggleServer stub = (BoggleServer) registry.lookup("BoggleServer");
+	    // Connects to the server using the chosen transport
+	    BoggleServerV2 stub;
+	    if (transport.equals("socket")) {
+		stub = new BoggleSocketClient(hostname,
+					      BoggleProtocol.DEFAULT_PORT);
+	    }
+	    else if (transport.equals("rmi")) {
+		Registry registry = LocateRegistry.getRegistry(hostname, 1099);
+		stub = (BoggleServerV2) registry.lookup("BoggleServer");
+	    }
+	    else {
+		System.err.println(usage);
+		System.exit(1);
+		return;
+	    }
 	        
 	    javax.swing.SwingUtilities.invokeLater(new Runnable() {
 		    public void run() {
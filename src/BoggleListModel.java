@@ -1,5 +1,4 @@
 import java.util.*;
-import java.io.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -8,22 +7,22 @@ import javax.swing.*;
 
 /**
  * This class will be an implementation of the AbstractListModel, keeping track of the user's
- * found words and the dictionary set of all words
+ * found words.  Words are checked against the words of the round's board, which the server
+ * sends along with the board as {@link WordHashes}, so the client needs no dictionary.
+ * A board from an older server comes without them; its words are only checked for a path
+ * on the board, and are shown with a question mark since they may not be words at all.
  *
  * @author Joey Hong
  */
 public class BoggleListModel extends AbstractListModel {
-    /** Acts as a dictionary of all possible words */
-    private static WordList _dictionary;
-    static {
-	try {
-	    _dictionary = WordList.loadFromGZipFile("/Users/joeyhong/java/advlabs/boggle/res/sowpods.txt.gz");
-	}
-	catch (IOException e) {
-	    System.err.println("Error - Couldn't read file");
-	    System.exit(1);
-	} 
-    }
+    /** Board of the current round, or null before the first round */
+    private BoggleBoard _board;
+
+    /** Words that can be found on the current board, or null if the server didn't send them */
+    private WordHashes _boardWords;
+
+    /** Found words that were only checked for a path, since the board came without its words */
+    private Set<String> _unchecked;
 
     /** Saves previous size of the list */
     private int _size; // keeps track of the size of _listModel before change to fire actions
@@ -40,18 +39,53 @@ public class BoggleListModel extends AbstractListModel {
     public BoggleListModel() {
 	_found = new WordList();
 	_listModel = new ArrayList<String>();
+	_unchecked = new HashSet<String>();
 	_size = 0;
     }
 
     /**
-     * Adds a word into the list, if it's over 3 letters and is in the dictionary of possible words. 
+     * Sets the board that words are found on
+     *
+     * @param board Board of the round
+     */
+    public void setBoard(BoggleBoard board) {
+	_board = board;
+	_boardWords = board.getWordHashes();
+    }
+
+    /**
+     * Checks that a word can be spelled by a path on the board, by solving the board with a
+     * dictionary of just that word
+     *
+     * @param word Lower-case word to be checked
+     * @return True if the word is on the board
+     */
+    private boolean hasPath(String word) {
+	Dawg only = Dawg.fromWords(Collections.singletonList(word));
+	return new BoggleSolver(only).solve(_board).contains(word);
+    }
+
+    /**
+     * Adds a word into the list, if it's over 3 letters and can be found on the board.
+     * If the server didn't send the board's words, a word is added if it has a path on
+     * the board, and is marked as unchecked; the server rejects it if it isn't a word.
      * Notifies the event listeners if successful.
      *
      * @param word String to be added into list
      */
     public void add_word(String word) {
-	if (word.length() >= 3) {
-	    if (_dictionary.contains(word) && !_found.contains(word)) {
+	if (word.length() >= 3 && _board != null && !_found.contains(word)) {
+	    boolean onBoard;
+	    if (_boardWords != null) {
+		onBoard = _boardWords.contains(word);
+	    }
+	    else {
+		onBoard = hasPath(word);
+		if (onBoard) {
+		    _unchecked.add(word);
+		}
+	    }
+	    if (onBoard) {
 		_found.add(word);
 		_listModel.add(word);
 	     
@@ -68,6 +102,7 @@ public class BoggleListModel extends AbstractListModel {
 	if (_found.size() != 0) {
 	    _found.clear();
 	    _listModel.clear();
+	    _unchecked.clear();
 	    
 	    fireIntervalRemoved(this, 0, _size - 1);
 	    _size = 0;
@@ -93,7 +128,8 @@ public class BoggleListModel extends AbstractListModel {
     }
 
     /**
-     * Overriden method that returns the element at a specified index
+     * Overriden method that returns the element at a specified index.  Words that were
+     * only checked for a path have a question mark after them.
      *
      * @param index Index within the list 
      * @return Object that is accessed by the list index
@@ -102,7 +138,8 @@ public class BoggleListModel extends AbstractListModel {
 	if (index < 0 || index >= _listModel.size()) {
 	    throw new IndexOutOfBoundsException();
 	}
-	return _listModel.get(index);
+	String word = _listModel.get(index);
+	return _unchecked.contains(word) ? word + " ?" : word;
     }
     
 }
@@ -0,0 +1,329 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol spoken between {@link BoggleSocketServer} and
+ * {@link BoggleSocketClient}.  Every message is a frame: a 4-byte big-endian
+ * length, then a 1-byte message type, then the body.  The length counts the
+ * type byte and the body.
+ * <p>
+ * A round is four messages, with any number of WORDS messages between BOARD
+ * and SUBMIT:
+ * <pre>
+ * Type      Direction        Body
+ * JOIN      client->server   name
+ * BOARD     server->client   size (unsigned byte), then one letter code
+ *                            (0-25) per cell in row-major order, then the
+ *                            fingerprint of the server's dictionary (long),
+ *                            then a boolean that is true if the board's
+ *                            word hashes follow
+ * WORDS     client->server   word list of words found so far; no reply
+ * SUBMIT    client->server   word list of the rest of the words found
+ * RESULTS   server->client   number of players (int), then for each one:
+ *                            name, score (int), submitted word list,
+ *                            scored word list, rejected word list; in a
+ *                            summary, only the receiving player's lists
+ *                            have any words
+ * ERROR     server->client   message; sent instead of BOARD or RESULTS
+ * </pre>
+ * Strings are written as by <tt>DataOutput.writeUTF</tt>.  Word lists are in
+ * the compact form written by {@link WordList#write}.  A client that has a
+ * dictionary with the fingerprint sent in BOARD may send its words as
+ * ordinals of that dictionary; results are always front-coded, since the
+ * server can't tell which clients have its dictionary.  Word hashes are in
+ * the form written by {@link WordHashes#write}; they let a client with no
+ * dictionary check its player's words, and clients that don't know them may
+ * ignore the rest of the BOARD body.  After RESULTS the
+ * client may send JOIN again to play another round on the same connection.
+ */
+public final class BoggleProtocol {
+
+    /** Port the socket server listens on by default */
+    public static final int DEFAULT_PORT = 1100;
+
+    /** Client asks to play in the next round */
+    public static final byte JOIN = 1;
+
+    /** Server sends the board of the client's round */
+    public static final byte BOARD = 2;
+
+    /** Client submits the words it found */
+    public static final byte SUBMIT = 3;
+
+    /** Server sends the results of the round */
+    public static final byte RESULTS = 4;
+
+    /** Server reports that a request failed */
+    public static final byte ERROR = 5;
+
+    /** Client sends a batch of the words it has found so far */
+    public static final byte WORDS = 6;
+
+    /** Length of the frame header, not counting the type byte */
+    public static final int HEADER_SIZE = 4;
+
+    /** Longest frame body that will be accepted, in bytes */
+    public static final int MAX_FRAME = 1 << 20;
+
+    /** This class just holds static methods. */
+    private BoggleProtocol() {
+    }
+
+    /**
+     * Collects the body of a frame, and turns it into a frame once it is done
+     */
+    public static class FrameWriter extends DataOutputStream {
+	/** Type of the frame */
+	private final byte _type;
+
+	/**
+	 * Starts a frame of the given type
+	 *
+	 * @param type Message type
+	 */
+	public FrameWriter(byte type) {
+	    super(new ByteArrayOutputStream());
+	    _type = type;
+	}
+
+	/**
+	 * Returns the finished frame, header and all
+	 *
+	 * @return Buffer holding the frame, ready to be written
+	 */
+	public ByteBuffer toFrame() {
+	    byte[] body = ((ByteArrayOutputStream) out).toByteArray();
+	    ByteBuffer frame =
+		ByteBuffer.allocate(HEADER_SIZE + 1 + body.length);
+	    frame.putInt(1 + body.length).put(_type).put(body);
+	    frame.flip();
+	    return frame;
+	}
+    }
+
+    /**
+     * Returns a reader for the body of a frame
+     *
+     * @param body Frame body, after the type byte
+     * @return Stream reading the body
+     */
+    public static DataInputStream reader(ByteBuffer body) {
+	byte[] bytes = new byte[body.remaining()];
+	body.get(bytes);
+	return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Makes a JOIN frame
+     *
+     * @param name Client name
+     * @return Frame to send
+     */
+    public static ByteBuffer join(String name) throws IOException {
+	FrameWriter w = new FrameWriter(JOIN);
+	w.writeUTF(name);
+	return w.toFrame();
+    }
+
+    /**
+     * Makes a BOARD frame
+     *
+     * @param board Board of the round
+     * @param dictionary The server's dictionary
+     * @return Frame to send
+     */
+    public static ByteBuffer board(BoggleBoard board, Dawg dictionary)
+	throws IOException {
+	FrameWriter w = new FrameWriter(BOARD);
+	int cells = board.size() * board.size();
+	w.writeByte(board.size());
+	for (int cell = 0; cell < cells; cell++) {
+	    w.writeByte(board.getLetterCode(cell));
+	}
+	w.writeLong(dictionary.fingerprint());
+	WordHashes words = board.getWordHashes();
+	w.writeBoolean(words != null);
+	if (words != null) {
+	    words.write(w);
+	}
+	return w.toFrame();
+    }
+
+    /**
+     * Makes a SUBMIT frame
+     *
+     * @param words Words the client found
+     * @param dictionary The server's dictionary, if the client has it too,
+     *        or null
+     * @return Frame to send
+     */
+    public static ByteBuffer submit(WordList words, Dawg dictionary)
+	throws IOException {
+	FrameWriter w = new FrameWriter(SUBMIT);
+	words.write(w, dictionary);
+	return w.toFrame();
+    }
+
+    /**
+     * Makes a WORDS frame
+     *
+     * @param batch Words the client found since its last batch
+     * @param dictionary The server's dictionary, if the client has it too,
+     *        or null
+     * @return Frame to send
+     */
+    public static ByteBuffer words(WordList batch, Dawg dictionary)
+	throws IOException {
+	FrameWriter w = new FrameWriter(WORDS);
+	batch.write(w, dictionary);
+	return w.toFrame();
+    }
+
+    /**
+     * Makes a RESULTS frame
+     *
+     * @param results Results of the round
+     * @return Frame to send
+     */
+    public static ByteBuffer results(GameResults results) throws IOException {
+	EncodedResults encoded = results.getEncoded();
+	if (encoded != null) {
+	    return encoded.frame(results.getSummaryPlayer());
+	}
+	FrameWriter w = new FrameWriter(RESULTS);
+	writeResults(w, results);
+	return w.toFrame();
+    }
+
+    /**
+     * Writes the body of a RESULTS frame
+     *
+     * @param out Where to write it
+     * @param results Results of the round
+     */
+    static void writeResults(DataOutput out, GameResults results)
+	throws IOException {
+	out.writeInt(results.getClientNames().size());
+	for (ClientInfo info : results.getClientResults().values()) {
+	    writeClient(out, info, true);
+	}
+    }
+
+    /**
+     * Makes an ERROR frame
+     *
+     * @param message What went wrong
+     * @return Frame to send
+     */
+    public static ByteBuffer error(String message) throws IOException {
+	FrameWriter w = new FrameWriter(ERROR);
+	w.writeUTF(message);
+	return w.toFrame();
+    }
+
+    /**
+     * Writes one player's entry of a RESULTS frame
+     *
+     * @param out Where to write it
+     * @param info The player's results
+     * @param words Whether to include the player's word lists; if not,
+     *        they are written as empty lists
+     */
+    static void writeClient(DataOutput out, ClientInfo info, boolean words)
+	throws IOException {
+	out.writeUTF(info.getName());
+	out.writeInt(info.getScore());
+	writeWords(out, words ? info.getWords() : null);
+	writeWords(out, words ? info.getFilteredWords() : null);
+	writeWords(out, words ? info.getRejectedWords() : null);
+    }
+
+    /**
+     * Writes a word list front-coded
+     */
+    private static void writeWords(DataOutput out, WordList words)
+	throws IOException {
+	(words == null ? new WordList() : words).write(out, null);
+    }
+
+    /**
+     * Reads a word list
+     *
+     * @param in Stream to read from
+     * @param dictionary Dictionary to look up ordinals in, or null
+     * @return Words that were read
+     */
+    public static WordList readWords(DataInput in, Dawg dictionary)
+	throws IOException {
+	return WordList.read(in, dictionary);
+    }
+
+    /**
+     * Reads the board from the body of a BOARD frame.  The dictionary
+     * fingerprint follows it.
+     *
+     * @param in Frame body
+     * @return The board
+     */
+    public static BoggleBoard readBoard(DataInput in) throws IOException {
+	int size = in.readUnsignedByte();
+	byte[] codes = new byte[size * size];
+	in.readFully(codes);
+	try {
+	    return new BoggleBoard(size, codes);
+	}
+	catch (IllegalArgumentException e) {
+	    throw new StreamCorruptedException(e.getMessage());
+	}
+    }
+
+    /**
+     * Reads the board's word hashes from the rest of a BOARD frame, after the
+     * dictionary fingerprint
+     *
+     * @param in Rest of the frame body
+     * @return The word hashes, or null if the server didn't send them
+     */
+    public static WordHashes readWordHashes(DataInputStream in)
+	throws IOException {
+	if (in.available() == 0 || !in.readBoolean()) {
+	    return null; // none sent, or an older server
+	}
+	return WordHashes.read(in);
+    }
+
+    /**
+     * Reads the body of a RESULTS frame
+     *
+     * @param in Frame body
+     * @return Results of the round
+     */
+    public static GameResults readResults(DataInput in) throws IOException {
+	GameResults results = new GameResults();
+	readResults(in, results);
+	return results;
+    }
+
+    /**
+     * Reads the body of a RESULTS frame into a results object
+     *
+     * @param in Frame body
+     * @param results Where to put each player's results
+     */
+    static void readResults(DataInput in, GameResults results)
+	throws IOException {
+	int players = in.readInt();
+	if (players < 0 || players > MAX_FRAME) {
+	    throw new StreamCorruptedException("Bad player count: " + players);
+	}
+	for (int p = 0; p < players; p++) {
+	    ClientInfo info = new ClientInfo(in.readUTF());
+	    info.setScore(in.readInt());
+	    info.setPlaying();
+	    info.setWords(readWords(in, null));
+	    info.setFilteredWords(readWords(in, null));
+	    info.setRejectedWords(readWords(in, null));
+	    results.addClientResult(info);
+	}
+    }
+}
@@ -1,8 +1,13 @@
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.rmi.*;
 import java.rmi.registry.Registry;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.server.UnicastRemoteObject;
+import java.lang.management.ManagementFactory;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
@@ -16,20 +21,39 @@ import org.apache.log4j.PropertyConfigurator;
  * server receives enough requests to start a game.  Then the Boggle board to
  * use is returned to the clients, and they begin playing.
  * <p>
+ * Clients can instead use the {@link BoggleServerV2} interface, whose calls
+ * return right away.  The server then pushes the board and the results to
+ * the client's {@link BoggleCallback}, from a small pool of threads.  The
+ * blocking interface is an adapter on top of this one.
+ * <p>
  * Once clients have completed the elapsed time, they call back to the server
  * via the {@link BoggleServer#gameOver} method, reporting their word-lists.
- * Again, the clients are blocked until all playing clients have reported their
- * word-lists.  Then, the server computes each client's score, and reports all
+ * Again, the clients are blocked until all clients playing in the same round
+ * have reported their word-lists.  Then, the server computes each client's score, and reports all
  * game results back to each client via the return-value of this method call.
  * <p>
- * This server is very simplistic; it cannot handle many basic scenarios that
- * one would want such a server to handle.  If a client drops out mid-game, the
- * server has no idea.  If a client cheats by taking too long, the server can't
- * detect it.  If a client cheats by making up words not on the Boggle board,
- * the server can't detect it.  Basically, this server would never be useful in
- * a real-world environment!
+ * Each round is played in its own room, with its own board and players, so
+ * the server can run many rounds at once.  The lobby fills each room up to a
+ * maximum number of players; rooms are started and scored by a pool of
+ * threads shared by all of them (see {@link RoomManager}).
+ * <p>
+ * The server generates and solves boards in the background, ahead of the
+ * rounds that will use them, so for each round it knows every word that can
+ * actually be found.  Submitted words that aren't in that
+ * solution (made-up words, or words not on the Boggle board) are rejected and
+ * don't score.
+ * <p>
+ * A room doesn't wait forever for its players.  Each room is closed
+ * {@link #ROUND_TIME} plus a {@link #GRACE_PERIOD} after it starts, and
+ * scored with the words that have come in; players who haven't submitted by
+ * then are cut off, and get the results without their late words.  Clients
+ * that stream their words with {@link #streamWords} hold a lease, renewed by
+ * each batch; a client not heard from for {@link #LEASE_TIME} is treated as
+ * having left, and so is a socket client whose connection drops.
+ * A client that leaves while waiting is taken out of the lobby, and one that
+ * leaves while playing is scored with the words it sent so far.
  **/
-public class BoggleServerApp implements BoggleServer {
+public class BoggleServerApp implements BoggleServer, BoggleServerV2 {
 
   /**
    * This map of usernames to client-information contains the directory of all
@@ -38,175 +62,263 @@ public class BoggleServerApp implements BoggleServer {
    * are removed from this map when they complete (or leave) a round via
    * {@link #gameOver}.  This map is also used to ensure that multiple users
    * don't have the same username.
+   * <p>
+   * Clients are added and removed with the map's atomic operations, so
+   * clients joining and leaving don't wait on a lock shared by the whole
+   * server.  A client is only removed along with its own information, so a
+   * late removal can't take out a new client that reused the name.
    **/
-  private HashMap<String, ClientInfo> clients;
+  private ConcurrentHashMap<String, ClientInfo> clients;
 
 
   /**
-   * Clients are initially added to this collection when they call
-   * {@link #startGame}.
+   * Background pipeline that generates and solves boards ahead of time, so
+   * that starting a round doesn't have to wait for it.
    **/
-  private ArrayList<ClientInfo> waiting;
+  private BoardPipeline boardPipeline;
 
 
   /**
-   * When clients complete a round of the game, their results are stored into
-   * this collection.  Note that the <tt>ClientInfo</tt> objects will be the
-   * same as those stored in the {@link #clients} collection.  This collection
-   * is mainly used as a way to verify that all players have indeed submitted
-   * their results.
+   * The rooms being played.  Clients join the lobby through this, and are
+   * put into rooms as enough of them arrive.
    **/
-  private ArrayList<ClientInfo> playerResults;
+  private RoomManager rooms;
 
 
-  /** This is the Boggle board being used for the current round of play. **/
-  private BoggleBoard boggleBoard;
+  /** Runs the lobby's start timeout, the rooms' deadlines and lease checks. **/
+  private ScheduledExecutorService scheduler;
 
 
   /**
-   * These are the results of the round of Boggle that the client just played.
+   * How long a client that sends heartbeats may go unheard from before it is
+   * treated as gone, in milliseconds.
    **/
-  private GameResults gameResults;
+  private long leaseTime;
+
 
-  /** Logger for the Boggle server */
-  private static final Logger logger = Logger.getLogger("boggle.server");
-    
   /**
-   * This is the internal thread that runs the Boggle server.  It is started
-   * by the <tt>BoggleServerApp</tt> constructor, and it encodes the flow of
-   * the Boggle game.
-   **/
-  private class GameRunner implements Runnable {
-
-    /**
-     * This constant specifies how long to wait after the last player joins the
-     * current round before going ahead and starting the round.  If a client
-     * joins the round, and then another client joins before this timeout
-     * elapses, then the second client will also be part of the round.  The
-     * round will start when there are enough clients, and when no other client
-     * joins before this timeout passes.
-     **/
-    private static final long START_TIMEOUT = 15 * 1000;
-
-
-    /**
-     * The minimum number of players we must have to play a round of Boggle.
-     **/
-    private static final int MIN_PLAYERS = 2;
-      
-    /**
-     * This is the method run by the Boggle server thread.  It follows a very
-     * simple sequence of operations, although the actual implementation details
-     * are a bit complex.  When players join, they are added to the
-     * {@link #waiting} collection.  After a certain minimum number of players
-     * have joined, the Boggle game can commence, at which point all players
-     * are moved into the <tt>players</tt> collection.  Once players complete
-     * their round, they submit their results, which are stored into the
-     * {@link #playerResults} collection.  Finally, the server computes the
-     * score for each player, then returns the overall game results back to each
-     * playing client.
-     **/
-    public void run() {
-
-      // Each iteration of this loop runs another round of the Boggle game.
-      while (true) {
-
-        ArrayList<ClientInfo> players = new ArrayList<ClientInfo>();
-
-        // Monitor the "waiting" list until we have a minimum number of players
-        // waiting to play a round of the game.  (Note that we also give players
-        // 15 seconds from the last time a client joined, to join in on the
-        // round.)
-
-        synchronized (waiting) {
-
-          long lastJoin = System.currentTimeMillis();
-          int lastCount = waiting.size();
-
-          while (waiting.size() < MIN_PLAYERS ||
-                 (System.currentTimeMillis() - lastJoin < START_TIMEOUT)) {
-            try {
-              // Sleep for a bit, then wake up and see what is going on.
-              // (NOTE:  We don't actually need any notifications here to work
-              // properly.)
-              waiting.wait(500);  // 0.5 seconds
-            }
-            catch (InterruptedException e) {
-              // Ignore.  Should log...
-            }
-
-            // If more players joined since we last awoke, update our variables.
-            if (waiting.size() > lastCount) {
-              lastCount = waiting.size();
-              lastJoin = System.currentTimeMillis();
-            }
-          }
+   * Thread that starts the rooms the lobby forms, taking each one's board
+   * from the pipeline.  Its queue is bounded; rooms formed while it is full
+   * are turned away.
+   **/
+  private ThreadPoolExecutor roomStarter;
+
+
+  /**
+   * Threads that score the rooms.  Their queue is bounded; if it fills up,
+   * the thread that ended a round scores it itself.
+   **/
+  private ThreadPoolExecutor roomScorers;
 
-          System.out.println("=== NEW ROUND STARTING ===");
 
-          // Generate a new Boggle board for the current round.  This is shared
-          // state; when we notify the waiting clients, they will access the
-          // updated value of this board.
-          boggleBoard = new BoggleBoard();
+  /**
+   * The callback of each client that joined through {@link #joinGame}, by
+   * client-name.
+   **/
+  private ConcurrentHashMap<String, BoggleCallback> callbacks;
 
-          // Grab all waiting players and switch them over to playing the
-          // current round.
 
-          players.addAll(waiting);
-          waiting.clear();
-          for (ClientInfo c : players)
-            c.setPlaying();
+  /**
+   * Threads that send notifications to client callbacks.  The pool and its
+   * queue are bounded; if the queue fills up, the thread with a notification
+   * to send makes the call itself, which slows down the rooms that are
+   * producing notifications faster than clients can take them.
+   **/
+  private ThreadPoolExecutor notifier;
+
+
+  /** The blocking interface, implemented on top of the callback interface. **/
+  private BlockingServerAdapter blocking;
 
-          // Wake up all waiting threads.  The ones who actually became players
-          // will see their state changed to PLAYING.
-          waiting.notifyAll();
-        }
 
-        // Now, wait for all players to return their results.
+  /**
+   * How long clients wait from joining until they get their board, in
+   * microseconds.
+   **/
+  private Histogram startWaits = new Histogram("us");
 
-        synchronized (playerResults) {
 
-          // Clear out the results for this round.
-          gameResults.clear();
+  /** Number of threads sending notifications to client callbacks. **/
+  private static final int NOTIFY_THREADS = 8;
 
-          while (playerResults.size() < players.size()) {
-            try {
-              playerResults.wait();
-            }
-            catch (InterruptedException e) {
-              // Ignore.  Should log...
-            }
-          }
 
-          // Handle all the player-result computation, generate "game results",
-          // then wake up all the waiting players.
+  /** Number of notifications that may be waiting to be sent. **/
+  private static final int NOTIFY_QUEUE = 10000;
 
-          gameResults.computeResults(playerResults);
-          playerResults.clear();
-          playerResults.notifyAll();
-        }
-      }
-    }
+
+  /** Number of formed rooms that may be waiting for a board. **/
+  private static final int START_QUEUE = 1000;
+
+
+  /** Number of finished rooms that may be waiting to be scored. **/
+  private static final int SCORE_QUEUE = 1000;
+
+
+  /** Number of solved boards the pipeline keeps ready. **/
+  private static final int BOARD_QUEUE_DEPTH = 64;
+
+
+  /** Boards with fewer words than this are too sparse to be fun to play. **/
+  private static final int MIN_BOARD_WORDS = 20;
+
+
+  /**
+   * This constant specifies how long to wait after the last player joins the
+   * current round before going ahead and starting the round.  If a client
+   * joins the round, and then another client joins before this timeout
+   * elapses, then the second client will also be part of the round.  The
+   * round will start when there are enough clients, and when no other client
+   * joins before this timeout passes.
+   **/
+  private static final long START_TIMEOUT = 15 * 1000;
+
+
+  /**
+   * This constant specifies how long a round lasts, in milliseconds.  It
+   * matches the timer that clients show their players.
+   **/
+  public static final long ROUND_TIME = 30 * 1000;
+
+
+  /**
+   * This constant specifies how long after {@link #ROUND_TIME} the server
+   * waits for words before it scores a room with the words it has.  It covers
+   * the time clients take to notice that time is up and send their words.
+   **/
+  public static final long GRACE_PERIOD = 10 * 1000;
+
+
+  /**
+   * This constant specifies how long a client that sends heartbeats may go
+   * unheard from.  Clients that stream their words send a batch, even an
+   * empty one, every few seconds; once a client misses a few, it is treated
+   * as having left, and its room doesn't wait for it.
+   **/
+  public static final long LEASE_TIME = 15 * 1000;
+
+
+  /**
+   * The minimum number of players we must have to play a round of Boggle.
+   **/
+  private static final int MIN_PLAYERS = 2;
+
+
+  /**
+   * The most players a room holds, unless another size is given to the
+   * constructor.  A room starts as soon as it is full.
+   **/
+  public static final int DEFAULT_ROOM_SIZE = 8;
+
+
+  /**
+   * Rooms with more players than this send each player a summary of the
+   * results, with only the player's own word lists, instead of every
+   * player's word lists.
+   **/
+  public static final int SUMMARY_ROOM_SIZE = 16;
+
+
+  /** Logger for the Boggle server */
+  private static final Logger logger = Logger.getLogger("boggle.server");
+
+
+  /**
+   * The dictionary the server loads if none is given on the command line.  It
+   * is built from <tt>res/sowpods.txt.gz</tt> by <tt>ant dictionary</tt>.
+   **/
+  private static final String DEFAULT_DICTIONARY = "build/sowpods.dawg";
+    
+  /**
+   * Constructs a new Boggle server instance, with rooms of the default size.
+   *
+   * @param dictionary The dictionary that submitted words are checked against
+   **/
+  public BoggleServerApp(Dawg dictionary) {
+    this(dictionary, DEFAULT_ROOM_SIZE);
   }
 
 
   /**
-   * Constructs a new Boggle server instance, and spins up the internal thread
-   * used to govern the progress of each round of the game.
+   * Constructs a new Boggle server instance, and spins up the threads used to
+   * run the rounds of the game.
+   *
+   * @param dictionary The dictionary that submitted words are checked against
+   * @param roomSize The most players a room holds
    **/
-  public BoggleServerApp() {
-    // Collections used to coordinate what players are playing or waiting to
-    // play.
-    clients = new HashMap<String, ClientInfo>();
-    waiting = new ArrayList<ClientInfo>();
-    playerResults = new ArrayList<ClientInfo>();
+  public BoggleServerApp(Dawg dictionary, int roomSize) {
+    // Every round's board is generated and solved with this dictionary
+    // ahead of time, by one thread per core.
+    this(new BoardPipeline(new BoggleSolver(dictionary),
+      BoggleBoard.DEFAULT_SIZE, BOARD_QUEUE_DEPTH,
+      Runtime.getRuntime().availableProcessors(),
+      MIN_BOARD_WORDS, Integer.MAX_VALUE), roomSize);
+  }
+
+
+  /**
+   * Constructs a new Boggle server instance that takes its boards from the
+   * given pipeline, which it starts.
+   *
+   * @param pipeline Source of solved boards
+   * @param roomSize The most players a room holds
+   **/
+  BoggleServerApp(BoardPipeline pipeline, int roomSize) {
+    this(pipeline, roomSize, ROUND_TIME + GRACE_PERIOD, LEASE_TIME);
+  }
 
-    // This object gets reused across rounds.
-    gameResults = new GameResults();
 
-    // Start the thread that runs the Boggle server logic.
-    Thread t = new Thread(new GameRunner());
-    t.start();
+  /**
+   * Constructs a new Boggle server instance with the given deadlines, that
+   * takes its boards from the given pipeline, which it starts.
+   *
+   * @param pipeline Source of solved boards
+   * @param roomSize The most players a room holds
+   * @param roundLimit Milliseconds after a room starts before it is scored
+   *        with the words that have arrived, or 0 to wait for every player
+   * @param leaseTime Milliseconds a client that sends heartbeats may go
+   *        unheard from
+   **/
+  BoggleServerApp(BoardPipeline pipeline, int roomSize, long roundLimit,
+                  long leaseTime) {
+    boardPipeline = pipeline;
+    boardPipeline.start();
+
+    // Rooms are formed by the lobby, using a single timer thread for the
+    // start timeout and the rooms' deadlines.  Starting and scoring rooms
+    // are separate stages with queues of their own, so that rooms can form
+    // and start while others are being scored.
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    roomStarter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(START_QUEUE),
+      new ThreadPoolExecutor.AbortPolicy());
+    int cores = Runtime.getRuntime().availableProcessors();
+    roomScorers = new ThreadPoolExecutor(cores, cores,
+      0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(SCORE_QUEUE),
+      new ThreadPoolExecutor.CallerRunsPolicy());
+    rooms = new RoomManager(boardPipeline, scheduler, roomStarter,
+      roomScorers, START_TIMEOUT, Math.min(MIN_PLAYERS, roomSize), roomSize,
+      roundLimit);
+
+    // Clients that stopped sending heartbeats are looked for a few times
+    // per lease.
+    this.leaseTime = leaseTime;
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+        public void run() {
+          expireLeases();
+        }
+      }, leaseTime / 4, leaseTime / 4, TimeUnit.MILLISECONDS);
+
+    // Directory of the clients talking to the server.
+    clients = new ConcurrentHashMap<String, ClientInfo>();
+
+    // Notifications are pushed to clients by a bounded pool of threads.
+    callbacks = new ConcurrentHashMap<String, BoggleCallback>();
+    notifier = new ThreadPoolExecutor(NOTIFY_THREADS, NOTIFY_THREADS,
+      0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(NOTIFY_QUEUE),
+      new ThreadPoolExecutor.CallerRunsPolicy());
+    blocking = new BlockingServerAdapter(this);
   }
 
 
@@ -216,48 +328,72 @@ public class BoggleServerApp implements BoggleServer {
    * identifies them to the Boggle server.
    * <p>
    * This method blocks until the Boggle server decides that there are enough
-   * players for the current round.  Then the method returns the
+   * players for a room.  Then the method returns the
    * <tt>BoggleBoard</tt> that clients should use for the round.
    *
    * @throws PlayerException if the calling client specifies a username that is
    *         already used.
    **/
   public BoggleBoard startGame(String clientName) throws PlayerException {
-    logger.info("Client \"" + clientName + "\" wants to start a game.");
-
-    ClientInfo myInfo = new ClientInfo(clientName);
-
-    synchronized (clients) {
-      if (clients.containsKey(clientName))
-        throw new PlayerException(clientName + " already used!");
-
-      clients.put(clientName, myInfo);
+    try {
+      return blocking.startGame(clientName);
+    }
+    catch (RemoteException e) {
+      throw new PlayerException(e); // local calls don't throw this
     }
+  }
 
-    // Register in the "waiting" list, then wait until the server marks our
-    // token as "playing."
-    synchronized (waiting) {
-      waiting.add(myInfo);
-      //waiting.notifyAll();   // THIS IS REALLY GROSS!!!
 
-      while (myInfo.isWaiting()) {
-        try {
-          waiting.wait();
-        }
-        catch (InterruptedException e) {
-          // Ignore.  Should log...
-        }
-      }
-    }
+  /**
+   * This is the non-blocking form of {@link #startGame}, used by transports
+   * that don't keep a thread per client.  The client is registered right
+   * away, and the returned future completes with the board once the client
+   * is put into a room.
+   *
+   * @return Future board, which fails with a <tt>PlayerException</tt> if the
+   *         client-name is already used, or no room could be started.
+   **/
+  public CompletableFuture<BoggleBoard> startGameAsync(final String clientName) {
+    logger.info("Client \"" + clientName + "\" wants to start a game.");
 
-    // Once we get here, we are ready to start playing.
-    // Return the BoggleBoard for this round's players to use.
+    final ClientInfo myInfo = new ClientInfo(clientName);
+    final long joined = System.nanoTime();
+
+    if (clients.putIfAbsent(clientName, myInfo) != null)
+      return failed(new PlayerException(clientName + " already used!"));
+
+    // Join the lobby; the future completes when the server puts us into a
+    // room and hands us its board.
+    final RoundEvents.Join event = new RoundEvents.Join();
+    event.begin();
+    return rooms.join(myInfo).handle(
+      new BiFunction<BoggleBoard, Throwable, BoggleBoard>() {
+        public BoggleBoard apply(BoggleBoard board, Throwable failure) {
+          event.end();
+          if (event.shouldCommit()) {
+            GameRoom room = rooms.getRoom(myInfo);
+            event.client = clientName;
+            event.room = (failure == null && room != null) ? room.getId() : 0;
+            event.commit();
+          }
 
-    if (logger.isInfoEnabled()) {
-	logger.info("Client \"" + clientName + "\" is playing this round.");
-    }
+          if (failure != null) {
+            clients.remove(clientName, myInfo);
+            throw new CompletionException(
+              new PlayerException("No room could be started: " + failure));
+          }
+
+          // Once we get here, we are ready to start playing.
+          // Return the BoggleBoard for this room's players to use.
+          startWaits.recordSince(joined);
 
-    return boggleBoard;
+          if (logger.isInfoEnabled()) {
+            logger.info("Client \"" + clientName + "\" is playing in room " +
+                        rooms.getRoom(myInfo).getId() + ".");
+          }
+          return board;
+        }
+      });
   }
 
 
@@ -267,68 +403,372 @@ public class BoggleServerApp implements BoggleServer {
    * they specified initially, and they must also submit their word-list to the
    * server.
    * <p>
-   * This method blocks until <em>all</em> playing clients have submitted their
-   * word-lists to the Boggle server.  The server then computes the overall game
-   * results, and returns these results back to each client.
+   * This method blocks until <em>all</em> clients playing in the same room
+   * have submitted their word-lists to the Boggle server, or the room's
+   * deadline has passed.  The server then computes the overall game results,
+   * and returns these results back to each client.  A client that submits
+   * after the deadline gets the results without its late words.
    *
    * @throws PlayerException if the calling client specifies a username that is
    *         already used.
    **/
   public GameResults gameOver(String clientName, WordList myWords)
     throws PlayerException {
+    try {
+      return blocking.gameOver(clientName, myWords);
+    }
+    catch (RemoteException e) {
+      throw new PlayerException(e); // local calls don't throw this
+    }
+  }
+
+
+  /**
+   * This is the non-blocking form of {@link #gameOver}.  The words are handed
+   * to the client's room right away, and the returned future completes with
+   * the results once every player in the room has submitted.
+   *
+   * @return Future results, which fail with a <tt>PlayerException</tt> if the
+   *         client-name is not recognized, or the client isn't playing.
+   **/
+  public CompletableFuture<GameResults> gameOverAsync(final String clientName,
+                                                      WordList myWords) {
 
     // Make sure the client is actually registered.
 
-    ClientInfo myInfo = null;
-    synchronized (clients) {
-      myInfo = clients.get(clientName);
-      if (myInfo == null)
-        throw new PlayerException(clientName + " is unrecognized!");
-    }
+    final ClientInfo myInfo = clients.get(clientName);
+    if (myInfo == null)
+      return failed(new PlayerException(clientName + " is unrecognized!"));
     if (logger.isInfoEnabled()) {
 	logger.info("Client \"" + clientName +
 		    "\" has submitted a word-list of " + myWords.size() + " words.");
     }
 
-    myInfo.setWords(myWords);
-
-    synchronized (playerResults) {
-      playerResults.add(myInfo);
-      playerResults.notifyAll();
+    // Hand the words to our room, which completes the future once all of its
+    // players have reported in, and the results are processed.
+    final RoundEvents.Submit event = new RoundEvents.Submit();
+    final GameRoom room = rooms.getRoom(myInfo);
+    final int words = myWords.size();
+    event.begin();
+    CompletableFuture<GameResults> results;
+    try {
+      results = rooms.submit(myInfo, myWords);
+    }
+    catch (IllegalStateException e) {
+      return failed(new PlayerException(clientName +
+                                        " is not playing in a room!"));
+    }
 
-      // Wait for all players to report in, and for the results to be processed.
-      // This is signalled by the server clearing the player-results list.
-      while (!playerResults.isEmpty()) {
-        try {
-          playerResults.wait();
-        }
-        catch (InterruptedException e) {
-          // Ignore.
+    // Finally, remove this client's info from the clients list.  Every player
+    // in the room gets the same results, which are encoded once; a large
+    // room sends each player a summary instead.
+    return results.whenComplete(new BiConsumer<GameResults, Throwable>() {
+        public void accept(GameResults r, Throwable failure) {
+          clients.remove(clientName, myInfo);
+
+          event.end();
+          if (event.shouldCommit()) {
+            event.client = clientName;
+            event.room = (room != null) ? room.getId() : 0;
+            event.words = words;
+            event.commit();
+          }
         }
+      }).thenApply(new Function<GameResults, GameResults>() {
+          public GameResults apply(GameResults r) {
+            if (r.getClientNames().size() > SUMMARY_ROOM_SIZE)
+              return r.summaryFor(clientName);
+            return r;
+          }
+        });
+  }
+
+
+  /**
+   * Returns the rooms being played, which keep statistics of their own.
+   **/
+  public RoomManager getRooms() {
+    return rooms;
+  }
+
+
+  /** Returns the pipeline that the rooms' boards come from. **/
+  public BoardPipeline getBoardPipeline() {
+    return boardPipeline;
+  }
+
+
+  /** Returns the number of clients that are talking to the server. **/
+  public int getClientCount() {
+    return clients.size();
+  }
+
+
+  /**
+   * Returns how long clients have waited from joining until they got their
+   * board, in microseconds.
+   **/
+  public Histogram getStartWaits() {
+    return startWaits;
+  }
+
+
+  /**
+   * Returns the dictionary that submitted words are checked against.
+   * Transports use it to send words as dictionary ordinals to clients that
+   * have the same dictionary.
+   **/
+  public Dawg getDictionary() {
+    return boardPipeline.getSolver().getDictionary();
+  }
+
+
+  /**
+   * This is called by transports that can tell when a client has gone away.
+   * A client still waiting in the lobby is taken out of it, and a client
+   * playing in a room is treated as having found no words, so that the rest
+   * of the room isn't kept waiting.
+   **/
+  public void leaveGame(String clientName) {
+    ClientInfo myInfo = clients.get(clientName);
+    if (myInfo == null)
+      return;
+    logger.info("Client \"" + clientName + "\" has left.");
+    callbacks.remove(clientName);
+
+    if (rooms.leave(myInfo)) {
+      clients.remove(clientName, myInfo);
+    }
+    else if (myInfo.getState() == ClientInfo.State.PLAYING) {
+      // If the client submitted just as it left, this fails harmlessly.
+      gameOverAsync(clientName, new WordList());
+    }
+    // Otherwise the client's room is being started, or it already submitted.
+  }
+
+
+  /**
+   * Treats the clients whose leases have run out as having left.  Clients
+   * cut off at their room's deadline are given one lease to submit late in,
+   * so that they are forgotten even if they never send heartbeats.
+   **/
+  private void expireLeases() {
+    // The map's iterators don't lock it, and leaveGame may remove clients
+    // while we go.
+    for (ClientInfo info : clients.values()) {
+      // Only players still owing their words are timed out; the others are
+      // waiting for a room, or for their results.
+      GameRoom room = rooms.getRoom(info);
+      boolean cutOff = (room != null && room.isCutOff(info));
+      if (info.getState() != ClientInfo.State.PLAYING && !cutOff)
+        continue;
+
+      if (info.isLeaseExpired()) {
+        logger.warn("Client \"" + info.getName() + "\" has timed out.");
+        leaveGame(info.getName());
+      }
+      else if (cutOff && !info.holdsLease()) {
+        info.renewLease(leaseTime);
       }
     }
+  }
+
+
+  /**
+   * Returns a future that has already failed with the given exception.
+   **/
+  private static <T> CompletableFuture<T> failed(Throwable t) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    future.completeExceptionally(t);
+    return future;
+  }
+
+
+  /**
+   * This function is called by Boggle clients that want to play a round of
+   * Boggle, but don't want to wait for it.  The client is registered, and the
+   * board is pushed to its callback once it is put into a room.
+   *
+   * @throws PlayerException if the calling client specifies a username that is
+   *         already used.
+   **/
+  public void joinGame(final String clientName, final BoggleCallback callback)
+    throws PlayerException {
+    if (callback == null)
+      throw new NullPointerException();
+
+    CompletableFuture<BoggleBoard> board = startGameAsync(clientName);
+    if (board.isCompletedExceptionally())
+      throw failure(board);
+
+    callbacks.put(clientName, callback);
+    board.whenComplete(new BiConsumer<BoggleBoard, Throwable>() {
+        public void accept(final BoggleBoard b, final Throwable failure) {
+          if (failure != null)
+            callbacks.remove(clientName, callback);
+
+          deliver(clientName, new Notification() {
+              public void send() throws RemoteException {
+                if (failure == null)
+                  callback.onRoundStarted(b);
+                else
+                  callback.onError(message(failure));
+              }
+            });
+        }
+      });
+  }
+
+
+  /**
+   * This function is called by Boggle clients while they play, with the words
+   * they found since their last batch.  The client's room checks and counts
+   * them right away.
+   *
+   * @throws PlayerException if the calling client specifies a username that is
+   *         not recognized, or the client isn't playing in a room.
+   **/
+  public void streamWords(String clientName, WordList batch)
+    throws PlayerException {
+    ClientInfo myInfo = clients.get(clientName);
+    if (myInfo == null)
+      throw new PlayerException(clientName + " is unrecognized!");
+
+    myInfo.renewLease(leaseTime);
+    try {
+      rooms.addWords(myInfo, batch);
+    }
+    catch (IllegalStateException e) {
+      throw new PlayerException(clientName + " is not playing in a room!");
+    }
+  }
+
+
+  /**
+   * This function is called by Boggle clients that joined with
+   * {@link #joinGame} when they have completed their round.  The results are
+   * pushed to the client's callback once every player in the room has
+   * submitted.
+   *
+   * @throws PlayerException if the calling client specifies a username that is
+   *         not recognized, or the client isn't playing in a room.
+   **/
+  public void submitWords(final String clientName, WordList myWords)
+    throws PlayerException {
+    final BoggleCallback callback = callbacks.get(clientName);
+    if (callback == null)
+      throw new PlayerException(clientName + " is unrecognized!");
+
+    CompletableFuture<GameResults> results =
+      gameOverAsync(clientName, myWords);
+    if (results.isCompletedExceptionally())
+      throw failure(results);
+
+    results.whenComplete(new BiConsumer<GameResults, Throwable>() {
+        public void accept(final GameResults r, final Throwable failure) {
+          callbacks.remove(clientName, callback);
+
+          deliver(clientName, new Notification() {
+              public void send() throws RemoteException {
+                if (failure == null)
+                  callback.onResults(r);
+                else
+                  callback.onError(message(failure));
+              }
+            });
+        }
+      });
+  }
+
+
+  /** A call to a client's callback, made by the notifier threads. **/
+  private interface Notification {
+    void send() throws RemoteException;
+  }
+
+
+  /**
+   * Hands a notification to the notifier threads.  If the client can't be
+   * reached, it is treated as having left the game.
+   **/
+  private void deliver(final String clientName,
+                       final Notification notification) {
+    notifier.execute(new Runnable() {
+        public void run() {
+          try {
+            notification.send();
+          }
+          catch (RemoteException e) {
+            logger.warn("Client \"" + clientName + "\" can't be reached: " +
+                        e.getMessage());
+            leaveGame(clientName);
+          }
+        }
+      });
+  }
+
 
-    // Finally, remove this client's info from the clients list.
-    synchronized (clients) {
-      clients.remove(clientName);
+  /**
+   * Returns the <tt>PlayerException</tt> that a future failed with, or wraps
+   * whatever else it failed with in one.
+   **/
+  private static PlayerException failure(Future<?> future) {
+    try {
+      future.get();
+      throw new IllegalStateException("Future didn't fail");
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof PlayerException)
+        return (PlayerException) e.getCause();
+      return new PlayerException(e.getCause());
+    }
+    catch (InterruptedException | CancellationException e) {
+      return new PlayerException(e);
     }
-    
-    return gameResults;
+  }
+
+
+  /**
+   * Returns the message to report to a client for a failed request.
+   **/
+  private static String message(Throwable failure) {
+    if (failure instanceof CompletionException && failure.getCause() != null)
+      failure = failure.getCause();
+    return failure.getMessage();
   }
 
 
   /**
    * This method creates an instance of the Boggle server application, and then
-   * exposes it via an RMI registry that it starts.
+   * exposes it via an RMI registry that it starts.  The dictionary to use can
+   * be given as an argument, either as a compiled image or as a .gz word list,
+   * followed by the most players a room holds.
+   * <p>
+   * The same game is also served over sockets, using {@link BoggleProtocol},
+   * on port {@link BoggleProtocol#DEFAULT_PORT}.  The server's
+   * {@link ServerMetrics} are registered with the platform's MBean server,
+   * for JMX consoles to read, and the stages of each round can be recorded
+   * with Flight Recorder (see {@link RoundEvents}).
    **/
   public static void main(String[] args) {
+      String dictionaryFile = (args.length > 0) ? args[0] : DEFAULT_DICTIONARY;
       try {
-	  BoggleServerApp server = new BoggleServerApp();
+	  int roomSize = (args.length > 1) ? Integer.parseInt(args[1]) :
+	      DEFAULT_ROOM_SIZE;
+	  BoggleServerApp server =
+	      new BoggleServerApp(Dawg.open(dictionaryFile), roomSize);
 	  BoggleServer stub = (BoggleServer) UnicastRemoteObject.exportObject(server, 0);
 	  
 	  
 	  Registry registry = LocateRegistry.createRegistry(1099);
 	  registry.rebind("BoggleServer", stub);
+
+	  BoggleSocketServer sockets =
+	      new BoggleSocketServer(server, BoggleProtocol.DEFAULT_PORT);
+	  sockets.start();
+
+	  new ServerMetrics(server).register(
+	      ManagementFactory.getPlatformMBeanServer());
 	  
 	  PropertyConfigurator.configure("logging.props");
 	  if (logger.isInfoEnabled()) {
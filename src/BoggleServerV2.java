@@ -0,0 +1,56 @@
+import java.rmi.*;
+import java.io.Serializable;
+
+/**
+ * This is the second version of the interface that Boggle servers implement.
+ * Unlike {@link BoggleServer}, none of its calls wait for other players:
+ * they return as soon as the request has been accepted, and the server pushes
+ * the board and the results to the client's {@link BoggleCallback} when they
+ * are ready.
+ **/
+public interface BoggleServerV2 extends Remote, Serializable {
+
+  /**
+   * This method is called by Boggle clients that want to particpate in the
+   * next round of the Boggle game.  It returns right away; the board is
+   * delivered to {@link BoggleCallback#onRoundStarted} once the client has
+   * been put into a round.
+   *
+   * @param clientName The name that identifies the client.
+   * @param callback Where to send the board and the results.  Remote clients
+   *        must export it, so that the server can call back.
+   *
+   * @throws PlayerException if the specified client-name is already
+   *         being used on the server.
+   **/
+  public void joinGame(String clientName, BoggleCallback callback)
+      throws PlayerException, RemoteException;
+
+  /**
+   * This method may be called by Boggle clients while they play, to send the
+   * words they have found so far in batches.  The server checks and counts
+   * each batch as it arrives, so that little is left to do when the round
+   * ends.
+   *
+   * @param clientName The name that identifies the client.
+   * @param batch Words found since the last batch.
+   *
+   * @throws PlayerException if the specified client-name is not recognized by
+   *         the server, or the client isn't playing a round.
+   **/
+  public void streamWords(String clientName, WordList batch)
+      throws PlayerException, RemoteException;
+
+  /**
+   * This method is called by Boggle clients when their time is up and the
+   * clients are submitting their word-lists.  It returns right away; the
+   * results of the round are delivered to {@link BoggleCallback#onResults}.
+   * Words already sent with {@link #streamWords} count, so only the rest
+   * need to be sent, though sending them again does no harm.
+   *
+   * @throws PlayerException if the specified client-name is not recognized by
+   *         the server, or the client isn't playing a round.
+   **/
+  public void submitWords(String clientName, WordList myWords)
+      throws PlayerException, RemoteException;
+}
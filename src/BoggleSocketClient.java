@@ -0,0 +1,213 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+
+/**
+ * Connects to a {@link BoggleSocketServer}, and lets a client use it through
+ * the same {@link BoggleServerV2} interface as an RMI server.  Each call sends
+ * one request frame and returns; a reader thread passes the server's replies
+ * on to the client's callback as they arrive.  Wrap the client in a
+ * {@link BlockingServerAdapter} to use the blocking interface instead.
+ */
+public class BoggleSocketClient implements BoggleServerV2 {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Connection to the server */
+    private final Socket _socket;
+
+    /** Reads replies from the server */
+    private final DataInputStream _in;
+
+    /** Sends requests to the server */
+    private final OutputStream _out;
+
+    /** Callback of the round in progress, or null */
+    private volatile BoggleCallback _callback;
+
+    /** The client's dictionary, or null if it has none */
+    private final Dawg _dictionary;
+
+    /** Set once the server has said it uses the same dictionary */
+    private volatile boolean _sharedDictionary;
+
+    /**
+     * This is the loop run by the reader thread.  It reads each reply, and
+     * passes it on to the callback.
+     */
+    private class Reader implements Runnable {
+	public void run() {
+	    try {
+		while (true) {
+		    dispatch();
+		}
+	    }
+	    catch (IOException e) {
+		notifyError(_socket.isClosed() ? "Connection closed" :
+			    "Lost connection to server: " + e);
+	    }
+	}
+    }
+
+    /**
+     * Connects to a server
+     *
+     * @param hostname Host the server runs on, or null for this host
+     * @param port Port the server listens on
+     * @throws IOException if the server can't be reached
+     */
+    public BoggleSocketClient(String hostname, int port) throws IOException {
+	this(hostname, port, null);
+    }
+
+    /**
+     * Connects to a server.  If the server turns out to use the same
+     * dictionary, submitted words are sent as its ordinals, which takes a
+     * fraction of the space.
+     *
+     * @param hostname Host the server runs on, or null for this host
+     * @param port Port the server listens on
+     * @param dictionary The client's dictionary, or null
+     * @throws IOException if the server can't be reached
+     */
+    public BoggleSocketClient(String hostname, int port, Dawg dictionary)
+	throws IOException {
+	_dictionary = dictionary;
+	_socket = new Socket(hostname, port);
+	_socket.setTcpNoDelay(true);
+	_in = new DataInputStream(
+	    new BufferedInputStream(_socket.getInputStream()));
+	_out = _socket.getOutputStream();
+
+	Thread reader = new Thread(new Reader(), "BoggleSocketClient");
+	reader.setDaemon(true);
+	reader.start();
+    }
+
+    /**
+     * Sends a join request.  If the name is already in use, the error is
+     * reported to the callback.
+     */
+    public void joinGame(String clientName, BoggleCallback callback)
+	throws RemoteException {
+	if (callback == null) {
+	    throw new NullPointerException();
+	}
+	_callback = callback;
+	try {
+	    send(BoggleProtocol.join(clientName));
+	}
+	catch (IOException e) {
+	    _callback = null;
+	    throw new RemoteException("Couldn't reach server", e);
+	}
+    }
+
+    public void streamWords(String clientName, WordList batch)
+	throws PlayerException, RemoteException {
+	if (_callback == null) {
+	    throw new PlayerException(clientName + " is not playing a round!");
+	}
+	try {
+	    send(BoggleProtocol.words(batch,
+				      _sharedDictionary ? _dictionary : null));
+	}
+	catch (IOException e) {
+	    throw new RemoteException("Couldn't reach server", e);
+	}
+    }
+
+    public void submitWords(String clientName, WordList myWords)
+	throws PlayerException, RemoteException {
+	if (_callback == null) {
+	    throw new PlayerException(clientName + " is not playing a round!");
+	}
+	try {
+	    send(BoggleProtocol.submit(myWords,
+				       _sharedDictionary ? _dictionary : null));
+	}
+	catch (IOException e) {
+	    throw new RemoteException("Couldn't reach server", e);
+	}
+    }
+
+    /**
+     * Closes the connection.  A round in progress is reported to its callback
+     * as an error.
+     */
+    public void close() throws IOException {
+	_socket.close();
+    }
+
+    /**
+     * Sends a request frame
+     *
+     * @param frame Request to send
+     */
+    private synchronized void send(ByteBuffer frame) throws IOException {
+	_out.write(frame.array(), frame.position(), frame.remaining());
+	_out.flush();
+    }
+
+    /**
+     * Reads one reply, and passes it on to the callback
+     */
+    private void dispatch() throws IOException {
+	int length = _in.readInt();
+	if (length < 1 || length > BoggleProtocol.MAX_FRAME) {
+	    throw new StreamCorruptedException("Bad frame length: " + length);
+	}
+	byte type = _in.readByte();
+	byte[] body = new byte[length - 1];
+	_in.readFully(body);
+	DataInputStream reply =
+	    new DataInputStream(new ByteArrayInputStream(body));
+
+	BoggleCallback callback = _callback;
+	if (callback == null) {
+	    return; // nobody is waiting for it
+	}
+	switch (type) {
+	case BoggleProtocol.BOARD:
+	    BoggleBoard board = BoggleProtocol.readBoard(reply);
+	    // The fingerprint is read even without a dictionary, since the
+	    // word hashes follow it
+	    long fingerprint = reply.readLong();
+	    _sharedDictionary = _dictionary != null &&
+		_dictionary.fingerprint() == fingerprint;
+	    board.setWordHashes(BoggleProtocol.readWordHashes(reply));
+	    callback.onRoundStarted(board);
+	    break;
+
+	case BoggleProtocol.RESULTS:
+	    _callback = null;
+	    callback.onResults(BoggleProtocol.readResults(reply));
+	    break;
+
+	case BoggleProtocol.ERROR:
+	    _callback = null;
+	    callback.onError(reply.readUTF());
+	    break;
+
+	default:
+	    throw new StreamCorruptedException("Unexpected reply: " + type);
+	}
+    }
+
+    /**
+     * Reports an error to the callback, if there is one
+     */
+    private void notifyError(String message) {
+	BoggleCallback callback = _callback;
+	_callback = null;
+	if (callback != null) {
+	    try {
+		callback.onError(message);
+	    }
+	    catch (RemoteException e) {
+		// Nothing more can be done
+	    }
+	}
+    }
+}
@@ -0,0 +1,454 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A transport for the Boggle server that speaks {@link BoggleProtocol} over
+ * plain sockets, as an alternative to RMI.  It plays the same game as
+ * {@link BoggleServerApp}, whose rooms it shares with RMI clients.
+ * <p>
+ * All connections are handled by one thread, using a <tt>Selector</tt>.  No
+ * thread waits for a client: requests are passed to the server's
+ * non-blocking methods, and when their futures complete the replies are
+ * queued and the selector thread is woken up to send them.  So a server can
+ * hold tens of thousands of connections with only the selector thread, the
+ * room threads and the board pipeline.
+ */
+public class BoggleSocketServer implements Runnable {
+
+    /** Logger for the Boggle server */
+    private static final Logger logger = Logger.getLogger("boggle.server");
+
+    /** Size of each connection's read buffer to begin with */
+    private static final int INITIAL_BUFFER = 256;
+
+    /** Number of pending connections the listening socket allows */
+    private static final int BACKLOG = 1024;
+
+    /** The game the clients play */
+    private final BoggleServerApp _game;
+
+    /** Selector for every channel */
+    private final Selector _selector;
+
+    /** Accepts new connections */
+    private final ServerSocketChannel _listener;
+
+    /** Work for the selector thread, queued by other threads */
+    private final Queue<Runnable> _pending = new ConcurrentLinkedQueue<Runnable>();
+
+    /** Number of open connections */
+    private final AtomicInteger _connections = new AtomicInteger();
+
+    /** The selector thread, once started */
+    private Thread _thread;
+
+    /** Set when the server is closed */
+    private volatile boolean _stopped;
+
+    /**
+     * The state of one client connection.  Only the selector thread touches
+     * it.
+     */
+    private class Connection {
+	/** The client's channel */
+	private final SocketChannel _channel;
+
+	/** The channel's key with the selector */
+	private SelectionKey _key;
+
+	/** Bytes read but not yet handled */
+	private ByteBuffer _in = ByteBuffer.allocate(INITIAL_BUFFER);
+
+	/** Frames waiting to be written */
+	private final Deque<ByteBuffer> _out = new ArrayDeque<ByteBuffer>();
+
+	/** Name the client joined under, or null between rounds */
+	private String _name;
+
+	/** Set while waiting for a board or results */
+	private boolean _busy;
+
+	/** Set once the connection is closed */
+	private boolean _closed;
+
+	Connection(SocketChannel channel) {
+	    _channel = channel;
+	}
+
+	/**
+	 * Reads what the client sent, and handles every complete frame
+	 */
+	void read() throws IOException {
+	    if (_channel.read(_in) < 0) {
+		close();
+		return;
+	    }
+	    _in.flip();
+	    while (_in.remaining() >= BoggleProtocol.HEADER_SIZE) {
+		int length = _in.getInt(_in.position());
+		if (length < 1 || length > BoggleProtocol.MAX_FRAME) {
+		    throw new StreamCorruptedException("Bad frame length: " +
+						       length);
+		}
+		if (_in.remaining() < BoggleProtocol.HEADER_SIZE + length) {
+		    break;
+		}
+
+		_in.position(_in.position() + BoggleProtocol.HEADER_SIZE);
+		byte type = _in.get();
+		ByteBuffer body = _in.slice();
+		body.limit(length - 1);
+		_in.position(_in.position() + length - 1);
+		handle(type, body);
+		if (_closed) {
+		    return;
+		}
+	    }
+	    _in.compact();
+
+	    // Make room for the rest of a large frame
+	    if (!_in.hasRemaining()) {
+		ByteBuffer bigger = ByteBuffer.allocate(2 * _in.capacity());
+		_in.flip();
+		bigger.put(_in);
+		_in = bigger;
+	    }
+	}
+
+	/**
+	 * Handles one frame from the client
+	 */
+	private void handle(byte type, ByteBuffer body) throws IOException {
+	    DataInputStream in = BoggleProtocol.reader(body);
+	    if (_busy) {
+		throw new StreamCorruptedException("Request while busy");
+	    }
+
+	    switch (type) {
+	    case BoggleProtocol.JOIN:
+		if (_name != null) {
+		    throw new StreamCorruptedException("Already joined");
+		}
+		String name = in.readUTF();
+		CompletableFuture<BoggleBoard> board =
+		    _game.startGameAsync(name);
+		if (!board.isCompletedExceptionally()) {
+		    _name = name; // not someone else's name
+		}
+		_busy = true;
+		reply(board, false);
+		break;
+
+	    case BoggleProtocol.WORDS:
+		if (_name == null) {
+		    throw new StreamCorruptedException("Not joined");
+		}
+		try {
+		    _game.streamWords(_name, BoggleProtocol.readWords(
+			in, _game.getDictionary()));
+		}
+		catch (PlayerException e) {
+		    // Too late for this batch; the client finds out on SUBMIT
+		}
+		break;
+
+	    case BoggleProtocol.SUBMIT:
+		if (_name == null) {
+		    throw new StreamCorruptedException("Not joined");
+		}
+		WordList words =
+		    BoggleProtocol.readWords(in, _game.getDictionary());
+		_busy = true;
+		reply(_game.gameOverAsync(_name, words), true);
+		break;
+
+	    default:
+		throw new StreamCorruptedException("Bad message type: " + type);
+	    }
+	}
+
+	/**
+	 * Sends the outcome of a request once it is known
+	 *
+	 * @param future Board or results to send
+	 * @param last Whether this is the last reply of the round
+	 */
+	private void reply(CompletableFuture<?> future, final boolean last) {
+	    future.whenComplete(new BiConsumer<Object, Throwable>() {
+		    public void accept(Object value, Throwable failure) {
+			ByteBuffer frame;
+			try {
+			    frame = encode(value, failure,
+					   _game.getDictionary());
+			}
+			catch (IOException e) {
+			    frame = null; // can't happen with in-memory streams
+			}
+			final ByteBuffer reply = frame;
+			post(new Runnable() {
+				public void run() {
+				    _busy = false;
+				    if (last || failure != null) {
+					_name = null;
+				    }
+				    send(reply);
+				}
+			    });
+		    }
+		});
+	}
+
+	/**
+	 * Queues a frame, and writes as much as the socket will take
+	 */
+	void send(ByteBuffer frame) {
+	    if (_closed || frame == null) {
+		return;
+	    }
+	    _out.add(frame);
+	    try {
+		write();
+	    }
+	    catch (IOException e) {
+		close();
+	    }
+	    catch (CancelledKeyException e) {
+		close();
+	    }
+	}
+
+	/**
+	 * Writes queued frames until they are done, or the socket is full
+	 */
+	void write() throws IOException {
+	    while (!_out.isEmpty()) {
+		ByteBuffer frame = _out.peek();
+		_channel.write(frame);
+		if (frame.hasRemaining()) {
+		    _key.interestOps(SelectionKey.OP_READ |
+				     SelectionKey.OP_WRITE);
+		    return;
+		}
+		_out.remove();
+	    }
+	    _key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Closes the connection.  A client who leaves mid-round is taken out of
+	 * the game.
+	 */
+	void close() {
+	    if (_closed) {
+		return;
+	    }
+	    _closed = true;
+	    _connections.decrementAndGet();
+	    _key.cancel();
+	    try {
+		_channel.close();
+	    }
+	    catch (IOException e) {
+		// Already gone
+	    }
+	    if (_name != null) {
+		try {
+		    _game.leaveGame(_name);
+		}
+		catch (RuntimeException e) {
+		    logger.error("Couldn't take client \"" + _name +
+				 "\" out of the game", e);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Constructs a server listening on a port.  No connections are handled
+     * until {@link #start} is called.
+     *
+     * @param game The game the clients play
+     * @param port Port to listen on, or 0 for any free port
+     * @throws IOException if the port can't be opened
+     */
+    public BoggleSocketServer(BoggleServerApp game, int port)
+	throws IOException {
+	if (game == null) {
+	    throw new NullPointerException();
+	}
+	_game = game;
+	_selector = Selector.open();
+	_listener = ServerSocketChannel.open();
+	_listener.bind(new InetSocketAddress(port), BACKLOG);
+	_listener.configureBlocking(false);
+	_listener.register(_selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Returns the port the server is listening on
+     *
+     * @return Local port
+     */
+    public int getPort() {
+	return _listener.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of clients connected
+     *
+     * @return Open connections
+     */
+    public int getConnectionCount() {
+	return _connections.get();
+    }
+
+    /**
+     * Starts the selector thread
+     */
+    public synchronized void start() {
+	_thread = new Thread(this, "BoggleSocketServer");
+	_thread.start();
+    }
+
+    /**
+     * Stops the selector thread, and closes every connection
+     */
+    public void close() throws IOException {
+	_stopped = true;
+	_selector.wakeup();
+	Thread t;
+	synchronized (this) {
+	    t = _thread;
+	}
+	if (t != null) {
+	    try {
+		t.join();
+	    }
+	    catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+	for (SelectionKey key : _selector.keys()) {
+	    key.channel().close();
+	}
+	_selector.close();
+    }
+
+    /**
+     * Runs work on the selector thread
+     */
+    private void post(Runnable r) {
+	_pending.add(r);
+	_selector.wakeup();
+    }
+
+    /**
+     * Makes the reply to a request
+     *
+     * @param value Board or results, if the request succeeded
+     * @param failure Why the request failed, or null
+     * @param dictionary The server's dictionary
+     * @return Frame to send
+     */
+    private static ByteBuffer encode(Object value, Throwable failure,
+				     Dawg dictionary) throws IOException {
+	if (failure != null) {
+	    Throwable cause = (failure instanceof CompletionException &&
+			       failure.getCause() != null) ?
+		failure.getCause() : failure;
+	    return BoggleProtocol.error(String.valueOf(cause.getMessage()));
+	}
+	if (value instanceof BoggleBoard) {
+	    return BoggleProtocol.board((BoggleBoard) value, dictionary);
+	}
+	return BoggleProtocol.results((GameResults) value);
+    }
+
+    /**
+     * This is the loop run by the selector thread.
+     */
+    public void run() {
+	while (!_stopped) {
+	    try {
+		_selector.select();
+	    }
+	    catch (IOException e) {
+		logger.error("Selector failed: " + e);
+		return;
+	    }
+
+	    // One client's failure must not stop the thread that serves the
+	    // others, so unexpected errors are logged and the loop goes on.
+	    Runnable r;
+	    while ((r = _pending.poll()) != null) {
+		try {
+		    r.run();
+		}
+		catch (RuntimeException e) {
+		    logger.error("Reply to a client failed", e);
+		}
+	    }
+
+	    Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+	    while (keys.hasNext()) {
+		SelectionKey key = keys.next();
+		keys.remove();
+		if (!key.isValid()) {
+		    continue;
+		}
+		if (key.isAcceptable()) {
+		    accept();
+		    continue;
+		}
+
+		Connection c = (Connection) key.attachment();
+		try {
+		    if (key.isReadable()) {
+			c.read();
+		    }
+		    if (key.isValid() && key.isWritable()) {
+			c.write();
+		    }
+		}
+		catch (IOException e) {
+		    if (logger.isDebugEnabled()) {
+			logger.debug("Dropping client \"" + c._name + "\": " + e);
+		    }
+		    c.close();
+		}
+		catch (RuntimeException e) {
+		    logger.error("Dropping client \"" + c._name +
+				 "\" after an unexpected error", e);
+		    c.close();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Accepts every pending connection
+     */
+    private void accept() {
+	try {
+	    SocketChannel channel;
+	    while ((channel = _listener.accept()) != null) {
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection c = new Connection(channel);
+		c._key = channel.register(_selector, SelectionKey.OP_READ, c);
+		_connections.incrementAndGet();
+	    }
+	}
+	catch (IOException e) {
+	    logger.warn("Couldn't accept a connection: " + e);
+	}
+    }
+}
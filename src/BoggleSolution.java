@@ -0,0 +1,128 @@
+import java.util.*;
+
+/**
+ * The complete set of dictionary words that can be found on one
+ * {@link BoggleBoard}, as computed by {@link BoggleSolver}.  Each word comes
+ * with one path of cells that spells it, where cell <tt>(x, y)</tt> is
+ * numbered <tt>x * size + y</tt>.
+ * <p>
+ * The words are kept in alphabetical order, and {@link #indexOf} gives each
+ * word's position in that order.  These small dense numbers let callers count
+ * or mark words with a plain array instead of a map of strings.
+ * <p>
+ * Solutions are immutable, so one solution can be shared by every thread
+ * that needs to check words against the board.
+ */
+public class BoggleSolution {
+
+    /** The board that was solved */
+    private final BoggleBoard _board;
+
+    /** Every word on the board, mapped to its index in {@link #_words} */
+    private final Map<String, Integer> _index;
+
+    /** Every word on the board, in alphabetical order */
+    private final List<String> _words;
+
+    /** Cells that spell each word, parallel to {@link #_words} */
+    private final int[][] _paths;
+
+    /** Points for finding every word on the board */
+    private final int _totalScore;
+
+    /**
+     * Constructs a solution from the words found on a board
+     *
+     * @param board The board that was solved
+     * @param paths Words found on the board, mapped to their paths
+     */
+    BoggleSolution(BoggleBoard board, Map<String, int[]> paths) {
+	_board = board;
+
+	String[] sorted = paths.keySet().toArray(new String[0]);
+	Arrays.sort(sorted);
+	_words = Collections.unmodifiableList(Arrays.asList(sorted));
+
+	_index = new HashMap<String, Integer>(2 * sorted.length);
+	_paths = new int[sorted.length][];
+	int total = 0;
+	for (int i = 0; i < sorted.length; i++) {
+	    _index.put(sorted[i], i);
+	    _paths[i] = paths.get(sorted[i]);
+	    total += GameResults.wordScore(sorted[i].length());
+	}
+	_totalScore = total;
+    }
+
+    /**
+     * Returns the board that was solved
+     *
+     * @return Board the words were found on
+     */
+    public BoggleBoard getBoard() {
+	return _board;
+    }
+
+    /**
+     * Returns the number of distinct words on the board
+     *
+     * @return Number of words
+     */
+    public int size() {
+	return _words.size();
+    }
+
+    /**
+     * Returns the score a single player would get for finding every word on
+     * the board, which is a rough measure of how rich the board is
+     *
+     * @return Total points of all words on the board
+     */
+    public int getTotalScore() {
+	return _totalScore;
+    }
+
+    /**
+     * Checks if a word can be found on the board
+     *
+     * @param word Lower-case word to be checked
+     * @return Boolean for whether or not the word is on the board
+     */
+    public boolean contains(String word) {
+	return _index.containsKey(word);
+    }
+
+    /**
+     * Returns the position of a word in the alphabetical list of words on
+     * the board
+     *
+     * @param word Lower-case word to be looked up
+     * @return Index of the word in {@link #getWords}, or -1 if the word isn't
+     *         on the board
+     */
+    public int indexOf(String word) {
+	Integer index = _index.get(word);
+	return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns the cells of one path that spells a word
+     *
+     * @param word Lower-case word on the board
+     * @return Copy of the path's cell numbers, or null if the word isn't on
+     *         the board
+     */
+    public int[] getPath(String word) {
+	int index = indexOf(word);
+	return (index < 0) ? null : _paths[index].clone();
+    }
+
+    /**
+     * Returns every word on the board
+     *
+     * @return Unmodifiable list of the words, in alphabetical order
+     */
+    public List<String> getWords() {
+	return _words;
+    }
+}
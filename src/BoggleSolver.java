@@ -0,0 +1,375 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds every dictionary word that can be spelled on a {@link BoggleBoard}.
+ * A word is spelled by a path of horizontally, vertically or diagonally
+ * adjacent cells that uses each cell at most once; a "Qu" cell contributes
+ * both letters.
+ * <p>
+ * The search is a depth-first walk from every cell that follows the
+ * {@link Dawg} one letter at a time, so a path is abandoned as soon as its
+ * letters stop being the prefix of any word.  Cells are numbered
+ * <tt>x * size + y</tt>, their neighbors come from a table that is computed
+ * once per board size, and the cells on the current path are tracked in a
+ * bitmask.  On boards of up to 8x8 the neighbors come from the board's
+ * bitboards instead, so the unvisited neighbors of a cell are a single mask.
+ * Apart from recording the words it finds, the search allocates nothing.
+ * <p>
+ * Large boards can be solved on a <tt>ForkJoinPool</tt> with
+ * {@link #solve(BoggleBoard, ForkJoinPool)}.  The search is split into one
+ * task per starting cell, each of which splits again into one task per
+ * neighbor, i.e. per two-cell prefix.  Idle workers steal these subtrees from
+ * busy ones, and the words found by each subtree are merged on the way back
+ * up, keeping one path per word.
+ */
+public class BoggleSolver {
+
+    /** Shortest word that counts in Boggle */
+    public static final int MIN_WORD_LENGTH = 3;
+
+    /** Longest path a search makes room for before it has to grow */
+    private static final int INITIAL_PATH = 16;
+
+    /** Neighbor tables, keyed by board size */
+    private static final Map<Integer, int[][]> neighborTables
+	= new ConcurrentHashMap<Integer, int[][]>();
+
+    /** Dictionary of valid words */
+    private final Dawg _dictionary;
+
+    /**
+     * Constructs a solver that looks words up in the given dictionary
+     *
+     * @param dictionary Dictionary of valid words
+     */
+    public BoggleSolver(Dawg dictionary) {
+	if (dictionary == null) {
+	    throw new NullPointerException();
+	}
+	_dictionary = dictionary;
+    }
+
+    /**
+     * Returns the dictionary this solver uses
+     *
+     * @return Dictionary of valid words
+     */
+    public Dawg getDictionary() {
+	return _dictionary;
+    }
+
+    /**
+     * Returns the table of neighbors for an NxN board.  Entry <tt>c</tt> of the
+     * table lists the cells adjacent to cell <tt>c</tt>.
+     *
+     * @param size Length of the NxN board
+     * @return Shared neighbor table; callers must not modify it
+     */
+    static int[][] neighbors(int size) {
+	int[][] table = neighborTables.get(size);
+	if (table == null) {
+	    table = new int[size * size][];
+	    int[] scratch = new int[8];
+	    for (int x = 0; x < size; x++) {
+		for (int y = 0; y < size; y++) {
+		    int count = 0;
+		    for (int i = x - 1; i <= x + 1; i++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+			    if ((i >= 0 && i < size) && (j >= 0 && j < size) &&
+				(i != x || j != y)) {
+				scratch[count++] = i * size + j;
+			    }
+			}
+		    }
+		    table[x * size + y] = Arrays.copyOf(scratch, count);
+		}
+	    }
+	    neighborTables.put(size, table);
+	}
+	return table;
+    }
+
+    /**
+     * Converts the cells of a board into lower-case letters, one per cell.
+     * Since a board never has a plain "Q", the letter 'q' stands for "Qu".
+     *
+     * @param board Board to be converted
+     * @return Letters of the cells, indexed by cell number
+     */
+    static char[] letters(BoggleBoard board) {
+	char[] letters = new char[board.size() * board.size()];
+	for (int cell = 0; cell < letters.length; cell++) {
+	    letters[cell] = (char) ('a' + board.getLetterCode(cell));
+	}
+	return letters;
+    }
+
+    /**
+     * Scratch state for one depth-first search.  Each search gets its own, so
+     * a single solver can be used from several threads at once.
+     */
+    class Search {
+	/** Letters of the board being solved */
+	final char[] letters;
+
+	/** Neighbor table for the board size */
+	final int[][] neighbors;
+
+	/** Neighbor bitboards, or null if the board is too big for them */
+	final long[] masks;
+
+	/** Bitmask of the cells on the current path */
+	final long[] visited;
+
+	/** Cells on the current path; grown if a path gets this long */
+	int[] path;
+
+	/** Letters on the current path; "Qu" takes two */
+	char[] word;
+
+	/** Words found so far, with the first path found for each */
+	final Map<String, int[]> found = new HashMap<String, int[]>();
+
+	/**
+	 * Sets up a search over a board
+	 *
+	 * @param letters Letters of the board, as returned by {@link #letters}
+	 * @param size Length of the NxN board
+	 */
+	Search(char[] letters, int size) {
+	    this.letters = letters;
+	    neighbors = neighbors(size);
+	    masks = (size <= BoggleBoard.MAX_BITBOARD_SIZE) ?
+		BoggleBoard.neighborMasks(size) : null;
+	    visited = new long[(letters.length + 63) / 64];
+
+	    // Paths are bounded by the longest word rather than the board, so
+	    // start small; big boards fork a lot of searches.
+	    path = new int[Math.min(letters.length, INITIAL_PATH)];
+	    word = new char[2 * path.length];
+	}
+
+	/**
+	 * Extends the current path into a cell, recording any word it completes
+	 * and then trying every unvisited neighbor
+	 *
+	 * @param cell Cell to step into
+	 * @param node Dictionary node reached by the letters so far
+	 * @param depth Number of cells already on the path
+	 * @param length Number of letters already on the path
+	 */
+	void search(int cell, int node, int depth, int length) {
+	    if (depth == path.length) {
+		path = Arrays.copyOf(path, Math.min(2 * depth, letters.length));
+		word = Arrays.copyOf(word, 2 * path.length);
+	    }
+	    int edge = step(cell, node, length);
+	    if (edge == Dawg.NONE) {
+		return;
+	    }
+	    length += (letters[cell] == 'q') ? 2 : 1;
+
+	    visited[cell >>> 6] |= 1L << cell;
+	    path[depth++] = cell;
+
+	    if (_dictionary.isFinal(edge) && length >= MIN_WORD_LENGTH) {
+		record(depth, length);
+	    }
+
+	    int next = _dictionary.target(edge);
+	    if (next != Dawg.ROOT && masks != null) {
+		long free = masks[cell] & ~visited[0];
+		while (free != 0) {
+		    search(Long.numberOfTrailingZeros(free), next, depth, length);
+		    free &= free - 1;
+		}
+	    }
+	    else if (next != Dawg.ROOT) {
+		for (int neighbor : neighbors[cell]) {
+		    if ((visited[neighbor >>> 6] & (1L << neighbor)) == 0) {
+			search(neighbor, next, depth, length);
+		    }
+		}
+	    }
+
+	    visited[cell >>> 6] &= ~(1L << cell);
+	}
+
+	/**
+	 * Follows the letters of a cell through the dictionary, and writes them
+	 * into the word buffer
+	 *
+	 * @param cell Cell to step into
+	 * @param node Dictionary node reached by the letters so far
+	 * @param length Number of letters already on the path
+	 * @return Dictionary edge for the cell's last letter, or
+	 *         {@link Dawg#NONE} if no word continues this way
+	 */
+	int step(int cell, int node, int length) {
+	    char ch = letters[cell];
+	    int edge = _dictionary.findEdge(node, ch);
+	    if (edge == Dawg.NONE) {
+		return Dawg.NONE;
+	    }
+	    word[length] = ch;
+	    if (ch == 'q') {
+		node = _dictionary.target(edge);
+		if (node == Dawg.ROOT) {
+		    return Dawg.NONE;
+		}
+		edge = _dictionary.findEdge(node, 'u');
+		word[length + 1] = 'u';
+	    }
+	    return edge;
+	}
+
+	/**
+	 * Searches every path that starts with the two given cells.  No single
+	 * cell spells a word of {@link #MIN_WORD_LENGTH} letters, so nothing is
+	 * missed by starting at the second one.
+	 *
+	 * @param first Cell the paths start at
+	 * @param second Neighbor of the first cell that the paths continue to
+	 */
+	void searchPair(int first, int second) {
+	    int edge = step(first, Dawg.ROOT, 0);
+	    if (edge == Dawg.NONE || _dictionary.target(edge) == Dawg.ROOT) {
+		return;
+	    }
+	    visited[first >>> 6] |= 1L << first;
+	    path[0] = first;
+
+	    search(second, _dictionary.target(edge),
+		   1, (letters[first] == 'q') ? 2 : 1);
+
+	    visited[first >>> 6] &= ~(1L << first);
+	}
+
+	/**
+	 * Records the word on the current path, unless it was already found
+	 *
+	 * @param depth Number of cells on the path
+	 * @param length Number of letters on the path
+	 */
+	void record(int depth, int length) {
+	    String w = new String(word, 0, length);
+	    if (!found.containsKey(w)) {
+		found.put(w, Arrays.copyOf(path, depth));
+	    }
+	}
+    }
+
+    /**
+     * Finds every word in the dictionary that can be spelled on a board
+     *
+     * @param board Board to be solved
+     * @return All words on the board, each with a path that spells it
+     */
+    public BoggleSolution solve(BoggleBoard board) {
+	Search s = new Search(letters(board), board.size());
+	for (int cell = 0; cell < s.letters.length; cell++) {
+	    s.search(cell, Dawg.ROOT, 0, 0);
+	}
+	return new BoggleSolution(board, s.found);
+    }
+
+    /**
+     * Fork/join task that searches part of a board.  A task for a single
+     * starting cell forks one task per neighbor of that cell; a task for a
+     * pair of cells runs its search directly.
+     */
+    private class SolveTask extends RecursiveTask<Map<String, int[]>> {
+	private static final long serialVersionUID = 1L;
+
+	/** Letters of the board being solved */
+	private final char[] _letters;
+
+	/** Length of the NxN board */
+	private final int _size;
+
+	/** Cell the paths start at, or -1 for the whole board */
+	private final int _first;
+
+	/** Second cell of the paths, or -1 to split by neighbor */
+	private final int _second;
+
+	/**
+	 * Constructs a task for the paths that start with the given cells
+	 *
+	 * @param letters Letters of the board, as returned by {@link #letters}
+	 * @param size Length of the NxN board
+	 * @param first First cell, or -1 to split the whole board by cell
+	 * @param second Second cell, or -1 to split by neighbor
+	 */
+	SolveTask(char[] letters, int size, int first, int second) {
+	    _letters = letters;
+	    _size = size;
+	    _first = first;
+	    _second = second;
+	}
+
+	@Override protected Map<String, int[]> compute() {
+	    if (_second >= 0) {
+		Search s = new Search(_letters, _size);
+		s.searchPair(_first, _second);
+		return s.found;
+	    }
+
+	    ArrayList<SolveTask> tasks = new ArrayList<SolveTask>();
+	    if (_first < 0) {
+		for (int cell = 0; cell < _letters.length; cell++) {
+		    tasks.add(new SolveTask(_letters, _size, cell, -1));
+		}
+	    }
+	    else {
+		// Don't bother forking if no word starts with this letter
+		if (_dictionary.findEdge(Dawg.ROOT, _letters[_first]) == Dawg.NONE) {
+		    return new HashMap<String, int[]>();
+		}
+		for (int neighbor : neighbors(_size)[_first]) {
+		    tasks.add(new SolveTask(_letters, _size, _first, neighbor));
+		}
+	    }
+	    invokeAll(tasks);
+
+	    // Merge the subtrees, keeping the first path found for each word
+	    Map<String, int[]> found = null;
+	    for (SolveTask t : tasks) {
+		Map<String, int[]> part = t.join();
+		if (found == null || part.size() > found.size()) {
+		    if (found != null) {
+			part.putAll(found); // found's paths come from earlier tasks
+		    }
+		    found = part;
+		}
+		else {
+		    for (Map.Entry<String, int[]> e : part.entrySet()) {
+			if (!found.containsKey(e.getKey())) {
+			    found.put(e.getKey(), e.getValue());
+			}
+		    }
+		}
+	    }
+	    return (found == null) ? new HashMap<String, int[]>() : found;
+	}
+    }
+
+    /**
+     * Finds every word in the dictionary that can be spelled on a board,
+     * spreading the search over the workers of a fork/join pool.  This finds
+     * the same words as {@link #solve(BoggleBoard)}, although the path
+     * reported for a word may differ when several paths spell it.
+     *
+     * @param board Board to be solved
+     * @param pool Pool whose workers run the search
+     * @return All words on the board, each with a path that spells it
+     */
+    public BoggleSolution solve(BoggleBoard board, ForkJoinPool pool) {
+	Map<String, int[]> found = pool.invoke(
+	    new SolveTask(letters(board), board.size(), -1, -1));
+	return new BoggleSolution(board, found);
+    }
+}
@@ -1,4 +1,5 @@
-import java.io.Serializable;
+import java.io.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * This object represents the information for a single client that wants to play
@@ -8,9 +9,24 @@ import java.io.Serializable;
  * <p>
  * This class is also used to return the game-results to all clients when a
  * round of Boggle is completed.
+ * <p>
+ * A client's state is read and changed by the threads of every transport and
+ * of the rooms, so it is volatile, and moved from one state to the next with
+ * {@link #compareAndSetState}, so that only one thread makes each move.
+ * <p>
+ * The serialized form is written by hand, with a version number in front, so
+ * that it holds no field descriptors and can change without breaking older
+ * readers silently.
  **/
 public class ClientInfo implements Serializable{
 
+  private static final long serialVersionUID = 1L;
+
+
+  /** Version of the serialized form written by {@link #writeObject}. **/
+  static final int SERIAL_VERSION = 1;
+
+
   /**
    * This enum specifies the states that clients can be in while they are
    * playing a round of Boggle.
@@ -26,32 +42,54 @@ public class ClientInfo implements Serializable{
    * The name of the client that they submitted, when the client called
    * {@link BoggleServer#startGame}.
    **/
-  private String name;
+  private transient String name;
 
 
   /** The current state of the client, as maintained by the Boggle server. **/
-  private State state;
+  private transient volatile State state;
+
+
+  /** Changes {@link #state} atomically. **/
+  private static final AtomicReferenceFieldUpdater<ClientInfo, State>
+    STATE = AtomicReferenceFieldUpdater.newUpdater(ClientInfo.class,
+                                                   State.class, "state");
 
 
   /**
    * The list of words that the client reported at the end of the current round
-   * of play.
+   * of play.  This is set after the client has moved to FINISHED, by another
+   * thread than the ones that read it, so it is volatile too.
    **/
-  private WordList words;
+  private transient volatile WordList words;
 
 
   /**
    * The list of words that this client actually gets a score for; i.e. the
    * words that only this client found, that are also in the dictionary.
    **/
-  private WordList filteredWords;
+  private transient WordList filteredWords;
+
+
+  /**
+   * The list of submitted words that the server rejected, because they are
+   * either not in the dictionary or cannot be formed on the round's board.
+   **/
+  private transient WordList rejectedWords;
 
 
   /**
    * The score for this client, computed from the {@link #filteredWords} set of
    * words, which only contains the valid words that only this client found.
    **/
-  private int score;
+  private transient int score;
+
+
+  /**
+   * The time (in milliseconds) after which the server may
+   * treat this client as gone, or 0 if the client holds no lease.  This is
+   * only meaningful on the server, and isn't serialized.
+   **/
+  private transient volatile long leaseExpiry;
 
 
   /**
@@ -66,6 +104,7 @@ public class ClientInfo implements Serializable{
       state = State.WAITING;
       words = null;
       filteredWords = null;
+      rejectedWords = null;
       score = 0;
   }
     
@@ -89,6 +128,21 @@ public class ClientInfo implements Serializable{
 	
     state = newState;
     }
+
+
+    /**
+     * Moves the client from one state to another, if it is still in the first
+     * one.  Of several threads trying to make the same move, only one does.
+     *
+     * @return true if the client was in the expected state, and has moved
+     * @throws NullPointerException if newState is null
+     **/
+    public boolean compareAndSetState(State expected, State newState) {
+	if (newState == null)
+	    throw new NullPointerException();
+
+	return STATE.compareAndSet(this, expected, newState);
+    }
     
     
     public void setPlaying() {
@@ -112,12 +166,10 @@ public class ClientInfo implements Serializable{
 	if (words == null)
 	    throw new NullPointerException();
 	
-	if (state != State.PLAYING)
+	if (!compareAndSetState(State.PLAYING, State.FINISHED))
 	    throw new IllegalStateException();
 	
 	this.words = words;
-	
-	setState(State.FINISHED);
     }
     
     
@@ -159,6 +211,32 @@ public class ClientInfo implements Serializable{
     }
     
     
+    /**
+     * This method allows the caller to store the list of submitted words that
+     * were rejected, because they aren't words or aren't on the board.
+     *
+     * @throws NullPointerException if rejectedWords is null
+     * @throws IllegalStateException if the client isn't in the FINISHED state
+     **/
+    public void setRejectedWords(WordList rejectedWords) {
+	if (rejectedWords == null)
+	    throw new NullPointerException();
+	
+	if (state != State.FINISHED)
+	    throw new IllegalStateException();
+	
+	this.rejectedWords = rejectedWords;
+    }
+    
+    
+    /**
+     * Returns the set of submitted words that the server rejected as invalid.
+     **/
+    public WordList getRejectedWords() {
+	return rejectedWords;
+    }
+    
+    
     /** Returns this client's score. **/
     public int getScore() {
 	return score;
@@ -169,5 +247,86 @@ public class ClientInfo implements Serializable{
     public void setScore(int val) {
 	score = val;
     }
-}
 
+
+    /**
+     * Renews this client's lease, which the server does each time it hears
+     * from a client that sends it heartbeats.
+     *
+     * @param millis How long from now the lease lasts
+     **/
+    public void renewLease(long millis) {
+	leaseExpiry = System.currentTimeMillis() + millis;
+    }
+
+
+    /** Returns true if this client has ever had its lease renewed. **/
+    public boolean holdsLease() {
+	return leaseExpiry != 0;
+    }
+
+
+    /**
+     * Returns true if this client holds a lease that has run out; clients
+     * that never renewed a lease don't hold one.
+     **/
+    public boolean isLeaseExpired() {
+	long expiry = leaseExpiry;
+	return expiry != 0 && System.currentTimeMillis() > expiry;
+    }
+
+
+    /**
+     * Writes the client's information.
+     *
+     * @serialData The version (byte), the name (UTF), the state (ordinal
+     *             byte), the score (int), then the submitted, scored and
+     *             rejected word lists, each as a byte that is 0 if the list
+     *             isn't set, or else 1 followed by the list's front-coded form
+     **/
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	out.writeByte(SERIAL_VERSION);
+	out.writeUTF(name);
+	out.writeByte(state.ordinal());
+	out.writeInt(score);
+	writeWords(out, words);
+	writeWords(out, filteredWords);
+	writeWords(out, rejectedWords);
+    }
+
+
+    /** Reads the information written by {@link #writeObject}. **/
+    private void readObject(ObjectInputStream in)
+	throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	int version = in.readByte();
+	if (version != SERIAL_VERSION)
+	    throw new InvalidObjectException("Unknown version " + version);
+
+	name = in.readUTF();
+	int ordinal = in.readByte();
+	if (ordinal < 0 || ordinal >= State.values().length)
+	    throw new InvalidObjectException("Bad state " + ordinal);
+	state = State.values()[ordinal];
+	score = in.readInt();
+	words = readWords(in);
+	filteredWords = readWords(in);
+	rejectedWords = readWords(in);
+    }
+
+
+    /** Writes a word list that may not be set. **/
+    private static void writeWords(DataOutput out, WordList list)
+	throws IOException {
+	out.writeBoolean(list != null);
+	if (list != null)
+	    list.write(out, null);
+    }
+
+
+    /** Reads a word list written by {@link #writeWords}. **/
+    private static WordList readWords(DataInput in) throws IOException {
+	return in.readBoolean() ? WordList.read(in, null) : null;
+    }
+}
@@ -0,0 +1,513 @@
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.zip.*;
+
+/**
+ * An immutable dictionary stored as a minimized acyclic automaton (a DAWG).
+ * Words that share prefixes share the same path from the root, and words that
+ * share suffixes share the same tail, so the whole SOWPODS list fits in a few
+ * hundred kilobytes instead of the tens of megabytes that a
+ * <tt>HashSet&lt;String&gt;</tt> of the same words takes up.
+ * <p>
+ * The automaton is packed into a single int array of edges.  The edges leaving
+ * a node are stored contiguously and sorted by letter, and a node is simply the
+ * index of its first edge.  Each edge is one int:
+ * <pre>
+ *   bits  0-4   letter (0 = 'a' ... 25 = 'z')
+ *   bit   5     FINAL: a word ends after following this edge
+ *   bit   6     LAST: this is the last edge leaving its node
+ *   bits  7-31  index of the target node, or 0 if the target has no edges
+ * </pre>
+ * The root node is always at index 0; since no edge can lead back to the root,
+ * a target of 0 is free to mean "no outgoing edges".
+ * <p>
+ * The edges can also be written out as a binary image with {@link #save}, and
+ * {@link #load} maps such an image straight into memory, so a dictionary that
+ * has been compiled ahead of time (see {@link DawgCompiler}) is ready in
+ * milliseconds and answers lookups from the mapped bytes.  An image is a
+ * 16-byte header followed by the edges as big-endian ints:
+ * <pre>
+ *   int MAGIC, int VERSION, int word count, int edge count, edges...
+ * </pre>
+ * <p>
+ * Besides {@link #contains} and {@link #isPrefix}, the class exposes the
+ * automaton itself through {@link #ROOT}, {@link #findEdge},
+ * {@link #isFinal} and {@link #target}, so that searches such as the board
+ * solver can walk the dictionary one letter at a time.  None of these methods
+ * allocate.
+ */
+public class Dawg {
+
+    /** The node that every lookup starts from */
+    public static final int ROOT = 0;
+
+    /** Returned by {@link #findEdge} when no edge has the requested letter */
+    public static final int NONE = -1;
+
+    /** Mask of the letter bits of an edge */
+    static final int LETTER_MASK = 0x1f;
+
+    /** Flag bit marking an edge that completes a word */
+    static final int FINAL_FLAG = 1 << 5;
+
+    /** Flag bit marking the last edge of a node */
+    static final int LAST_FLAG = 1 << 6;
+
+    /** Shift of the target-node bits of an edge */
+    static final int TARGET_SHIFT = 7;
+
+    /** Magic number at the start of a dictionary image ("DAWG") */
+    public static final int MAGIC = 0x44415747;
+
+    /** Version of the image format written by {@link #save} */
+    public static final int VERSION = 1;
+
+    /** Size of the image header in bytes */
+    static final int HEADER_SIZE = 16;
+
+    /** The packed edges of the automaton, on the heap or mapped from a file */
+    private final IntBuffer _edges;
+
+    /** Number of words in the dictionary */
+    private final int _size;
+
+    /**
+     * Number of words that go through the earlier edges of each edge's node,
+     * by edge index, or null until {@link #ordinal} or {@link #word} first
+     * needs it
+     */
+    private volatile int[] _before;
+
+    /** Fingerprint of the dictionary, or 0 until it is first computed */
+    private volatile long _fingerprint;
+
+    /**
+     * Wraps an already packed edge array
+     *
+     * @param edges Packed edges, in the layout described above
+     * @param size Number of words accepted by the automaton
+     */
+    Dawg(int[] edges, int size) {
+	this(IntBuffer.wrap(edges), size);
+    }
+
+    /**
+     * Wraps a buffer of packed edges
+     *
+     * @param edges Packed edges, in the layout described above
+     * @param size Number of words accepted by the automaton
+     */
+    private Dawg(IntBuffer edges, int size) {
+	_edges = edges;
+	_size = size;
+    }
+
+    /**
+     * Returns the number of words in the dictionary
+     *
+     * @return Number of unique words
+     */
+    public int size() {
+	return _size;
+    }
+
+    /**
+     * Returns the number of edges in the packed automaton
+     *
+     * @return Number of edges, which is also the number of ints of storage
+     */
+    public int edgeCount() {
+	return _edges.limit();
+    }
+
+    /**
+     * Maps a character to its letter index, ignoring case
+     *
+     * @param ch Character to be mapped
+     * @return 0-25 for the letters a-z, or -1 for anything else
+     */
+    static int letterIndex(char ch) {
+	// Folding with 0x20 only maps 'A'-'Z' and 'a'-'z' into the range
+	int letter = (ch | 0x20) - 'a';
+	return (letter >= 0 && letter < 26) ? letter : -1;
+    }
+
+    /**
+     * Finds the edge leaving a node with the given letter
+     *
+     * @param node Node to search, either {@link #ROOT} or a {@link #target}
+     * @param ch Letter to follow, in either case
+     * @return Index of the edge, or {@link #NONE} if there isn't one
+     */
+    public int findEdge(int node, char ch) {
+	int letter = letterIndex(ch);
+	if (letter < 0 || node >= _edges.limit()) {
+	    return NONE;
+	}
+	for (int i = node; ; i++) {
+	    int edge = _edges.get(i);
+	    int edgeLetter = edge & LETTER_MASK;
+	    if (edgeLetter == letter) {
+		return i;
+	    }
+	    if (edgeLetter > letter || (edge & LAST_FLAG) != 0) {
+		return NONE; // edges are sorted, so we've gone past it
+	    }
+	}
+    }
+
+    /**
+     * Checks whether following an edge completes a word
+     *
+     * @param edge Index returned by {@link #findEdge}
+     * @return True if the letters up to and including this edge form a word
+     */
+    public boolean isFinal(int edge) {
+	return (_edges.get(edge) & FINAL_FLAG) != 0;
+    }
+
+    /**
+     * Returns the node an edge leads to
+     *
+     * @param edge Index returned by {@link #findEdge}
+     * @return Target node, or {@link #ROOT} if no words continue past this edge
+     */
+    public int target(int edge) {
+	return _edges.get(edge) >>> TARGET_SHIFT;
+    }
+
+    /**
+     * Follows the letters of a string from the root
+     *
+     * @param word Letters to follow
+     * @return Index of the last edge followed, or {@link #NONE} if the walk
+     *         falls off the automaton or the string is empty
+     */
+    private int walk(CharSequence word) {
+	int edge = NONE;
+	int node = ROOT;
+	for (int i = 0; i < word.length(); i++) {
+	    if (i > 0) {
+		node = target(edge);
+		if (node == ROOT) {
+		    return NONE;
+		}
+	    }
+	    edge = findEdge(node, word.charAt(i));
+	    if (edge == NONE) {
+		return NONE;
+	    }
+	}
+	return edge;
+    }
+
+    /**
+     * Checks if the dictionary contains a specified word
+     *
+     * @param word Word to be checked; case is ignored
+     * @return Boolean for whether or not the word is in the dictionary
+     */
+    public boolean contains(CharSequence word) {
+	int edge = walk(word);
+	return edge != NONE && isFinal(edge);
+    }
+
+    /**
+     * Checks if any word in the dictionary starts with the specified prefix.
+     * A complete word counts as a prefix of itself.
+     *
+     * @param prefix Prefix to be checked; case is ignored
+     * @return Boolean for whether or not some word begins with the prefix
+     */
+    public boolean isPrefix(CharSequence prefix) {
+	if (prefix.length() == 0) {
+	    return _size > 0;
+	}
+	return walk(prefix) != NONE;
+    }
+
+    /**
+     * Returns the position of a word in the sorted dictionary.  Together with
+     * {@link #word}, this lets two programs that have the same dictionary
+     * (see {@link #fingerprint}) send each other words as small numbers.
+     *
+     * @param word Word to look up; case is ignored
+     * @return Ordinal of the word, from 0 to <tt>size() - 1</tt>, or -1 if
+     *         the word isn't in the dictionary
+     */
+    public int ordinal(CharSequence word) {
+	int[] before = before();
+	int ordinal = 0;
+	int node = ROOT;
+	for (int i = 0; i < word.length(); i++) {
+	    int edge = findEdge(node, word.charAt(i));
+	    if (edge == NONE) {
+		return -1;
+	    }
+	    ordinal += before[edge];
+	    if (i == word.length() - 1) {
+		return isFinal(edge) ? ordinal : -1;
+	    }
+	    if (isFinal(edge)) {
+		ordinal++; // the word ending here is a prefix of this one
+	    }
+	    node = target(edge);
+	    if (node == ROOT) {
+		return -1;
+	    }
+	}
+	return -1; // the empty string
+    }
+
+    /**
+     * Returns the word at a position in the sorted dictionary
+     *
+     * @param ordinal Ordinal returned by {@link #ordinal}
+     * @return The word, in lower case
+     * @throws IndexOutOfBoundsException if there is no such word
+     */
+    public String word(int ordinal) {
+	if (ordinal < 0 || ordinal >= _size) {
+	    throw new IndexOutOfBoundsException("No word " + ordinal);
+	}
+	int[] before = before();
+	StringBuilder word = new StringBuilder();
+	int node = ROOT;
+	while (true) {
+	    // Find the last edge of the node that the word comes after.  The
+	    // counts only go up within a node, so the scan stops at the node's
+	    // last edge without reading the edges themselves.
+	    int e = node;
+	    while (e + 1 < before.length && before[e + 1] > before[e] &&
+		   before[e + 1] <= ordinal) {
+		e++;
+	    }
+	    int edge = _edges.get(e);
+	    ordinal -= before[e];
+	    word.append((char) ('a' + (edge & LETTER_MASK)));
+	    if ((edge & FINAL_FLAG) != 0) {
+		if (ordinal == 0) {
+		    return word.toString();
+		}
+		ordinal--;
+	    }
+	    node = edge >>> TARGET_SHIFT;
+	}
+    }
+
+    /**
+     * Returns a fingerprint of the dictionary's contents.  Two dictionaries
+     * with the same fingerprint hold the same words, so the same ordinals.
+     *
+     * @return Checksum of the word count and the packed edges; never 0
+     */
+    public long fingerprint() {
+	long fingerprint = _fingerprint;
+	if (fingerprint == 0) {
+	    CRC32 crc = new CRC32();
+	    for (int i = 0; i < edgeCount(); i++) {
+		int edge = _edges.get(i);
+		crc.update(edge >>> 24);
+		crc.update(edge >>> 16);
+		crc.update(edge >>> 8);
+		crc.update(edge);
+	    }
+	    fingerprint = ((long) _size << 32 | crc.getValue()) | 1L << 63;
+	    _fingerprint = fingerprint;
+	}
+	return fingerprint;
+    }
+
+    /**
+     * Returns the number of words that go through the earlier edges of each
+     * edge's node, by edge index, counting them the first time they are
+     * needed
+     */
+    private int[] before() {
+	int[] before = _before;
+	if (before == null) {
+	    before = new int[edgeCount()];
+	    Arrays.fill(before, -1);
+	    int[] counts = new int[edgeCount()];
+	    if (edgeCount() > 0) {
+		count(ROOT, before, counts);
+	    }
+	    _before = before; // racing threads compute the same array
+	}
+	return before;
+    }
+
+    /**
+     * Counts the words reachable from a node, and fills in the counts of
+     * every edge below it
+     *
+     * @param node Node to count
+     * @param before Words through earlier edges, by edge; -1 for edges of
+     *        nodes not yet counted
+     * @param counts Words reachable from each node counted so far
+     * @return Number of words reachable from the node
+     */
+    private int count(int node, int[] before, int[] counts) {
+	if (before[node] >= 0) {
+	    return counts[node];
+	}
+	int total = 0;
+	for (int e = node; ; e++) {
+	    int edge = _edges.get(e);
+	    int target = edge >>> TARGET_SHIFT;
+	    before[e] = total;
+	    if ((edge & FINAL_FLAG) != 0) {
+		total++;
+	    }
+	    if (target != ROOT) {
+		total += count(target, before, counts);
+	    }
+	    if ((edge & LAST_FLAG) != 0) {
+		break;
+	    }
+	}
+	counts[node] = total;
+	return total;
+    }
+
+    /**
+     * Builds a dictionary from a collection of words.  Words are trimmed and
+     * converted to lower case the same way {@link WordList} does it, and
+     * empty strings are ignored.
+     *
+     * @param words Words to put in the dictionary, in any order
+     * @return Minimized dictionary containing all the words
+     * @throws IllegalArgumentException if a word contains anything but letters
+     */
+    public static Dawg fromWords(Iterable<String> words) {
+	ArrayList<String> sorted = new ArrayList<String>();
+	for (String word : words) {
+	    String w = word.trim().toLowerCase();
+	    if (!w.isEmpty()) {
+		sorted.add(w);
+	    }
+	}
+	Collections.sort(sorted);
+
+	DawgBuilder builder = new DawgBuilder();
+	for (String word : sorted) {
+	    builder.add(word);
+	}
+	return builder.build();
+    }
+
+    /**
+     * Load a dictionary from a gzip-compressed input file with a word on each
+     * line.
+     *
+     * @param gzipFilename Name of the .gz file to be read
+     * @throws IOException When file either doesn't exist or cannot be opened
+     * @return Dictionary made from reading the input file
+     */
+    public static Dawg loadFromGZipFile(String gzipFilename)
+	throws IOException {
+
+	BufferedReader reader = new BufferedReader(new InputStreamReader(
+	    new GZIPInputStream(new FileInputStream(gzipFilename))));
+
+	ArrayList<String> words = new ArrayList<String>();
+	try {
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		words.add(line);
+	    }
+	}
+	finally {
+	    reader.close();
+	}
+	return fromWords(words);
+    }
+
+    /**
+     * Writes the dictionary out as a binary image that {@link #load} can map
+     *
+     * @param filename Name of the image file to be written
+     * @throws IOException When the file cannot be written
+     */
+    public void save(String filename) throws IOException {
+	ByteBuffer image = ByteBuffer.allocate(HEADER_SIZE + 4 * edgeCount());
+	image.putInt(MAGIC).putInt(VERSION).putInt(_size).putInt(edgeCount());
+	for (int i = 0; i < edgeCount(); i++) {
+	    image.putInt(_edges.get(i));
+	}
+	image.flip();
+
+	FileOutputStream fos = new FileOutputStream(filename);
+	try {
+	    FileChannel channel = fos.getChannel();
+	    while (image.hasRemaining()) {
+		channel.write(image);
+	    }
+	}
+	finally {
+	    fos.close();
+	}
+    }
+
+    /**
+     * Opens a dictionary from either kind of file: a gzip-compressed word
+     * list if the name ends in <tt>.gz</tt>, or else a compiled image.
+     *
+     * @param filename Name of the word list or image to be read
+     * @throws IOException When the file cannot be read
+     * @return Dictionary read from the file
+     */
+    public static Dawg open(String filename) throws IOException {
+	if (filename.endsWith(".gz")) {
+	    return loadFromGZipFile(filename);
+	}
+	return load(filename);
+    }
+
+    /**
+     * Maps a dictionary image written by {@link #save}.  The edges stay in the
+     * mapped file, so loading costs the same no matter how big the dictionary
+     * is, and pages are only read in as lookups touch them.
+     *
+     * @param filename Name of the image file to be mapped
+     * @throws IOException When the file cannot be read, or isn't an image of
+     *         a version this class understands
+     * @return Dictionary backed by the mapped image
+     */
+    public static Dawg load(String filename) throws IOException {
+	FileInputStream fis = new FileInputStream(filename);
+	try {
+	    FileChannel channel = fis.getChannel();
+	    if (channel.size() < HEADER_SIZE) {
+		throw new IOException(filename + " is not a dictionary image");
+	    }
+	    // The mapping stays valid after the channel is closed
+	    ByteBuffer image =
+		channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+	    if (image.getInt() != MAGIC) {
+		throw new IOException(filename + " is not a dictionary image");
+	    }
+	    int version = image.getInt();
+	    if (version != VERSION) {
+		throw new IOException(filename + " has unsupported version "
+				      + version);
+	    }
+	    int size = image.getInt();
+	    int edgeCount = image.getInt();
+	    if (edgeCount < 0 ||
+		image.remaining() < 4L * edgeCount) {
+		throw new IOException(filename + " is truncated");
+	    }
+
+	    IntBuffer edges = image.slice().asIntBuffer();
+	    edges.limit(edgeCount);
+	    return new Dawg(edges, size);
+	}
+	finally {
+	    fis.close();
+	}
+    }
+}
@@ -0,0 +1,182 @@
+import java.util.*;
+
+/**
+ * Builds a minimized {@link Dawg} from words added in sorted order, using the
+ * incremental construction of Daciuk et al.  Once a word is added, the part of
+ * the previous word that it doesn't share can never change again, so those
+ * nodes are immediately merged with any equivalent node already seen.  This
+ * keeps the working set down to one word's worth of unminimized nodes.
+ */
+class DawgBuilder {
+
+    /**
+     * A mutable node of the automaton under construction
+     */
+    private static class Node {
+	/** Whether a word ends at this node */
+	boolean terminal;
+
+	/** Letters of the outgoing edges, in increasing order */
+	StringBuilder labels = new StringBuilder();
+
+	/** Targets of the outgoing edges, parallel to labels */
+	ArrayList<Node> children = new ArrayList<Node>();
+
+	/** Number assigned once the node is registered as canonical */
+	int id = -1;
+
+	/** Offset of the node's first edge in the packed array */
+	int offset = -1;
+
+	/**
+	 * Returns a key that is equal for two nodes exactly when they accept
+	 * the same suffixes.  Only valid once all children are canonical.
+	 */
+	String signature() {
+	    StringBuilder sb = new StringBuilder();
+	    sb.append(terminal ? '1' : '0');
+	    for (int i = 0; i < children.size(); i++) {
+		sb.append(labels.charAt(i)).append(children.get(i).id).append(',');
+	    }
+	    return sb.toString();
+	}
+    }
+
+    /** Canonical nodes, keyed by their signature */
+    private HashMap<String, Node> _register = new HashMap<String, Node>();
+
+    /** Nodes along the previously added word; element 0 is the root */
+    private ArrayList<Node> _path = new ArrayList<Node>();
+
+    /** The previously added word */
+    private String _previous = "";
+
+    /** Number of words added so far */
+    private int _size;
+
+    /** Constructs a builder for an empty dictionary */
+    DawgBuilder() {
+	_path.add(new Node());
+    }
+
+    /**
+     * Adds the next word.  Adding the same word twice in a row is ignored.
+     *
+     * @param word Lower-case word that sorts after every word added so far
+     * @throws IllegalArgumentException if the word is empty, out of order, or
+     *         contains something other than the letters a-z
+     */
+    void add(String word) {
+	if (word.isEmpty()) {
+	    throw new IllegalArgumentException("Empty word");
+	}
+	if (word.equals(_previous)) {
+	    return;
+	}
+	if (word.compareTo(_previous) < 0) {
+	    throw new IllegalArgumentException("Words must be added in order: "
+					       + word);
+	}
+	for (int i = 0; i < word.length(); i++) {
+	    if (Dawg.letterIndex(word.charAt(i)) < 0 ||
+		Character.isUpperCase(word.charAt(i))) {
+		throw new IllegalArgumentException("Not a lower-case word: "
+						   + word);
+	    }
+	}
+
+	int common = 0;
+	int max = Math.min(word.length(), _previous.length());
+	while (common < max && word.charAt(common) == _previous.charAt(common)) {
+	    common++;
+	}
+
+	minimize(common);
+
+	for (int i = common; i < word.length(); i++) {
+	    Node child = new Node();
+	    Node parent = _path.get(_path.size() - 1);
+	    parent.labels.append(word.charAt(i));
+	    parent.children.add(child);
+	    _path.add(child);
+	}
+	_path.get(_path.size() - 1).terminal = true;
+
+	_previous = word;
+	_size++;
+    }
+
+    /**
+     * Replaces the nodes of the previous word below the given depth by their
+     * canonical equivalents
+     *
+     * @param depth Number of leading nodes (after the root) to leave alone
+     */
+    private void minimize(int depth) {
+	for (int i = _path.size() - 1; i > depth; i--) {
+	    Node child = _path.remove(i);
+	    String key = child.signature();
+	    Node canonical = _register.get(key);
+	    if (canonical == null) {
+		child.id = _register.size();
+		_register.put(key, child);
+		canonical = child;
+	    }
+	    Node parent = _path.get(i - 1);
+	    parent.children.set(parent.children.size() - 1, canonical);
+	}
+    }
+
+    /**
+     * Finishes the automaton and packs it into its edge array
+     *
+     * @return The finished dictionary
+     */
+    Dawg build() {
+	minimize(0);
+	Node root = _path.get(0);
+
+	// Lay the nodes out breadth-first, giving each node with children a
+	// block of consecutive edge slots.
+	ArrayList<Node> order = new ArrayList<Node>();
+	int next = 0;
+	root.offset = next;
+	next += root.children.size();
+	order.add(root);
+	for (int n = 0; n < order.size(); n++) {
+	    for (Node child : order.get(n).children) {
+		if (child.offset < 0 && !child.children.isEmpty()) {
+		    child.offset = next;
+		    next += child.children.size();
+		    order.add(child);
+		}
+	    }
+	}
+	if ((long) next >= (1L << (32 - Dawg.TARGET_SHIFT))) {
+	    throw new IllegalStateException("Dictionary too large to pack");
+	}
+
+	int[] edges = new int[next];
+	for (Node node : order) {
+	    int count = node.children.size();
+	    for (int i = 0; i < count; i++) {
+		Node child = node.children.get(i);
+		int edge = Dawg.letterIndex(node.labels.charAt(i));
+		if (child.terminal) {
+		    edge |= Dawg.FINAL_FLAG;
+		}
+		if (i == count - 1) {
+		    edge |= Dawg.LAST_FLAG;
+		}
+		if (!child.children.isEmpty()) {
+		    edge |= child.offset << Dawg.TARGET_SHIFT;
+		}
+		edges[node.offset + i] = edge;
+	    }
+	}
+
+	_register = null;
+	_path = null;
+	return new Dawg(edges, _size);
+    }
+}
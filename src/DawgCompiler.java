@@ -0,0 +1,43 @@
+import java.io.*;
+
+/**
+ * Offline compiler that turns a word list into a dictionary image, so that
+ * clients and servers can map the prebuilt automaton with {@link Dawg#load}
+ * instead of parsing and minimizing the whole word list on every start.
+ * <p>
+ * Usage: java DawgCompiler &lt;word-list&gt; &lt;image&gt;
+ * <p>
+ * The word list has one word per line, and is read as gzip-compressed if its
+ * name ends in <tt>.gz</tt>.
+ */
+public class DawgCompiler {
+
+    public static void main(String[] args) {
+	String usage = "Usage: java DawgCompiler <word-list> <image>";
+	if (args.length != 2) {
+	    System.err.println(usage);
+	    System.exit(1);
+	}
+
+	try {
+	    long start = System.currentTimeMillis();
+
+	    Dawg dawg;
+	    if (args[0].endsWith(".gz")) {
+		dawg = Dawg.loadFromGZipFile(args[0]);
+	    }
+	    else {
+		dawg = Dawg.fromWords(new WordList(args[0]));
+	    }
+	    dawg.save(args[1]);
+
+	    System.out.println("Compiled " + dawg.size() + " words into "
+			       + dawg.edgeCount() + " edges in "
+			       + (System.currentTimeMillis() - start) + " ms");
+	}
+	catch (IOException e) {
+	    System.err.println("Error - " + e.getMessage());
+	    System.exit(1);
+	}
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * The results of one round, encoded once in the body layout of a
+ * {@link BoggleProtocol#RESULTS} frame, so that every player of a room is
+ * sent the same bytes instead of having the results serialized again for
+ * each of them.  Both RMI and the socket transport send these bytes: the
+ * serialized form of a {@link GameResults} with encoded results is a copy
+ * of them.
+ * <p>
+ * Large rooms can send each player a summary instead, in which the other
+ * players' entries hold only their names and scores.  Each player's entry is
+ * encoded once in both forms, so a summary is put together by copying bytes.
+ * <p>
+ * Instances are immutable.
+ */
+final class EncodedResults {
+
+    /** Whole RESULTS frame with every player's full entry */
+    private final byte[] _frame;
+
+    /** Number of players */
+    private final int _players;
+
+    /** Each player's full entry, by name */
+    private final Map<String, byte[]> _entries;
+
+    /** Each player's entry without word lists, by name */
+    private final Map<String, byte[]> _summaries;
+
+    /** Length of all the summary entries together */
+    private final int _summaryLength;
+
+    /**
+     * Encodes a round's results
+     *
+     * @param results Scored results of the round
+     */
+    EncodedResults(GameResults results) {
+	Collection<ClientInfo> players = results.getClientResults().values();
+	_players = players.size();
+	_entries = new HashMap<String, byte[]>();
+	_summaries = new HashMap<String, byte[]>();
+
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	DataOutputStream out = new DataOutputStream(bytes);
+	int summaryLength = 0;
+	try {
+	    out.writeInt(0); // frame header, filled in below
+	    out.writeByte(BoggleProtocol.RESULTS);
+	    out.writeInt(_players);
+	    for (ClientInfo info : players) {
+		byte[] entry = encode(info, true);
+		byte[] summary = encode(info, false);
+		_entries.put(info.getName(), entry);
+		_summaries.put(info.getName(), summary);
+		summaryLength += summary.length;
+		out.write(entry);
+	    }
+	}
+	catch (IOException e) {
+	    throw new IllegalStateException(e); // can't happen in memory
+	}
+	_summaryLength = summaryLength;
+	_frame = bytes.toByteArray();
+	ByteBuffer.wrap(_frame).putInt(_frame.length -
+				       BoggleProtocol.HEADER_SIZE);
+    }
+
+    /**
+     * Encodes one player's entry
+     *
+     * @param info The player's results
+     * @param words Whether to include the player's word lists
+     * @return Encoded entry
+     */
+    private static byte[] encode(ClientInfo info, boolean words)
+	throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	BoggleProtocol.writeClient(new DataOutputStream(bytes), info, words);
+	return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the RESULTS frame for a player
+     *
+     * @param player Player to make a summary for, or null for the full
+     *        results
+     * @return Frame to send; the full results share one array
+     */
+    ByteBuffer frame(String player) {
+	if (player == null) {
+	    return ByteBuffer.wrap(_frame);
+	}
+	return ByteBuffer.wrap(summary(player, true));
+    }
+
+    /**
+     * Writes the body of the RESULTS frame for a player
+     *
+     * @param out Where to write it
+     * @param player Player to make a summary for, or null for the full
+     *        results
+     */
+    void writeBody(DataOutput out, String player) throws IOException {
+	if (player == null) {
+	    int header = BoggleProtocol.HEADER_SIZE + 1;
+	    out.write(_frame, header, _frame.length - header);
+	}
+	else {
+	    out.write(summary(player, false));
+	}
+    }
+
+    /**
+     * Returns the number of bytes it takes to send every player the results
+     * once
+     *
+     * @param summaries Whether each player is sent a summary
+     * @return Length of all the RESULTS frames for the room
+     */
+    long roundBytes(boolean summaries) {
+	if (!summaries) {
+	    return (long) _frame.length * _players;
+	}
+	long total = 0;
+	for (Map.Entry<String, byte[]> e : _entries.entrySet()) {
+	    total += BoggleProtocol.HEADER_SIZE + 1 + 4 + _summaryLength -
+		_summaries.get(e.getKey()).length + e.getValue().length;
+	}
+	return total;
+    }
+
+    /**
+     * Puts together a summary, in which only the player's own entry holds
+     * word lists
+     *
+     * @param player Player to make the summary for
+     * @param frame Whether to include the frame header
+     * @return Encoded summary
+     */
+    private byte[] summary(String player, boolean frame) {
+	byte[] own = _entries.get(player);
+	if (own == null) {
+	    throw new IllegalArgumentException(player + " didn't play");
+	}
+	int header = frame ? BoggleProtocol.HEADER_SIZE + 1 : 0;
+	int length = 4 + _summaryLength -
+	    _summaries.get(player).length + own.length;
+	ByteBuffer summary = ByteBuffer.allocate(header + length);
+	if (frame) {
+	    summary.putInt(1 + length).put(BoggleProtocol.RESULTS);
+	}
+	summary.putInt(_players);
+	for (Map.Entry<String, byte[]> e : _summaries.entrySet()) {
+	    summary.put(e.getKey().equals(player) ? own : e.getValue());
+	}
+	return summary.array();
+    }
+}
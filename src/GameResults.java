@@ -1,11 +1,21 @@
 import java.util.*;
-import java.io.Serializable;
+import java.io.*;
 
 /**
  * This class is used as a wrapper for all of the game-results of a single round
  * of Boggle.
+ * <p>
+ * The serialized form is written by hand, with a version number in front.
+ * It is the body of a {@link BoggleProtocol#RESULTS} frame, so results that
+ * have been {@link #encode encoded} are serialized by copying their bytes.
  **/
 public class GameResults implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+
+    /** Version of the serialized form written by {@link #writeObject}. **/
+    static final int SERIAL_VERSION = 1;
     
     /**
      * This hash-map contains the information about each client that participated
@@ -13,7 +23,22 @@ public class GameResults implements Serializable {
      * associated with the client's unique name, as specified in the call to
      * {@link BoggleServer#startGame}.
      **/
-    private HashMap<String, ClientInfo> clientResults;
+    private transient HashMap<String, ClientInfo> clientResults;
+
+
+    /**
+     * The results encoded once for every client in the round, or null if they
+     * haven't been encoded.  When set, this object is serialized as the
+     * encoded bytes.
+     **/
+    private transient EncodedResults encoded;
+
+
+    /**
+     * The player this object summarizes the results for, or null if it holds
+     * every player's word lists.
+     **/
+    private transient String summaryPlayer;
     
     
     /** Construct a new empty game-results object. **/
@@ -28,62 +53,167 @@ public class GameResults implements Serializable {
      **/
     public void clear() {
 	clientResults.clear();
+	encoded = null;
+	summaryPlayer = null;
     }
     
     
+    /**
+     * Returns the points a single word is worth, using the following rule:
+     * <pre>
+     * Word-Length    Points
+     *      3            1
+     *      4            1
+     *      5            2
+     *      6            3
+     *      7            5
+     *      8+          11
+     * </pre>
+     * Words shorter than three letters aren't worth anything.
+     **/
+    public static int wordScore(int length) {
+	switch(length) {
+	case 0: case 1: case 2:
+	    return 0;
+	case 3: case 4:
+	    return 1;
+	case 5:
+	    return 2;
+	case 6:
+	    return 3;
+	case 7:
+	    return 5;
+	default: // 8 letters or longer
+	    return 11;
+	}
+    }
+
+
     /**
      * This method is used to store all results from players that participated in
      * the most recent round.  It also computes the set of valid words that each
      * player actually found, and computes each player's score.
+     * <p>
+     * A submitted word is only valid if it is in the round's solution, i.e. it
+     * is a dictionary word that can be formed on the board.  Since the board is
+     * solved once when the round starts, checking a word is a single lookup.
+     * Invalid words are reported back in each client's rejected-word list.
+     * <p>
+     * Scoring takes two passes over the submissions, so its cost grows with
+     * the total number of submitted words rather than with the square of the
+     * number of players.  The first pass counts how many players submitted
+     * each valid word, using the word's index in the solution; the second
+     * gives each player the words that only they submitted.  Rooms whose
+     * players send their words in batches during the round do the first pass
+     * as the batches arrive (see {@link GameRoom#addWords}).
+     *
+     * @param playerResults The clients that played the round
+     * @param solution Every word that can be found on the round's board
      **/
-    public void computeResults(List<ClientInfo> playerResults) {
-	// Uses the following rule to score words:
-	// Word-Length    Points
-	//      3            1
-	//      4            1
-	//      5            2
-	//      6            3
-	//      7            5
-	//      8+          11
-
+    public void computeResults(List<ClientInfo> playerResults,
+			       BoggleSolution solution) {
+	RoundTally tally = new RoundTally(solution, playerResults.size());
+	int p = 0;
 	for (ClientInfo playerInfo : playerResults) {
-	    WordList otherList = new WordList(); // keeps track of the cumulativve word list of other players
-	    
-	    for (ClientInfo otherInfo : playerResults) {
-		if (!playerInfo.getName().equals(otherInfo.getName())) {
-		    otherList.add(otherInfo.getWords());
-		}
-	    }
-	    
-	    WordList playerUniqueWords = playerInfo.getWords();
-	    playerUniqueWords.subtract(otherList);
-	    
-	    int playerScore = 0; // keeps track of the player's score
-	    
-	    Iterator<String> iter = playerUniqueWords.iterator();
-	    while (iter.hasNext()) {
-		switch(iter.next().length()) {
-		case 3: case 4: 
-		    playerScore += 1;
-		    break;
-		case 5:
-		    playerScore += 2;
-		    break;
-	        case 6:
-		    playerScore += 3;
-		    break;
-		case 7:
-		    playerScore += 5;
-		    break;
-		default: // 8 letters or longer
-		    playerScore += 11;
-		}
+	    tally.add(p++, playerInfo.getWords());
+	}
+	tally.finish(0, playerResults, this);
+    }
+
+    
+    /**
+     * Stores one client's results, replacing any earlier results for a client
+     * of the same name.  This is used when results are rebuilt from a form
+     * other than Java serialization.
+     **/
+    void addClientResult(ClientInfo playerInfo) {
+	clientResults.put(playerInfo.getName(), playerInfo);
+    }
+
+    
+    /**
+     * Encodes the results once, so that they can be sent to every client in
+     * the round without being serialized again for each one.  This should be
+     * called once the results are computed; they must not be changed after.
+     **/
+    void encode() {
+	encoded = new EncodedResults(this);
+    }
+
+
+    /** Returns the encoded results, or null if they haven't been encoded. **/
+    EncodedResults getEncoded() {
+	return encoded;
+    }
+
+
+    /**
+     * Returns the player this object summarizes the results for, or null if it
+     * holds every player's word lists.
+     **/
+    String getSummaryPlayer() {
+	return summaryPlayer;
+    }
+
+
+    /**
+     * Returns a summary of the results for one player, in which the other
+     * players only have their names and scores.  This is much smaller than the
+     * full results in a large room.  If these results are encoded, the
+     * summary is put together from the encoded bytes.
+     *
+     * @throws IllegalArgumentException if the player isn't in the results
+     **/
+    public GameResults summaryFor(String clientName) {
+	ClientInfo own = clientResults.get(clientName);
+	if (own == null)
+	    throw new IllegalArgumentException(clientName + " didn't play");
+
+	GameResults summary = new GameResults();
+	for (ClientInfo info : clientResults.values()) {
+	    if (info != own) {
+		ClientInfo brief = new ClientInfo(info.getName());
+		brief.setScore(info.getScore());
+		brief.setPlaying();
+		brief.setWords(new WordList());
+		brief.setFilteredWords(new WordList());
+		brief.setRejectedWords(new WordList());
+		info = brief;
 	    }
-	    playerInfo.setScore(playerScore);
-	    playerInfo.setFilteredWords(playerUniqueWords);
-	    
-	    clientResults.put(playerInfo.getName(), playerInfo);
+	    summary.addClientResult(info);
 	}
+	summary.encoded = encoded;
+	summary.summaryPlayer = clientName;
+	return summary;
+    }
+
+
+    /**
+     * Writes the results, copying the encoded bytes if there are any.
+     *
+     * @serialData The version (byte), then the body of a RESULTS frame, as
+     *             described in {@link BoggleProtocol}
+     **/
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	out.writeByte(SERIAL_VERSION);
+	if (encoded != null)
+	    encoded.writeBody(out, summaryPlayer);
+	else
+	    BoggleProtocol.writeResults(out, this);
+    }
+
+
+    /** Reads the results written by {@link #writeObject}. **/
+    private void readObject(ObjectInputStream in)
+	throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	int version = in.readByte();
+	if (version != SERIAL_VERSION)
+	    throw new InvalidObjectException("Unknown version " + version);
+
+	clientResults = new HashMap<String, ClientInfo>();
+	BoggleProtocol.readResults(in, this);
     }
 
     
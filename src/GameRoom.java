@@ -0,0 +1,328 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * One round of Boggle, played by a fixed set of players on its own board.
+ * A room goes through three states: its players are {@link State#PLAYING}
+ * until every one of them has submitted their words, then the room is
+ * {@link State#SCORING} while the results are computed on an executor, and
+ * then it is {@link State#FINISHED}.
+ * <p>
+ * Rooms don't have threads of their own.  Players wait for the results on the
+ * future returned by {@link #submit}, and the last player to submit hands the
+ * scoring to the executor, which is shared by every room on the server.
+ * Nor do rooms have a lock: each player's words are handled under that
+ * player's own lock, and the room moves from state to state with atomic
+ * updates, so neither the players of a room nor different rooms wait for
+ * each other.
+ * <p>
+ * Players may also send the words they find in batches while they play,
+ * with {@link #addWords}.  Each batch is validated and counted as it
+ * arrives, so scoring at the end of the round only has to hand out the
+ * words that nobody else found.
+ * <p>
+ * A room doesn't have to wait for players who never submit.  Once its
+ * deadline passes, {@link #close} cuts off the players who haven't submitted
+ * yet, and scores the round with the words they sent in batches before the
+ * cutoff.  A player who was cut off and submits late gets the results, but
+ * the late words are ignored.
+ */
+public class GameRoom {
+
+    /** The stages of a room's lifecycle */
+    public enum State {
+	/** Waiting for players to submit their words */
+	PLAYING,
+	/** All words are in, and the results are being computed */
+	SCORING,
+	/** The results are ready */
+	FINISHED
+    }
+
+    /** Number that identifies the room */
+    private final int _id;
+
+    /** Players of the round */
+    private final List<ClientInfo> _players;
+
+    /** The room's board, and every word that can be found on it */
+    private final BoggleSolution _solution;
+
+    /** Runs the scoring */
+    private final Executor _executor;
+
+    /** Each player's number in the tally */
+    private final Map<ClientInfo, Integer> _numbers =
+	new IdentityHashMap<ClientInfo, Integer>();
+
+    /** The words submitted so far, validated and counted */
+    private final RoundTally _tally;
+
+    /** Results of the round, completed once they are scored */
+    private final CompletableFuture<GameResults> _results =
+	new CompletableFuture<GameResults>();
+
+    /** The players who were cut off by {@link #close} and haven't submitted */
+    private final Set<ClientInfo> _cutOff = Collections.newSetFromMap(
+	new ConcurrentHashMap<ClientInfo, Boolean>());
+
+    /** Number of players who have submitted their words */
+    private final AtomicInteger _submitted = new AtomicInteger();
+
+    /** Where the room is in its lifecycle */
+    private final AtomicReference<State> _state =
+	new AtomicReference<State>(State.PLAYING);
+
+    /** When the room started, as from <tt>System.nanoTime</tt> */
+    private final long _startTime = System.nanoTime();
+
+    /** Nanoseconds it took to score the round, once it is finished */
+    private volatile long _scoringTime;
+
+    /**
+     * Constructs a room whose players are about to start playing
+     *
+     * @param id Number that identifies the room
+     * @param players Players of the round; they must be in the PLAYING state
+     * @param solution The room's solved board
+     * @param executor Executor to score the round on
+     */
+    public GameRoom(int id, List<ClientInfo> players, BoggleSolution solution,
+		    Executor executor) {
+	if (players == null || solution == null || executor == null) {
+	    throw new NullPointerException();
+	}
+	_id = id;
+	_players = Collections.unmodifiableList(
+	    new ArrayList<ClientInfo>(players));
+	_solution = solution;
+	_executor = executor;
+	_tally = new RoundTally(solution, _players.size());
+	for (int p = 0; p < _players.size(); p++) {
+	    _numbers.put(_players.get(p), p);
+	}
+    }
+
+    /**
+     * Returns a player's number in the tally
+     *
+     * @throws IllegalArgumentException if the player isn't in this room
+     */
+    private int number(ClientInfo player) {
+	Integer p = _numbers.get(player);
+	if (p == null) {
+	    throw new IllegalArgumentException(player.getName() +
+					       " isn't in room " + _id);
+	}
+	return p;
+    }
+
+    /**
+     * Records a batch of the words a player has found so far.  The words are
+     * validated and counted right away.
+     *
+     * @param player Player of this room
+     * @param batch Words the player found since the last batch; words sent
+     *        before are ignored
+     * @throws IllegalArgumentException if the player isn't in this room
+     * @throws IllegalStateException if the player has already submitted
+     */
+    public void addWords(ClientInfo player, WordList batch) {
+	int p = number(player);
+	synchronized (player) {
+	    if (player.getState() != ClientInfo.State.PLAYING) {
+		throw new IllegalStateException(player.getName() +
+						" has already submitted");
+	    }
+	    _tally.add(p, batch);
+	}
+    }
+
+    /**
+     * Records the last of the words a player found.  Once every player has
+     * submitted, the round is scored.
+     *
+     * @param player Player of this room
+     * @param words Words the player found that weren't sent with
+     *        {@link #addWords}; words sent before are ignored, so the whole
+     *        list may be sent too
+     * @return Future that completes with the round's results
+     * @throws IllegalArgumentException if the player isn't in this room
+     * @throws IllegalStateException if the player has already submitted
+     */
+    public CompletableFuture<GameResults> submit(ClientInfo player,
+						 WordList words) {
+	int p = number(player);
+	synchronized (player) {
+	    if (_cutOff.remove(player)) {
+		return _results; // too late for these words
+	    }
+	    if (player.getState() != ClientInfo.State.PLAYING) {
+		throw new IllegalStateException(player.getName() +
+						" has already submitted");
+	    }
+	    _tally.add(p, words);
+	    player.setWords(_tally.getWords(p));
+	}
+	if (_submitted.incrementAndGet() == _players.size()) {
+	    startScoring();
+	}
+	return _results;
+    }
+
+    /**
+     * Ends the round at its deadline.  Players who haven't submitted are cut
+     * off: their words are the ones they sent in batches so far, and the
+     * round is scored without waiting for them.
+     *
+     * @return The players who were cut off; empty if every player had
+     *         already submitted
+     */
+    public List<ClientInfo> close() {
+	List<ClientInfo> cutOff = new ArrayList<ClientInfo>();
+	for (int p = 0; p < _players.size(); p++) {
+	    ClientInfo player = _players.get(p);
+	    synchronized (player) {
+		if (player.getState() == ClientInfo.State.PLAYING) {
+		    player.setWords(_tally.getWords(p));
+		    _cutOff.add(player);
+		    cutOff.add(player);
+		}
+	    }
+	}
+	startScoring();
+	return cutOff;
+    }
+
+    /**
+     * Returns true if a player was cut off by {@link #close}, and hasn't
+     * submitted since
+     *
+     * @param player Player of this room
+     * @return Whether the player is still owed the results
+     */
+    public boolean isCutOff(ClientInfo player) {
+	return _cutOff.contains(player);
+    }
+
+    /**
+     * Hands the scoring to the executor, unless it already has been.  Every
+     * player must have finished.  The last player to submit and the deadline
+     * may both get here; only the one that moves the room out of PLAYING
+     * starts the scoring.
+     */
+    private void startScoring() {
+	if (!_state.compareAndSet(State.PLAYING, State.SCORING)) {
+	    return;
+	}
+	_executor.execute(new Runnable() {
+		public void run() {
+		    score();
+		}
+	    });
+    }
+
+    /**
+     * Computes the results, and wakes the players waiting for them
+     */
+    private void score() {
+	long start = System.nanoTime();
+	try {
+	    GameResults results = new GameResults();
+	    _tally.finish(_id, _players, results);
+
+	    RoundEvents.Encode event = new RoundEvents.Encode();
+	    event.begin();
+	    results.encode();
+	    event.end();
+	    if (event.shouldCommit()) {
+		event.room = _id;
+		event.players = _players.size();
+		event.bytes = results.getEncoded().roundBytes(
+		    _players.size() > BoggleServerApp.SUMMARY_ROOM_SIZE);
+		event.commit();
+	    }
+	    _scoringTime = System.nanoTime() - start;
+	    _state.set(State.FINISHED);
+	    _results.complete(results);
+	}
+	catch (RuntimeException e) {
+	    _state.set(State.FINISHED);
+	    _results.completeExceptionally(e);
+	}
+    }
+
+    /**
+     * Returns the number that identifies the room
+     *
+     * @return Room number
+     */
+    public int getId() {
+	return _id;
+    }
+
+    /**
+     * Returns the players of the round
+     *
+     * @return Unmodifiable list of players
+     */
+    public List<ClientInfo> getPlayers() {
+	return _players;
+    }
+
+    /**
+     * Returns the room's board
+     *
+     * @return Board the round is played on
+     */
+    public BoggleBoard getBoard() {
+	return _solution.getBoard();
+    }
+
+    /**
+     * Returns every word that can be found on the room's board
+     *
+     * @return The board's solution
+     */
+    public BoggleSolution getSolution() {
+	return _solution;
+    }
+
+    /**
+     * Returns when the room started
+     *
+     * @return Start time, as from <tt>System.nanoTime</tt>
+     */
+    public long getStartTime() {
+	return _startTime;
+    }
+
+    /**
+     * Returns how long it took to score the round
+     *
+     * @return Nanoseconds spent scoring, or 0 if the round isn't finished
+     */
+    public long getScoringTime() {
+	return _scoringTime;
+    }
+
+    /**
+     * Returns where the room is in its lifecycle
+     *
+     * @return Current state
+     */
+    public State getState() {
+	return _state.get();
+    }
+
+    /**
+     * Returns the round's results, which complete once every player has
+     * submitted their words, or the round was closed, and it is scored
+     *
+     * @return Future results
+     */
+    public CompletableFuture<GameResults> getResults() {
+	return _results;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values, cheap enough to record into on every
+ * request.  Recording takes no locks: it bumps one slot of an atomic array,
+ * and a few adders.
+ * <p>
+ * Values are kept in buckets the way HdrHistogram keeps them: each power of
+ * two is split into {@link #SUB_BUCKETS} equal sub-buckets, so a value is
+ * known to within about 3% of itself however large it is, in a fixed
+ * amount of memory.  Values below {@link #SUB_BUCKETS} are kept exactly.
+ * <p>
+ * Reading a percentile walks the buckets without stopping the writers, so
+ * it may miss values recorded while it runs.
+ */
+public class Histogram implements HistogramMBean {
+
+    /** Log base 2 of {@link #SUB_BUCKETS} */
+    private static final int SUB_BITS = 5;
+
+    /** Number of sub-buckets each power of two is split into */
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** What the recorded values count, for readers */
+    private final String _unit;
+
+    /** Number of values recorded in each bucket */
+    private final AtomicLongArray _counts =
+	new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+
+    /** Number of values recorded */
+    private final LongAdder _count = new LongAdder();
+
+    /** Sum of the values recorded */
+    private final LongAdder _sum = new LongAdder();
+
+    /** Largest value recorded */
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * Constructs an empty histogram
+     *
+     * @param unit What the values count, such as "us" or "bytes"
+     */
+    public Histogram(String unit) {
+	_unit = unit;
+    }
+
+    /**
+     * Returns the bucket a value is counted in
+     *
+     * @param value Value, which must not be negative
+     * @return Index into the counts
+     */
+    static int index(long value) {
+	if (value < SUB_BUCKETS) {
+	    return (int) value;
+	}
+	// Keep the value's top SUB_BITS + 1 bits
+	int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+	int top = (int) (value >>> shift);
+	return (shift + 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    /**
+     * Returns the largest value counted in a bucket
+     *
+     * @param index Index into the counts
+     * @return Upper bound of the bucket's values
+     */
+    static long highest(int index) {
+	if (index < SUB_BUCKETS) {
+	    return index;
+	}
+	int shift = index / SUB_BUCKETS - 1;
+	long top = index % SUB_BUCKETS + SUB_BUCKETS;
+	return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a value
+     *
+     * @param value Value to record; negative values are recorded as 0
+     */
+    public void record(long value) {
+	if (value < 0) {
+	    value = 0;
+	}
+	_counts.incrementAndGet(index(value));
+	_count.increment();
+	_sum.add(value);
+	long max = _max.get();
+	while (value > max && !_max.compareAndSet(max, value)) {
+	    max = _max.get();
+	}
+    }
+
+    /**
+     * Records the time since a start time, in microseconds
+     *
+     * @param startNanos Start time, as returned by <tt>System.nanoTime</tt>
+     */
+    public void recordSince(long startNanos) {
+	record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public String getUnit() {
+	return _unit;
+    }
+
+    public long getCount() {
+	return _count.sum();
+    }
+
+    public double getMean() {
+	long count = _count.sum();
+	return (count == 0) ? 0 : (double) _sum.sum() / count;
+    }
+
+    public long getMax() {
+	return _max.get();
+    }
+
+    /**
+     * Returns the value that a given share of the recorded values are at or
+     * below, rounded up to the top of its bucket
+     *
+     * @param percentile Share of the values, from 0 to 100
+     * @return The percentile, or 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+	long[] counts = new long[_counts.length()];
+	long total = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    counts[i] = _counts.get(i);
+	    total += counts[i];
+	}
+	if (total == 0) {
+	    return 0;
+	}
+
+	long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+	long seen = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    seen += counts[i];
+	    if (seen >= rank) {
+		return Math.min(highest(i), getMax());
+	    }
+	}
+	return getMax();
+    }
+
+    public long get50thPercentile() {
+	return getPercentile(50);
+    }
+
+    public long get90thPercentile() {
+	return getPercentile(90);
+    }
+
+    public long get99thPercentile() {
+	return getPercentile(99);
+    }
+
+    public long get999thPercentile() {
+	return getPercentile(99.9);
+    }
+}
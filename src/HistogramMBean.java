@@ -0,0 +1,45 @@
+/**
+ * Management interface of a {@link Histogram}, as JMX shows it.
+ */
+public interface HistogramMBean {
+
+    /**
+     * Returns what the recorded values count
+     *
+     * @return Unit, such as "us" or "bytes"
+     */
+    String getUnit();
+
+    /**
+     * Returns the number of values recorded
+     *
+     * @return Count of values
+     */
+    long getCount();
+
+    /**
+     * Returns the mean of the values recorded
+     *
+     * @return Mean, or 0 if nothing has been recorded
+     */
+    double getMean();
+
+    /**
+     * Returns the largest value recorded
+     *
+     * @return Maximum, or 0 if nothing has been recorded
+     */
+    long getMax();
+
+    /** @return The median */
+    long get50thPercentile();
+
+    /** @return The 90th percentile */
+    long get90thPercentile();
+
+    /** @return The 99th percentile */
+    long get99thPercentile();
+
+    /** @return The 99.9th percentile */
+    long get999thPercentile();
+}
@@ -54,32 +54,44 @@ public class JClientInfoView extends JPanel {
 
     // Word list labels:
 
-    gbc.gridwidth = GridBagConstraints.RELATIVE;
+    gbc.gridwidth = 1;
 
     lbl = new JLabel("Words submitted:");
     gbl.setConstraints(lbl, gbc);
     add(lbl);
 
-    gbc.gridwidth = GridBagConstraints.REMAINDER;
+    gbc.gridwidth = GridBagConstraints.RELATIVE;
 
     lbl = new JLabel("Words scored:");
     gbl.setConstraints(lbl, gbc);
     add(lbl);
 
+    gbc.gridwidth = GridBagConstraints.REMAINDER;
+
+    lbl = new JLabel("Words rejected:");
+    gbl.setConstraints(lbl, gbc);
+    add(lbl);
+
     // Word lists themselves:
 
     gbc.weighty = 1.0;
 
-    gbc.gridwidth = GridBagConstraints.RELATIVE;
+    gbc.gridwidth = 1;
     JList originalWords = new JList(getArrayFromWordList(info.getWords()));
     gbl.setConstraints(originalWords, gbc);
     add(new JScrollPane(originalWords));
 
-    gbc.gridwidth = GridBagConstraints.REMAINDER;
+    gbc.gridwidth = GridBagConstraints.RELATIVE;
     JList filteredWords =
       new JList(getArrayFromWordList(info.getFilteredWords()));
     gbl.setConstraints(filteredWords, gbc);
     add(new JScrollPane(filteredWords));
+
+    gbc.gridwidth = GridBagConstraints.REMAINDER;
+    JList<String> rejectedWords =
+      new JList<String>(getArrayFromWordList(info.getRejectedWords()));
+    gbl.setConstraints(rejectedWords, gbc);
+    add(new JScrollPane(rejectedWords));
   }
 
 
@@ -0,0 +1,258 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Gathers clients who want to play into rounds.  Clients {@link #join} the
+ * lobby and get back a future for the board of the round they end up in.
+ * Rounds hold up to a fixed number of players: as soon as enough clients are
+ * waiting to fill a round, it is formed.  Otherwise a round is formed from the
+ * clients waiting once there are enough of them, and nobody else has joined
+ * for a timeout period.
+ * <p>
+ * The timeout is a single task on a <tt>ScheduledExecutorService</tt>, which
+ * is cancelled and rescheduled every time a client joins, so nothing runs
+ * while the lobby is idle and the round is formed exactly when the timeout
+ * expires.  Every client has its own future, so starting a round wakes only
+ * the clients who are in it.
+ * <p>
+ * Each round formed is handed to a {@link RoundListener}, which finds a board
+ * for it and then starts it with {@link #startRound}.  Any number of rounds
+ * may be in progress at once.
+ */
+public class LobbyScheduler {
+
+    /**
+     * Is told about each round the lobby forms.  It is called on the thread
+     * of the client who filled the round, or on the timeout's thread, so it
+     * should hand any slow work off to another thread.
+     */
+    public interface RoundListener {
+	/**
+	 * Called when a round has been formed
+	 *
+	 * @param players Players of the round, in the order they joined
+	 */
+	void roundFormed(List<ClientInfo> players);
+    }
+
+    /** Runs the start timeout */
+    private final ScheduledExecutorService _scheduler;
+
+    /** Milliseconds to wait after the last join before starting a round */
+    private final long _startTimeout;
+
+    /** Fewest players a round may have */
+    private final int _minPlayers;
+
+    /** Most players a round may have */
+    private final int _maxPlayers;
+
+    /** Is told about each round formed */
+    private final RoundListener _listener;
+
+    /** Clients waiting for a round, in the order they joined */
+    private final Map<ClientInfo, CompletableFuture<BoggleBoard>> _waiting =
+	new LinkedHashMap<ClientInfo, CompletableFuture<BoggleBoard>>();
+
+    /** Futures of the players of formed rounds that haven't started yet */
+    private final Map<ClientInfo, CompletableFuture<BoggleBoard>> _started =
+	new HashMap<ClientInfo, CompletableFuture<BoggleBoard>>();
+
+    /** The pending start timeout, or null if none is scheduled */
+    private ScheduledFuture<?> _deadline;
+
+    /**
+     * Counts the start timeouts scheduled so far.  A timeout that fires just
+     * as it is being cancelled sees that it is out of date, and does nothing.
+     */
+    private long _deadlineCount;
+
+    /**
+     * This task forms a round when the start timeout expires.
+     */
+    private class Deadline implements Runnable {
+	/** Value of {@link #_deadlineCount} when this timeout was scheduled */
+	private final long _count;
+
+	Deadline(long count) {
+	    _count = count;
+	}
+
+	public void run() {
+	    List<ClientInfo> players;
+	    synchronized (LobbyScheduler.this) {
+		if (_count != _deadlineCount) {
+		    return; // rescheduled after this timeout fired
+		}
+		_deadline = null;
+		if (_waiting.size() < _minPlayers) {
+		    return; // the next client to join reschedules the timeout
+		}
+		players = formRound();
+	    }
+	    _listener.roundFormed(players);
+	}
+    }
+
+    /**
+     * Constructs a lobby
+     *
+     * @param scheduler Scheduler to run the start timeout on
+     * @param startTimeout Milliseconds to wait after the last client joins
+     *        before starting a round
+     * @param minPlayers Fewest players a round may have
+     * @param maxPlayers Most players a round may have
+     * @param listener Is told about each round formed
+     */
+    public LobbyScheduler(ScheduledExecutorService scheduler,
+			  long startTimeout, int minPlayers, int maxPlayers,
+			  RoundListener listener) {
+	if (scheduler == null || listener == null) {
+	    throw new NullPointerException();
+	}
+	if (startTimeout < 0 || minPlayers < 1 || maxPlayers < minPlayers) {
+	    throw new IllegalArgumentException();
+	}
+	_scheduler = scheduler;
+	_startTimeout = startTimeout;
+	_minPlayers = minPlayers;
+	_maxPlayers = maxPlayers;
+	_listener = listener;
+    }
+
+    /**
+     * Adds a client to the lobby.  If this fills a round, it is formed right
+     * away; otherwise the start of the next round is pushed back.
+     *
+     * @param client Client who wants to play
+     * @return Future that completes with the board of the client's round
+     */
+    public CompletableFuture<BoggleBoard> join(ClientInfo client) {
+	CompletableFuture<BoggleBoard> board =
+	    new CompletableFuture<BoggleBoard>();
+	List<ClientInfo> players = null;
+	synchronized (this) {
+	    _waiting.put(client, board);
+	    if (_waiting.size() >= _maxPlayers) {
+		cancelDeadline();
+		players = formRound();
+	    }
+	    else {
+		reschedule();
+	    }
+	}
+	if (players != null) {
+	    _listener.roundFormed(players);
+	}
+	return board;
+    }
+
+    /**
+     * Removes a client who no longer wants to play from the lobby.  Its
+     * future is cancelled.
+     *
+     * @param client Client to remove
+     * @return True if the client was waiting
+     */
+    public synchronized boolean leave(ClientInfo client) {
+	CompletableFuture<BoggleBoard> board = _waiting.remove(client);
+	if (board == null) {
+	    return false;
+	}
+	board.cancel(false);
+	return true;
+    }
+
+    /**
+     * Hands a board to each player of a formed round, waking them up
+     *
+     * @param players Players of the round
+     * @param board Board the round is played on
+     */
+    public void startRound(List<ClientInfo> players, BoggleBoard board) {
+	for (CompletableFuture<BoggleBoard> future : removeStarted(players)) {
+	    future.complete(board);
+	}
+    }
+
+    /**
+     * Gives up on a formed round that can't be started, waking its players
+     * with an exception
+     *
+     * @param players Players of the round
+     * @param cause Why the round can't be started
+     */
+    public void abortRound(List<ClientInfo> players, Throwable cause) {
+	for (CompletableFuture<BoggleBoard> future : removeStarted(players)) {
+	    future.completeExceptionally(cause);
+	}
+    }
+
+    /**
+     * Returns the number of clients waiting for a round
+     *
+     * @return Number of clients in the lobby
+     */
+    public synchronized int getWaitingCount() {
+	return _waiting.size();
+    }
+
+    /**
+     * Removes the futures of a formed round's players
+     *
+     * @param players Players of the round
+     * @return Their futures
+     */
+    private synchronized List<CompletableFuture<BoggleBoard>>
+	removeStarted(List<ClientInfo> players) {
+	List<CompletableFuture<BoggleBoard>> futures =
+	    new ArrayList<CompletableFuture<BoggleBoard>>(players.size());
+	for (ClientInfo c : players) {
+	    CompletableFuture<BoggleBoard> future = _started.remove(c);
+	    if (future != null) {
+		futures.add(future);
+	    }
+	}
+	return futures;
+    }
+
+    /**
+     * Cancels any pending start timeout, and schedules a new one
+     */
+    private void reschedule() {
+	cancelDeadline();
+	_deadline = _scheduler.schedule(new Deadline(++_deadlineCount),
+					_startTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the pending start timeout, if there is one
+     */
+    private void cancelDeadline() {
+	if (_deadline != null) {
+	    _deadline.cancel(false);
+	    _deadline = null;
+	}
+	_deadlineCount++;
+    }
+
+    /**
+     * Takes up to a round's worth of waiting clients, in the order they
+     * joined.  Must be called while holding the lock.
+     *
+     * @return The players of the new round
+     */
+    private List<ClientInfo> formRound() {
+	List<ClientInfo> players = new ArrayList<ClientInfo>();
+	Iterator<Map.Entry<ClientInfo, CompletableFuture<BoggleBoard>>> iter =
+	    _waiting.entrySet().iterator();
+	while (iter.hasNext() && players.size() < _maxPlayers) {
+	    Map.Entry<ClientInfo, CompletableFuture<BoggleBoard>> e =
+		iter.next();
+	    players.add(e.getKey());
+	    _started.put(e.getKey(), e.getValue());
+	    iter.remove();
+	}
+	return players;
+    }
+}
@@ -0,0 +1,503 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.BiConsumer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs any number of Boggle rounds at once, each in its own {@link GameRoom}.
+ * Clients {@link #join} a lobby that fills rooms up to a fixed size; each
+ * room that is formed takes the next board from a {@link BoardPipeline} and
+ * starts playing.  Clients then {@link #submit} their words to their own
+ * room, which scores the round once all of its players are in.
+ * <p>
+ * No room has a thread of its own.  Starting and scoring rooms is done by
+ * tasks on executors shared by every room, and the clients wait on futures,
+ * so the number of rounds in progress is limited only by memory.
+ * <p>
+ * Forming rooms, starting them and scoring them are separate stages, which
+ * may be given executors of their own.  Starting a room may wait for the
+ * board pipeline, and scoring a large room takes a while; with an executor
+ * each, neither holds up the other, so a room can form and start while
+ * others are being scored.  If the starting executor rejects a room, because
+ * its queue is full, the room's players are told that no room could be
+ * started.
+ * <p>
+ * Each room may be given a deadline, counted from when its board is handed
+ * out.  A room still playing at its deadline is {@link GameRoom#close closed},
+ * so one client that crashed or fell behind can't keep the rest of its room
+ * waiting.  Clients who were cut off stay in their room until they submit
+ * late, and get the results, or {@link #leave}.
+ * <p>
+ * The manager keeps counts and histograms of its rooms as they go, which
+ * {@link ServerMetrics} shows over JMX.  None of them take locks to record.
+ * Each room's start and lifetime are also recorded as {@link RoundEvents}
+ * for Flight Recorder, when a recording asks for them.
+ */
+public class RoomManager {
+
+    /** Logger for the Boggle server */
+    private static final Logger logger = Logger.getLogger("boggle.server");
+
+    /** Source of solved boards */
+    private final BoardPipeline _boards;
+
+    /** Runs the tasks that start rooms */
+    private final Executor _starter;
+
+    /** Runs the tasks that score rooms */
+    private final Executor _scorer;
+
+    /** Runs the rooms' deadlines */
+    private final ScheduledExecutorService _scheduler;
+
+    /**
+     * Milliseconds from the start of a room until it is closed, or 0 if
+     * rooms wait for every player
+     */
+    private final long _roundLimit;
+
+    /** Forms rooms from waiting clients */
+    private final LobbyScheduler _lobby;
+
+    /** The room each playing client is in */
+    private final ConcurrentMap<ClientInfo, GameRoom> _rooms =
+	new ConcurrentHashMap<ClientInfo, GameRoom>();
+
+    /** Number given to the next room */
+    private final AtomicInteger _nextId = new AtomicInteger();
+
+    /** Number of rooms in progress */
+    private final AtomicInteger _active = new AtomicInteger();
+
+    /** Number of rooms that have finished */
+    private final AtomicLong _finished = new AtomicLong();
+
+    /** Number of players cut off at their room's deadline */
+    private final AtomicLong _cutOff = new AtomicLong();
+
+    /** Number of submitted words checked against the rooms' solutions */
+    private final LongAdder _wordLookups = new LongAdder();
+
+    /** Number of players in each room as it starts */
+    private final Histogram _roomSizes = new Histogram("players");
+
+    /** Time from each room's start to its results, in microseconds */
+    private final Histogram _roundTimes = new Histogram("us");
+
+    /** Time to score each room, in microseconds */
+    private final Histogram _scoringTimes = new Histogram("us");
+
+    /** Bytes of results each room sends its players */
+    private final Histogram _resultsBytes = new Histogram("bytes");
+
+    /**
+     * Constructs a room manager whose rooms wait for every player
+     *
+     * @param boards Source of solved boards for the rooms
+     * @param scheduler Scheduler to run the lobby's start timeout on
+     * @param executor Executor to start and score rooms on
+     * @param startTimeout Milliseconds to wait after the last client joins
+     *        before starting a room that isn't full
+     * @param minPlayers Fewest players a room may have
+     * @param roomSize Most players a room may have
+     */
+    public RoomManager(BoardPipeline boards, ScheduledExecutorService scheduler,
+		       Executor executor, long startTimeout, int minPlayers,
+		       int roomSize) {
+	this(boards, scheduler, executor, executor, startTimeout, minPlayers,
+	     roomSize, 0);
+    }
+
+    /**
+     * Constructs a room manager that starts and scores its rooms on the same
+     * executor
+     *
+     * @param boards Source of solved boards for the rooms
+     * @param scheduler Scheduler to run the lobby's start timeout and the
+     *        rooms' deadlines on
+     * @param executor Executor to start and score rooms on
+     * @param startTimeout Milliseconds to wait after the last client joins
+     *        before starting a room that isn't full
+     * @param minPlayers Fewest players a room may have
+     * @param roomSize Most players a room may have
+     * @param roundLimit Milliseconds after a room starts before it is scored
+     *        with whatever has been submitted, or 0 to wait for every player
+     */
+    public RoomManager(BoardPipeline boards, ScheduledExecutorService scheduler,
+		       Executor executor, long startTimeout, int minPlayers,
+		       int roomSize, long roundLimit) {
+	this(boards, scheduler, executor, executor, startTimeout, minPlayers,
+	     roomSize, roundLimit);
+    }
+
+    /**
+     * Constructs a room manager
+     *
+     * @param boards Source of solved boards for the rooms
+     * @param scheduler Scheduler to run the lobby's start timeout and the
+     *        rooms' deadlines on
+     * @param starter Executor to start rooms on, which may wait for boards
+     * @param scorer Executor to score rooms on
+     * @param startTimeout Milliseconds to wait after the last client joins
+     *        before starting a room that isn't full
+     * @param minPlayers Fewest players a room may have
+     * @param roomSize Most players a room may have
+     * @param roundLimit Milliseconds after a room starts before it is scored
+     *        with whatever has been submitted, or 0 to wait for every player
+     */
+    public RoomManager(BoardPipeline boards, ScheduledExecutorService scheduler,
+		       Executor starter, Executor scorer, long startTimeout,
+		       int minPlayers, int roomSize, long roundLimit) {
+	if (boards == null || starter == null || scorer == null ||
+	    scheduler == null) {
+	    throw new NullPointerException();
+	}
+	if (roundLimit < 0) {
+	    throw new IllegalArgumentException("Bad round limit: " + roundLimit);
+	}
+	_boards = boards;
+	_starter = starter;
+	_scorer = scorer;
+	_scheduler = scheduler;
+	_roundLimit = roundLimit;
+	_lobby = new LobbyScheduler(scheduler, startTimeout, minPlayers,
+	    roomSize, new LobbyScheduler.RoundListener() {
+		    public void roundFormed(final List<ClientInfo> players) {
+			try {
+			    _starter.execute(new Runnable() {
+				    public void run() {
+					start(players);
+				    }
+				});
+			}
+			catch (RejectedExecutionException e) {
+			    logger.warn("Too many rooms waiting to start; " +
+					"turning " + players.size() +
+					" players away.");
+			    _lobby.abortRound(players, e);
+			}
+		    }
+		});
+    }
+
+    /**
+     * Adds a client to the lobby, to play in the next room that is formed
+     *
+     * @param client Client who wants to play
+     * @return Future that completes with the board of the client's room
+     */
+    public CompletableFuture<BoggleBoard> join(ClientInfo client) {
+	return _lobby.join(client);
+    }
+
+    /**
+     * Removes a client who no longer wants to play from the lobby, or from a
+     * room that finished without it
+     *
+     * @param client Client to remove
+     * @return True if the client was waiting, or had been cut off
+     */
+    public boolean leave(ClientInfo client) {
+	if (_lobby.leave(client)) {
+	    return true;
+	}
+	GameRoom room = _rooms.get(client);
+	return room != null && room.isCutOff(client) &&
+	    _rooms.remove(client, room);
+    }
+
+    /**
+     * Submits the words a client found to the client's room
+     *
+     * @param client Client playing in a room
+     * @param words Words the client found
+     * @return Future that completes with the room's results
+     * @throws IllegalStateException if the client isn't playing in a room
+     */
+    public CompletableFuture<GameResults> submit(ClientInfo client,
+						 WordList words) {
+	GameRoom room = _rooms.get(client);
+	if (room == null) {
+	    throw new IllegalStateException(client.getName() +
+					    " isn't playing in a room");
+	}
+	_wordLookups.add(words.size());
+	CompletableFuture<GameResults> results = room.submit(client, words);
+	if (room.getState() == GameRoom.State.FINISHED) {
+	    _rooms.remove(client, room); // cut off, and has now caught up
+	}
+	return results;
+    }
+
+    /**
+     * Hands a batch of a client's words to the client's room, which validates
+     * and counts them while the round is still being played
+     *
+     * @param client Client in a room
+     * @param batch Words found since the client's last batch
+     * @throws IllegalStateException if the client isn't playing in a room, or
+     *         has already submitted
+     */
+    public void addWords(ClientInfo client, WordList batch) {
+	GameRoom room = _rooms.get(client);
+	if (room == null) {
+	    throw new IllegalStateException(client.getName() +
+					    " isn't playing in a room");
+	}
+	_wordLookups.add(batch.size());
+	room.addWords(client, batch);
+    }
+
+    /**
+     * Returns the room a client is playing in
+     *
+     * @param client Client to look up
+     * @return The client's room, or null if the client isn't in one
+     */
+    public GameRoom getRoom(ClientInfo client) {
+	return _rooms.get(client);
+    }
+
+    /**
+     * Returns the number of clients waiting for a room
+     *
+     * @return Number of clients in the lobby
+     */
+    public int getWaitingCount() {
+	return _lobby.getWaitingCount();
+    }
+
+    /**
+     * Returns the number of rooms in progress
+     *
+     * @return Rooms that have started but not finished
+     */
+    public int getActiveCount() {
+	return _active.get();
+    }
+
+    /**
+     * Returns the number of rooms that have finished
+     *
+     * @return Rooms finished so far
+     */
+    public long getFinishedCount() {
+	return _finished.get();
+    }
+
+    /**
+     * Returns the number of players who were cut off at their room's
+     * deadline
+     *
+     * @return Players cut off so far
+     */
+    public long getCutOffCount() {
+	return _cutOff.get();
+    }
+
+    /**
+     * Returns the number of submitted words checked so far
+     *
+     * @return Words looked up in the rooms' solutions
+     */
+    public long getWordLookupCount() {
+	return _wordLookups.sum();
+    }
+
+    /**
+     * Returns the number of players in each room as it started
+     *
+     * @return Histogram of room sizes
+     */
+    public Histogram getRoomSizes() {
+	return _roomSizes;
+    }
+
+    /**
+     * Returns how long rooms took from their start to their results
+     *
+     * @return Histogram of round times, in microseconds
+     */
+    public Histogram getRoundTimes() {
+	return _roundTimes;
+    }
+
+    /**
+     * Returns how long rooms took to score
+     *
+     * @return Histogram of scoring times, in microseconds
+     */
+    public Histogram getScoringTimes() {
+	return _scoringTimes;
+    }
+
+    /**
+     * Returns how many bytes of results rooms sent their players
+     *
+     * @return Histogram of bytes per room
+     */
+    public Histogram getResultsBytes() {
+	return _resultsBytes;
+    }
+
+    /**
+     * Gives a newly formed room its board, and starts it.  This is run on the
+     * starting executor, since it may wait for the pipeline to solve a board.
+     * If the room can't be started, its players are told so, rather than
+     * left waiting for a board that never comes.
+     *
+     * @param players Players of the room
+     */
+    private void start(List<ClientInfo> players) {
+	RoundEvents.RoomStart event = new RoundEvents.RoomStart();
+	event.begin();
+	BoggleSolution solution;
+	GameRoom room;
+	try {
+	    solution = _boards.take();
+	    room = open(players, solution);
+	}
+	catch (InterruptedException e) {
+	    _lobby.abortRound(players, e);
+	    return;
+	}
+	catch (RuntimeException e) {
+	    logger.error("Couldn't start a room for " + players.size() +
+			 " players", e);
+	    for (ClientInfo c : players) {
+		_rooms.remove(c);
+	    }
+	    _lobby.abortRound(players, e);
+	    return;
+	}
+
+	if (logger.isInfoEnabled()) {
+	    logger.info(String.format("Room %d starting with %d players.  " +
+		"Board has %d words.  Pipeline: %d ready, %.1f boards/sec " +
+		"generated, %.0f%% rejected.", room.getId(), players.size(),
+		solution.size(), _boards.getQueueDepth(),
+		_boards.getGenerationRate(), 100 * _boards.getRejectionRate()));
+	}
+
+	// Recorded before the players get the board, so that the room's start
+	// comes before anything the players do in a recording
+	event.end();
+	if (event.shouldCommit()) {
+	    event.room = room.getId();
+	    event.players = players.size();
+	    event.boardWords = solution.size();
+	    event.boardsReady = _boards.getQueueDepth();
+	    event.commit();
+	}
+	_lobby.startRound(players, solution.getBoard());
+    }
+
+    /**
+     * Makes a room for a newly formed round, and sets it going: its players
+     * are mapped to it, and its deadline is scheduled.  The room is only
+     * counted as active once nothing more can fail.
+     *
+     * @param players Players of the room
+     * @param solution The room's solved board
+     * @return The room
+     */
+    private GameRoom open(List<ClientInfo> players, BoggleSolution solution) {
+	final GameRoom room = new GameRoom(_nextId.incrementAndGet(), players,
+					   solution, _scorer);
+	for (ClientInfo c : players) {
+	    c.setPlaying();
+	    _rooms.put(c, room);
+	}
+	final RoundEvents.Round round = new RoundEvents.Round();
+	round.begin();
+	final ScheduledFuture<?> deadline = (_roundLimit == 0) ? null :
+	    _scheduler.schedule(new Runnable() {
+		    public void run() {
+			close(room);
+		    }
+		}, _roundLimit, TimeUnit.MILLISECONDS);
+	_active.incrementAndGet();
+	_roomSizes.record(players.size());
+	room.getResults().whenComplete(
+	    new BiConsumer<GameResults, Throwable>() {
+		public void accept(GameResults results, Throwable failure) {
+		    if (deadline != null) {
+			deadline.cancel(false);
+		    }
+		    finish(room, results, round);
+		}
+	    });
+	return room;
+    }
+
+    /**
+     * Closes a room whose deadline has passed.  This is run on the
+     * scheduler, and only marks the stragglers; the room is scored on the
+     * executor.
+     *
+     * @param room Room to close
+     */
+    private void close(GameRoom room) {
+	List<ClientInfo> cutOff = room.close();
+	if (!cutOff.isEmpty()) {
+	    _cutOff.addAndGet(cutOff.size());
+	    if (logger.isInfoEnabled()) {
+		logger.info(String.format("Room %d closed at its deadline; " +
+		    "%d of %d players cut off.", room.getId(), cutOff.size(),
+		    room.getPlayers().size()));
+	    }
+	}
+    }
+
+    /**
+     * Forgets a room once it has finished.  Players who were cut off are
+     * remembered until they submit or leave, so they can still get the
+     * results.
+     *
+     * @param room Room that has been scored
+     * @param results The room's results, or null if it couldn't be scored
+     * @param round Event timing the room, begun when it started
+     */
+    private void finish(GameRoom room, GameResults results,
+			RoundEvents.Round round) {
+	_roundTimes.recordSince(room.getStartTime());
+	if (results != null) {
+	    _scoringTimes.record(room.getScoringTime() / 1000);
+	    if (results.getEncoded() != null) {
+		int players = room.getPlayers().size();
+		_resultsBytes.record(results.getEncoded().roundBytes(
+		    players > BoggleServerApp.SUMMARY_ROOM_SIZE));
+	    }
+	}
+
+	round.end();
+	if (round.shouldCommit()) {
+	    int words = 0;
+	    int cutOff = 0;
+	    for (ClientInfo c : room.getPlayers()) {
+		if (c.getWords() != null) {
+		    words += c.getWords().size();
+		}
+		if (room.isCutOff(c)) {
+		    cutOff++;
+		}
+	    }
+	    round.room = room.getId();
+	    round.players = room.getPlayers().size();
+	    round.cutOff = cutOff;
+	    round.submittedWords = words;
+	    round.scored = (results != null);
+	    round.commit();
+	}
+
+	for (ClientInfo c : room.getPlayers()) {
+	    if (!room.isCutOff(c)) {
+		_rooms.remove(c, room);
+	    }
+	}
+	_active.decrementAndGet();
+	_finished.incrementAndGet();
+    }
+}
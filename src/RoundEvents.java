@@ -0,0 +1,143 @@
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events for the stages of a round, so that a
+ * recording shows where a slow round spent its time: clients waiting in the
+ * lobby, a room waiting for its board, players waiting for each other, or
+ * the scoring.  Every event carries the number of its room, so the stages of
+ * one round can be lined up.
+ * <p>
+ * The events are off unless a recording turns them on; <tt>res/boggle.jfc</tt>
+ * turns on all of them, along with JFR's default settings:
+ * <pre>
+ *   java -XX:StartFlightRecording:settings=default,settings=res/boggle.jfc,filename=boggle.jfr BoggleServerApp
+ * </pre>
+ * An event that isn't being recorded costs about as much as the call that
+ * creates it.
+ */
+final class RoundEvents {
+
+    private RoundEvents() {
+    }
+
+    /** A client waiting from joining until it has a board */
+    @Name("boggle.Join")
+    @Label("Join")
+    @Category({ "Boggle", "Lobby" })
+    @Description("A client waiting in the lobby until its room has a board")
+    static final class Join extends Event {
+	@Label("Client")
+	String client;
+
+	@Label("Room")
+	@Description("Room the client was put into, or 0 if none was started")
+	int room;
+    }
+
+    /** A newly formed room being given its board */
+    @Name("boggle.RoomStart")
+    @Label("Room Start")
+    @Category({ "Boggle", "Room" })
+    @Description("A room waiting for the board pipeline, and starting")
+    static final class RoomStart extends Event {
+	@Label("Room")
+	int room;
+
+	@Label("Players")
+	int players;
+
+	@Label("Board Words")
+	@Description("Number of words that can be found on the board")
+	int boardWords;
+
+	@Label("Boards Ready")
+	@Description("Solved boards left in the pipeline once this one was taken")
+	int boardsReady;
+    }
+
+    /** A room from its start until its results are ready */
+    @Name("boggle.Round")
+    @Label("Round")
+    @Category({ "Boggle", "Room" })
+    @Description("A room from handing out its board until its results are ready")
+    static final class Round extends Event {
+	@Label("Room")
+	int room;
+
+	@Label("Players")
+	int players;
+
+	@Label("Players Cut Off")
+	@Description("Players who hadn't submitted by the room's deadline")
+	int cutOff;
+
+	@Label("Submitted Words")
+	int submittedWords;
+
+	@Label("Scored")
+	@Description("Whether the results could be computed")
+	boolean scored;
+    }
+
+    /** A player waiting from submitting until the results are ready */
+    @Name("boggle.Submit")
+    @Label("Submit")
+    @Category({ "Boggle", "Room" })
+    @Description("A client waiting from submitting its words until the " +
+		 "rest of its room is in and scored")
+    static final class Submit extends Event {
+	@Label("Client")
+	String client;
+
+	@Label("Room")
+	int room;
+
+	@Label("Words")
+	@Description("Number of words in the submitted list")
+	int words;
+    }
+
+    /** Handing out the words of a round that nobody else found */
+    @Name("boggle.Scoring")
+    @Label("Scoring")
+    @Category({ "Boggle", "Room" })
+    @Description("Scoring a round whose words have been counted")
+    static final class Scoring extends Event {
+	@Label("Room")
+	@Description("Room that was scored, or 0 if the round had no room")
+	int room;
+
+	@Label("Players")
+	int players;
+
+	@Label("Submitted Words")
+	@Description("Different words submitted, summed over the players")
+	int submittedWords;
+
+	@Label("Valid Words")
+	@Description("Submitted words found on the board")
+	int validWords;
+
+	@Label("Unique Words")
+	@Description("Valid words that only one player found")
+	int uniqueWords;
+    }
+
+    /** Encoding the results of a round for its players */
+    @Name("boggle.Encode")
+    @Label("Encode Results")
+    @Category({ "Boggle", "Room" })
+    @Description("Encoding a round's results once, for every player")
+    static final class Encode extends Event {
+	@Label("Room")
+	int room;
+
+	@Label("Players")
+	int players;
+
+	@Label("Results Size")
+	@Description("Bytes of results the room sends its players")
+	@DataAmount
+	long bytes;
+    }
+}
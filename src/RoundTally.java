@@ -0,0 +1,171 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Validates and counts the words of a round as they are submitted, so that
+ * scoring only has to give each player the words that nobody else found.
+ * Players may submit their words in any number of batches while they play;
+ * a word a player has already submitted is ignored.
+ * <p>
+ * Each player's batches are handled under that player's own lock, and the
+ * number of players who found each word is kept in an atomic array, so
+ * players submitting at the same time don't wait for each other.
+ * {@link #finish} must only be called once every batch has been added.
+ */
+final class RoundTally {
+
+    /** The round's board, and every word that can be found on it */
+    private final BoggleSolution _solution;
+
+    /** How many players submitted each word, by index in the solution */
+    private final AtomicIntegerArray _counts;
+
+    /** What each player has submitted so far, by player number */
+    private final Player[] _players;
+
+    /** The words one player has submitted so far */
+    private static class Player {
+	/**
+	 * Every word the player submitted.  This is the first batch itself
+	 * until a second one arrives, since most players send only one.
+	 */
+	WordList words;
+
+	/** Set while {@link #words} is the first batch */
+	boolean shared;
+
+	/** Submitted words that aren't in the solution */
+	final WordList rejected = new WordList();
+
+	/** Solution index of each valid word, in the order they came */
+	int[] valid = new int[16];
+
+	/** Number of entries used in {@link #valid} */
+	int validCount;
+    }
+
+    /**
+     * Starts counting a round
+     *
+     * @param solution The round's solved board
+     * @param players Number of players in the round
+     */
+    RoundTally(BoggleSolution solution, int players) {
+	_solution = solution;
+	_counts = new AtomicIntegerArray(solution.size());
+	_players = new Player[players];
+	for (int p = 0; p < players; p++) {
+	    _players[p] = new Player();
+	}
+    }
+
+    /**
+     * Validates and counts a batch of a player's words.  The batch may be
+     * kept, so it must not be changed afterwards.
+     *
+     * @param player Player number, from 0
+     * @param batch Words the player found
+     */
+    void add(int player, WordList batch) {
+	Player state = _players[player];
+	synchronized (state) {
+	    boolean first = (state.words == null);
+	    if (first) {
+		state.words = batch;
+		state.shared = true;
+	    }
+	    else if (state.shared) {
+		state.words = new WordList(state.words);
+		state.shared = false;
+	    }
+
+	    for (String word : batch) {
+		if (!first) {
+		    if (state.words.contains(word)) {
+			continue;
+		    }
+		    state.words.add(word);
+		}
+
+		int index = _solution.indexOf(word);
+		if (index < 0) {
+		    state.rejected.add(word);
+		    continue;
+		}
+		if (state.validCount == state.valid.length) {
+		    state.valid = Arrays.copyOf(state.valid, 2 * state.validCount);
+		}
+		state.valid[state.validCount++] = index;
+		_counts.incrementAndGet(index);
+	    }
+	}
+    }
+
+    /**
+     * Returns every word a player has submitted so far
+     *
+     * @param player Player number, from 0
+     * @return Copy of the player's words
+     */
+    WordList getWords(int player) {
+	Player state = _players[player];
+	synchronized (state) {
+	    return (state.words == null) ? new WordList() :
+		new WordList(state.words);
+	}
+    }
+
+    /**
+     * Scores the round.  Each player's rejected words, scored words and score
+     * are stored in their information, which is added to the results.  The
+     * scoring is recorded as a {@link RoundEvents.Scoring} event.
+     *
+     * @param room Number of the round's room, or 0 if it has none
+     * @param players Information of each player, by player number; they must
+     *        be in the FINISHED state
+     * @param results Where to store the results
+     */
+    void finish(int room, List<ClientInfo> players, GameResults results) {
+	RoundEvents.Scoring event = new RoundEvents.Scoring();
+	event.begin();
+	int submitted = 0;
+	int valid = 0;
+	int unique = 0;
+
+	List<String> words = _solution.getWords();
+	for (int p = 0; p < _players.length; p++) {
+	    Player state = _players[p];
+	    ClientInfo playerInfo = players.get(p);
+	    WordList playerUniqueWords = new WordList();
+	    int playerScore = 0;
+
+	    synchronized (state) {
+		for (int i = 0; i < state.validCount; i++) {
+		    int index = state.valid[i];
+		    if (_counts.get(index) == 1) {
+			String word = words.get(index);
+			playerUniqueWords.add(word);
+			playerScore += GameResults.wordScore(word.length());
+		    }
+		}
+		playerInfo.setRejectedWords(state.rejected);
+		submitted += state.validCount + state.rejected.size();
+		valid += state.validCount;
+	    }
+	    unique += playerUniqueWords.size();
+	    playerInfo.setScore(playerScore);
+	    playerInfo.setFilteredWords(playerUniqueWords);
+	    results.addClientResult(playerInfo);
+	}
+
+	event.end();
+	if (event.shouldCommit()) {
+	    event.room = room;
+	    event.players = _players.length;
+	    event.submittedWords = submitted;
+	    event.validWords = valid;
+	    event.uniqueWords = unique;
+	    event.commit();
+	}
+    }
+}
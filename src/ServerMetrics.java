@@ -0,0 +1,140 @@
+import javax.management.*;
+
+/**
+ * Instrumentation of a Boggle server, published as JMX MBeans.  The counts
+ * and histograms are kept by the parts of the server that do the work,
+ * without locks, so they can stay on in production; this class only reads
+ * them.  It registers itself as <tt>boggle:type=Server</tt>, and each
+ * histogram as <tt>boggle:type=Histogram,name=...</tt>:
+ * <ul>
+ * <li><tt>StartWait</tt>: time from joining until the board arrives, in
+ *     microseconds;
+ * <li><tt>LobbySize</tt>: players in each room as it starts;
+ * <li><tt>RoundTime</tt>: time from each room's start to its results, in
+ *     microseconds;
+ * <li><tt>ScoringTime</tt>: time to score each room, in microseconds;
+ * <li><tt>ResultsBytes</tt>: bytes of results each room sends its players.
+ * </ul>
+ */
+public class ServerMetrics implements ServerMetricsMBean {
+
+    /** Domain of the server's object names */
+    public static final String DOMAIN = "boggle";
+
+    /** Shortest time rates are averaged over, in nanoseconds */
+    private static final long MIN_SAMPLE = 1000L * 1000 * 1000;
+
+    /** Server being measured */
+    private final BoggleServerApp _server;
+
+    /** When the rates were last sampled, as from <tt>System.nanoTime</tt> */
+    private long _sampleTime = System.nanoTime();
+
+    /** Counts at the last sample */
+    private long _finished;
+    private long _lookups;
+
+    /** Rates over the last sample */
+    private double _finishedRate;
+    private double _lookupRate;
+
+    /**
+     * Constructs the metrics of a server
+     *
+     * @param server Server to measure
+     */
+    public ServerMetrics(BoggleServerApp server) {
+	_server = server;
+	_finished = server.getRooms().getFinishedCount();
+	_lookups = server.getRooms().getWordLookupCount();
+    }
+
+    /**
+     * Registers the metrics and the server's histograms
+     *
+     * @param mbeans Server to register them with, usually the platform's
+     * @throws JMException if they cannot be registered
+     */
+    public void register(MBeanServer mbeans) throws JMException {
+	RoomManager rooms = _server.getRooms();
+	mbeans.registerMBean(this, new ObjectName(DOMAIN + ":type=Server"));
+	register(mbeans, "StartWait", _server.getStartWaits());
+	register(mbeans, "LobbySize", rooms.getRoomSizes());
+	register(mbeans, "RoundTime", rooms.getRoundTimes());
+	register(mbeans, "ScoringTime", rooms.getScoringTimes());
+	register(mbeans, "ResultsBytes", rooms.getResultsBytes());
+    }
+
+    /**
+     * Registers one histogram
+     */
+    private static void register(MBeanServer mbeans, String name,
+				 Histogram histogram) throws JMException {
+	mbeans.registerMBean(histogram, new ObjectName(
+	    DOMAIN + ":type=Histogram,name=" + name));
+    }
+
+    /**
+     * Updates the rates, if the last sample is old enough
+     */
+    private synchronized void sample() {
+	long now = System.nanoTime();
+	if (now - _sampleTime < MIN_SAMPLE) {
+	    return;
+	}
+	double seconds = (now - _sampleTime) / 1e9;
+	long finished = _server.getRooms().getFinishedCount();
+	long lookups = _server.getRooms().getWordLookupCount();
+	_finishedRate = (finished - _finished) / seconds;
+	_lookupRate = (lookups - _lookups) / seconds;
+	_finished = finished;
+	_lookups = lookups;
+	_sampleTime = now;
+    }
+
+    public int getConnectedClients() {
+	return _server.getClientCount();
+    }
+
+    public int getWaitingClients() {
+	return _server.getRooms().getWaitingCount();
+    }
+
+    public int getActiveRooms() {
+	return _server.getRooms().getActiveCount();
+    }
+
+    public long getFinishedRooms() {
+	return _server.getRooms().getFinishedCount();
+    }
+
+    public synchronized double getFinishedRoomsPerSecond() {
+	sample();
+	return _finishedRate;
+    }
+
+    public long getPlayersCutOff() {
+	return _server.getRooms().getCutOffCount();
+    }
+
+    public long getWordLookups() {
+	return _server.getRooms().getWordLookupCount();
+    }
+
+    public synchronized double getWordLookupsPerSecond() {
+	sample();
+	return _lookupRate;
+    }
+
+    public int getBoardsReady() {
+	return _server.getBoardPipeline().getQueueDepth();
+    }
+
+    public double getBoardsPerSecond() {
+	return _server.getBoardPipeline().getGenerationRate();
+    }
+
+    public double getBoardRejectionRate() {
+	return _server.getBoardPipeline().getRejectionRate();
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Management interface of a Boggle server's {@link ServerMetrics}, as JMX
+ * shows it.  Rates are averaged over the time since they were last read, or
+ * the last second, whichever is longer.
+ */
+public interface ServerMetricsMBean {
+
+    /** @return Number of clients talking to the server */
+    int getConnectedClients();
+
+    /** @return Number of clients waiting in the lobby for a room */
+    int getWaitingClients();
+
+    /** @return Number of rooms being played */
+    int getActiveRooms();
+
+    /** @return Number of rooms that have finished */
+    long getFinishedRooms();
+
+    /** @return Rooms finished per second */
+    double getFinishedRoomsPerSecond();
+
+    /** @return Number of players cut off at their room's deadline */
+    long getPlayersCutOff();
+
+    /** @return Number of submitted words checked against the dictionary */
+    long getWordLookups();
+
+    /** @return Submitted words checked per second */
+    double getWordLookupsPerSecond();
+
+    /** @return Number of solved boards ready to play */
+    int getBoardsReady();
+
+    /** @return Boards generated and solved per second since the start */
+    double getBoardsPerSecond();
+
+    /** @return Share of generated boards thrown away by the filter */
+    double getBoardRejectionRate();
+}
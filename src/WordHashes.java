@@ -0,0 +1,133 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * A compact set of the words that can be found on one board, sent to clients
+ * along with the board so that they can check the words their players find
+ * without a dictionary of their own.  Each word is kept as a 32-bit hash, in
+ * a sorted array, so a board's few hundred words take a kilobyte or two, and
+ * checking a word is a binary search.
+ * <p>
+ * Like a Bloom filter, the set may claim to hold a word it doesn't, when the
+ * word's hash is the same as one of the board's words; with a few hundred
+ * words that happens about once in ten million lookups.  The server checks
+ * every submitted word against the board's solution anyway, so a rare false
+ * match only lets a client show a word that will be rejected.
+ * <p>
+ * Instances are immutable.
+ */
+public final class WordHashes {
+
+    /** Most words a set may hold, so that it fits in a protocol frame */
+    public static final int MAX_WORDS = 1 << 16;
+
+    /** Hash of each word, in increasing order */
+    private final int[] _hashes;
+
+    /**
+     * Constructs a set from hashes that are already sorted
+     *
+     * @param hashes Sorted hashes, which are kept
+     */
+    private WordHashes(int[] hashes) {
+	_hashes = hashes;
+    }
+
+    /**
+     * Makes the set of some words
+     *
+     * @param words Lower-case words; there may be at most {@link #MAX_WORDS}
+     * @return Set of the words
+     * @throws IllegalArgumentException if there are too many words
+     */
+    public static WordHashes of(Collection<String> words) {
+	if (words.size() > MAX_WORDS) {
+	    throw new IllegalArgumentException("Too many words: " + words.size());
+	}
+	int[] hashes = new int[words.size()];
+	int i = 0;
+	for (String word : words) {
+	    hashes[i++] = hash(word);
+	}
+	Arrays.sort(hashes);
+	return new WordHashes(hashes);
+    }
+
+    /**
+     * Returns the hash a word is kept as.  This is FNV-1a over the word's
+     * characters, with MurmurHash3's final mix, so that words that differ in
+     * one letter have unrelated hashes.  Servers and clients must agree on
+     * it, so it must never change.
+     *
+     * @param word Lower-case word
+     * @return 32-bit hash of the word
+     */
+    static int hash(CharSequence word) {
+	int h = 0x811c9dc5;
+	for (int i = 0; i < word.length(); i++) {
+	    h ^= word.charAt(i);
+	    h *= 0x01000193;
+	}
+	h ^= h >>> 16;
+	h *= 0x85ebca6b;
+	h ^= h >>> 13;
+	h *= 0xc2b2ae35;
+	h ^= h >>> 16;
+	return h;
+    }
+
+    /**
+     * Checks if a word is in the set.  A word that isn't may rarely be
+     * reported as being in it.
+     *
+     * @param word Lower-case word to be checked
+     * @return False if the word is certainly not in the set
+     */
+    public boolean contains(CharSequence word) {
+	return Arrays.binarySearch(_hashes, hash(word)) >= 0;
+    }
+
+    /**
+     * Returns the number of words in the set
+     *
+     * @return Number of words
+     */
+    public int size() {
+	return _hashes.length;
+    }
+
+    /**
+     * Writes the set as the number of words, then each hash
+     *
+     * @param out Where to write the set
+     * @throws IOException When the set cannot be written
+     */
+    public void write(DataOutput out) throws IOException {
+	WordList.writeVarInt(out, _hashes.length);
+	for (int h : _hashes) {
+	    out.writeInt(h);
+	}
+    }
+
+    /**
+     * Reads a set written by {@link #write}
+     *
+     * @param in Where to read the set from
+     * @return Set that was read
+     * @throws IOException When the set cannot be read, or is corrupt
+     */
+    public static WordHashes read(DataInput in) throws IOException {
+	int count = WordList.readVarInt(in);
+	if (count > MAX_WORDS) {
+	    throw new StreamCorruptedException("Bad word count: " + count);
+	}
+	int[] hashes = new int[count];
+	for (int i = 0; i < count; i++) {
+	    hashes[i] = in.readInt();
+	    if (i > 0 && hashes[i] < hashes[i - 1]) {
+		throw new StreamCorruptedException("Hashes out of order");
+	    }
+	}
+	return new WordHashes(hashes);
+    }
+}
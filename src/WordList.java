@@ -5,15 +5,38 @@ import java.io.Serializable;
 
 /**
  * A class to represent a list of possible words for Boggle
+ * <p>
+ * Word lists have a compact external form, written by {@link #write}.  When
+ * both ends have the same dictionary, each word in it is sent as its
+ * {@link Dawg#ordinal}; the ordinals are sorted, and the gaps between them
+ * are written as variable-length ints, so most words take one or two bytes.
+ * Other words are sorted and front-coded: each one is written as the number
+ * of leading characters it shares with the word before it, then the rest of
+ * it.  Java serialization uses the front-coded form, since it can't tell what
+ * dictionary the reader has.
  *
  * @author Joey Hong
  */
-public class WordList implements Serializable, Iterable{
+public class WordList implements Serializable, Iterable<String>{
     
+    private static final long serialVersionUID = 1L;
+
+    /** Version of the serialized form written by {@link #writeObject} */
+    static final int SERIAL_VERSION = 1;
+
+    /** Form of a list whose words are all front-coded */
+    static final int FRONT_CODED = 0;
+
+    /** Form of a list whose dictionary words are sent as ordinals */
+    static final int ORDINALS = 1;
+
+    /** Most words a list read from a stream may have */
+    private static final int MAX_WORDS = 1 << 20;
+
     /**
      * A set to store words
      */
-    private Set<String> words;
+    private transient Set<String> words;
 
     /**
      * A helper function that trims beginning and trailing whitspaces, and 
@@ -97,8 +120,9 @@ public class WordList implements Serializable, Iterable{
      * @param word String that is to be added to the string. Empty strings are safely ignored 
      */
     public void add(String word) {
-	if (!preprocess(word).isEmpty()) { // ignores empty strings
-	    words.add(preprocess(word));
+	String processed = preprocess(word);
+	if (!processed.isEmpty()) { // ignores empty strings
+	    words.add(processed);
 	}
     }
 
@@ -144,6 +168,195 @@ public class WordList implements Serializable, Iterable{
 	words.removeAll(otherWords.words);
     }
 
+
+    /**
+     * Writes the list in its compact form
+     *
+     * @param out Where to write the list
+     * @param dictionary Dictionary the reader has too, whose words are
+     *        written as ordinals, or null to front-code every word
+     * @throws IOException When the list cannot be written
+     */
+    public void write(DataOutput out, Dawg dictionary) throws IOException {
+	if (dictionary == null) {
+	    out.writeByte(FRONT_CODED);
+	    writeFrontCoded(out, words);
+	    return;
+	}
+
+	int[] ordinals = new int[words.size()];
+	int count = 0;
+	List<String> others = new ArrayList<String>();
+	for (String word : words) {
+	    int ordinal = dictionary.ordinal(word);
+	    if (ordinal < 0) {
+		others.add(word);
+	    }
+	    else {
+		ordinals[count++] = ordinal;
+	    }
+	}
+	Arrays.sort(ordinals, 0, count);
+
+	out.writeByte(ORDINALS);
+	out.writeLong(dictionary.fingerprint());
+	writeVarInt(out, count);
+	int previous = -1;
+	for (int i = 0; i < count; i++) {
+	    writeVarInt(out, ordinals[i] - previous - 1);
+	    previous = ordinals[i];
+	}
+	writeFrontCoded(out, others);
+    }
+
+    /**
+     * Reads a list written by {@link #write}
+     *
+     * @param in Where to read the list from
+     * @param dictionary Dictionary to look up ordinals in, or null if the
+     *        reader has none
+     * @return List that was read
+     * @throws IOException When the list cannot be read, or holds ordinals of
+     *         another dictionary
+     */
+    public static WordList read(DataInput in, Dawg dictionary)
+	throws IOException {
+	WordList list = new WordList();
+	int form = in.readByte();
+	if (form == ORDINALS) {
+	    long fingerprint = in.readLong();
+	    if (dictionary == null || dictionary.fingerprint() != fingerprint) {
+		throw new StreamCorruptedException(
+		    "Words are from another dictionary");
+	    }
+	    int count = readCount(in);
+	    int ordinal = -1;
+	    for (int i = 0; i < count; i++) {
+		ordinal += readVarInt(in) + 1;
+		if (ordinal < 0 || ordinal >= dictionary.size()) {
+		    throw new StreamCorruptedException("Bad ordinal: " + ordinal);
+		}
+		list.words.add(dictionary.word(ordinal));
+	    }
+	}
+	else if (form != FRONT_CODED) {
+	    throw new StreamCorruptedException("Bad word list form: " + form);
+	}
+	readFrontCoded(in, list.words);
+	return list;
+    }
+
+    /**
+     * Writes words sorted and front-coded
+     */
+    private static void writeFrontCoded(DataOutput out,
+					Collection<String> words)
+	throws IOException {
+	String[] sorted = words.toArray(new String[words.size()]);
+	Arrays.sort(sorted);
+
+	writeVarInt(out, sorted.length);
+	String previous = "";
+	for (String word : sorted) {
+	    int shared = 0;
+	    int limit = Math.min(word.length(), previous.length());
+	    while (shared < limit && word.charAt(shared) == previous.charAt(shared)) {
+		shared++;
+	    }
+	    byte[] rest = word.substring(shared).getBytes("UTF-8");
+	    writeVarInt(out, shared);
+	    writeVarInt(out, rest.length);
+	    out.write(rest);
+	    previous = word;
+	}
+    }
+
+    /**
+     * Reads words written by {@link #writeFrontCoded}
+     */
+    private static void readFrontCoded(DataInput in, Set<String> words)
+	throws IOException {
+	int count = readCount(in);
+	String previous = "";
+	for (int i = 0; i < count; i++) {
+	    int shared = readVarInt(in);
+	    int length = readVarInt(in);
+	    if (shared > previous.length() || length > MAX_WORDS) {
+		throw new StreamCorruptedException("Bad word");
+	    }
+	    byte[] rest = new byte[length];
+	    in.readFully(rest);
+	    previous = previous.substring(0, shared) + new String(rest, "UTF-8");
+	    words.add(previous);
+	}
+    }
+
+    /**
+     * Reads a word count
+     */
+    private static int readCount(DataInput in) throws IOException {
+	int count = readVarInt(in);
+	if (count > MAX_WORDS) {
+	    throw new StreamCorruptedException("Bad word count: " + count);
+	}
+	return count;
+    }
+
+    /**
+     * Writes a non-negative int in as few bytes as it needs, seven bits to a
+     * byte, with the high bit set on every byte but the last
+     */
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+	while ((value & ~0x7f) != 0) {
+	    out.writeByte((value & 0x7f) | 0x80);
+	    value >>>= 7;
+	}
+	out.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarInt}
+     */
+    static int readVarInt(DataInput in) throws IOException {
+	int value = 0;
+	for (int shift = 0; shift < 32; shift += 7) {
+	    int b = in.readUnsignedByte();
+	    value |= (b & 0x7f) << shift;
+	    if ((b & 0x80) == 0) {
+		if (value < 0) {
+		    break;
+		}
+		return value;
+	    }
+	}
+	throw new StreamCorruptedException("Bad variable-length int");
+    }
+
+    /**
+     * Serializes the list in its front-coded form
+     *
+     * @serialData The version as a byte, then the list in the front-coded
+     *             form written by {@link #write}
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+	out.defaultWriteObject();
+	out.writeByte(SERIAL_VERSION);
+	write(out, null);
+    }
+
+    /**
+     * Reads a list serialized by {@link #writeObject}
+     */
+    private void readObject(ObjectInputStream in)
+	throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	int version = in.readByte();
+	if (version != SERIAL_VERSION) {
+	    throw new InvalidObjectException("Unknown version " + version);
+	}
+	words = read(in, null).words;
+    }
+
     
     /**
      * Load a word-list from a gzip-compressed input file.
@@ -0,0 +1,66 @@
+import java.util.*;
+import org.testng.annotations.*;
+
+public class TestBoardGenerator {
+
+    /** Test that generators with the same seed make the same boards */
+    @Test(groups = {"basic"}) public void testSeed() {
+	BoardGenerator g1 = new BoardGenerator(1234);
+	BoardGenerator g2 = new BoardGenerator(1234);
+
+	for (int n = 0; n < 10; n++) {
+	    BoggleBoard b1 = g1.generate(5);
+	    BoggleBoard b2 = g2.generate(5);
+
+	    for (int i = 0; i < 5; i++) {
+		for (int j = 0; j < 5; j++) {
+		    assert b1.getCell(i, j).equals(b2.getCell(i, j));
+		}
+	    }
+	}
+
+	byte[] a = new byte[1000];
+	byte[] b = new byte[1000];
+	new BoardGenerator(99).fill(a);
+	new BoardGenerator(99).fill(b);
+	assert Arrays.equals(a, b);
+
+	new BoardGenerator(100).fill(b);
+	assert !Arrays.equals(a, b);
+    }
+
+    /** Test that letters come up in proportion to their frequencies */
+    @Test(groups = {"basic"}) public void testDistribution() {
+	int samples = 10000 * BoardGenerator.FACES;
+	byte[] cells = new byte[samples];
+	new BoardGenerator(42).fill(cells);
+
+	int[] counts = new int[26];
+	for (byte c : cells) {
+	    counts[c]++;
+	}
+
+	for (int letter = 0; letter < 26; letter++) {
+	    int expected = 10000 * BoardGenerator.frequency(letter);
+	    assert Math.abs(counts[letter] - expected) < expected / 10
+		: (char) ('A' + letter) + ": " + counts[letter];
+	}
+    }
+
+    /** Test that bulk filling only touches the requested range */
+    @Test(groups = {"basic"}) public void testFillRange() {
+	byte[] cells = new byte[3 * 16];
+	Arrays.fill(cells, (byte) -1);
+
+	new BoardGenerator().fill(cells, 16, 16);
+
+	for (int i = 0; i < cells.length; i++) {
+	    if (i >= 16 && i < 32) {
+		assert cells[i] >= 0 && cells[i] < 26;
+	    }
+	    else {
+		assert cells[i] == -1;
+	    }
+	}
+    }
+}
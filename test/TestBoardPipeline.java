@@ -0,0 +1,47 @@
+import java.util.*;
+import org.testng.annotations.*;
+
+public class TestBoardPipeline {
+
+    /** Common short words, so most random boards have at least one */
+    private static final Dawg dictionary = TestDictionaries.SHORT_WORDS;
+
+    @Test(groups = {"basic"}) public void testTake() throws Exception {
+	BoardPipeline pipeline = new BoardPipeline(new BoggleSolver(dictionary),
+	    BoggleBoard.DEFAULT_SIZE, 2, 1, 1, Integer.MAX_VALUE);
+	pipeline.start();
+
+	for (int i = 0; i < 5; i++) {
+	    BoggleSolution s = pipeline.take();
+
+	    assert s.getBoard().size() == BoggleBoard.DEFAULT_SIZE;
+	    assert s.size() >= 1;
+	    assert s.getWords().equals(
+		new BoggleSolver(dictionary).solve(s.getBoard()).getWords());
+	}
+	pipeline.shutdown();
+
+	assert pipeline.getTakenCount() == 5;
+	assert pipeline.getGeneratedCount() >= 5;
+	assert pipeline.getGeneratedCount() >=
+	    pipeline.getTakenCount() + pipeline.getRejectedCount();
+	assert pipeline.getQueueDepth() <= 2;
+	assert pipeline.getRejectionRate() >= 0 &&
+	    pipeline.getRejectionRate() < 1;
+    }
+
+    @Test(groups = {"basic"}) public void testMaxScore() throws Exception {
+	BoardPipeline pipeline = new BoardPipeline(new BoggleSolver(dictionary),
+	    BoggleBoard.DEFAULT_SIZE, 1, 2, 0, 0);
+	pipeline.start();
+
+	// Only boards without any words pass a maximum score of 0
+	for (int i = 0; i < 3; i++) {
+	    BoggleSolution s = pipeline.take();
+
+	    assert s.size() == 0;
+	    assert s.getTotalScore() == 0;
+	}
+	pipeline.shutdown();
+    }
+}
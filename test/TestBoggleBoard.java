@@ -1,4 +1,5 @@
 import java.util.*;
+import java.io.*;
 import org.testng.annotations.*;
 
 public class TestBoggleBoard {
@@ -81,4 +82,74 @@ public class TestBoggleBoard {
 	
 	b3.getCell(0, 5);
     }
-}
\ No newline at end of file
+
+    /** Helper method that serializes an object into bytes */
+    private static byte[] serialize(Object o) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(o);
+	out.close();
+	return bytes.toByteArray();
+    }
+
+    /** Test that a board survives serialization, and that it's compact */
+    @Test(groups = {"basic"}) public void testSerialize() throws Exception {
+	BoggleBoard b1 = new BoardGenerator(7).generate(4);
+	byte[] bytes = serialize(b1);
+
+	ObjectInputStream in =
+	    new ObjectInputStream(new ByteArrayInputStream(bytes));
+	BoggleBoard b2 = (BoggleBoard) in.readObject();
+
+	assert b2.size() == b1.size();
+	for (int i = 0; i < b1.size(); i++) {
+	    for (int j = 0; j < b1.size(); j++) {
+		assert b1.getCell(i, j).equals(b2.getCell(i, j));
+	    }
+	}
+
+	// The class descriptor is most of it; the board itself is 17 bytes
+	assert bytes.length < 100 : bytes.length;
+    }
+
+    /** Test the adjacency checks, with and without bitboards */
+    @Test(groups = {"basic"}) public void testAdjacency() {
+	for (int size : new int[] { 4, 8, 10 }) {
+	    BoggleBoard b = new BoggleBoard(size);
+	    int corner = size * size - 1;
+
+	    assert b.isAdjacent(0, 1);
+	    assert b.isAdjacent(0, size + 1);
+	    assert !b.isAdjacent(0, 0);
+	    assert !b.isAdjacent(0, 2);
+	    assert !b.isAdjacent(size - 1, size); // wraps to the next row
+	    assert b.isAdjacent(corner, corner - size - 1);
+	    assert !b.isAdjacent(0, 65);                // off the board
+	    assert !b.isAdjacent(corner, corner + 1);
+	    assert !b.isAdjacent(-1, 0);
+
+	    assert b.isValidPath(new int[] { 0, 1, size + 2, 2 });
+	    assert !b.isValidPath(new int[] { 0, 1, 0 });       // reuses a cell
+	    assert !b.isValidPath(new int[] { 0, 2 });          // not adjacent
+	    assert !b.isValidPath(new int[] { corner + 1 });    // off the board
+	}
+    }
+
+    /** Test building a board from its cell strings */
+    @Test(groups = {"basic"}) public void testCellsCtor() {
+	BoggleBoard b = new BoggleBoard(new String[][] {
+		{ "A", "Qu" }, { "Z", "E" } });
+
+	assert b.size() == 2;
+	assert b.getCell(0, 1).equals("Qu");
+	assert b.getCell(1, 0).equals("Z");
+	assert b.getLetterCode(3) == 'E' - 'A';
+	assert checkValues(b);
+    }
+
+    @Test(groups = {"basic"},
+	  expectedExceptions={IllegalArgumentException.class})
+	public void testInvalidCell() {
+	new BoggleBoard(new String[][] { { "A", "Q" }, { "Z", "E" } });
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.*;
+import org.testng.annotations.*;
+
+public class TestBoggleListModel {
+
+    /** A fixed board, indexed by (x,y) */
+    private static final String[][] cells = {
+	{ "T", "A", "P", "S" },
+	{ "O", "A", "E", "X" },
+	{ "P", "X", "Qu", "I" },
+	{ "S", "X", "X", "T" }
+    };
+
+    @Test(groups = {"basic"}) public void testBoardWords() {
+	BoggleBoard b = new BoggleBoard(cells);
+	b.setWordHashes(WordHashes.of(Arrays.asList("pat", "quit", "taps")));
+	BoggleListModel model = new BoggleListModel();
+	model.setBoard(b);
+
+	model.add_word("quit");
+	model.add_word("quit");       // already found
+	model.add_word("tops");       // on the board, but not one of its words
+	model.add_word("zzz");
+	assert model.getSize() == 1;
+	assert model.getElementAt(0).equals("quit");
+    }
+
+    @Test(groups = {"basic"}) public void testNoBoardWords() {
+	// A board from an older server only has its paths checked
+	BoggleListModel model = new BoggleListModel();
+	model.setBoard(new BoggleBoard(cells));
+
+	model.add_word("tops");
+	model.add_word("topx");       // has a path, though it isn't a word
+	model.add_word("quite");      // letters not adjacent
+	model.add_word("zzz");
+	assert model.getSize() == 2;
+	assert model.getElementAt(0).equals("tops ?");
+	assert model.getElementAt(1).equals("topx ?");
+	assert model.getWords().contains("tops");
+
+	model.clear_words();
+	assert model.getSize() == 0;
+    }
+}
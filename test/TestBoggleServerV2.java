@@ -0,0 +1,226 @@
+import java.util.*;
+import java.util.concurrent.*;
+import javax.management.*;
+import org.testng.annotations.*;
+
+public class TestBoggleServerV2 {
+
+    /** Common short words, so most random boards have at least one */
+    private static final Dawg dictionary = TestDictionaries.SHORT_WORDS;
+
+    /** Server under test; its rooms hold two players */
+    private BoggleServerApp server;
+
+    /** Records the notifications sent to one client */
+    private static class Recorder implements BoggleCallback {
+	final CompletableFuture<BoggleBoard> board =
+	    new CompletableFuture<BoggleBoard>();
+	final CompletableFuture<GameResults> results =
+	    new CompletableFuture<GameResults>();
+	final CompletableFuture<String> error = new CompletableFuture<String>();
+
+	public void onRoundStarted(BoggleBoard b) {
+	    board.complete(b);
+	}
+
+	public void onResults(GameResults r) {
+	    results.complete(r);
+	}
+
+	public void onError(String message) {
+	    error.complete(message);
+	}
+    }
+
+    @BeforeMethod public void setUp() {
+	server = new BoggleServerApp(new BoardPipeline(
+	    new BoggleSolver(dictionary), BoggleBoard.DEFAULT_SIZE, 4, 1, 0,
+	    Integer.MAX_VALUE), 2);
+    }
+
+    @Test(groups = {"basic"}) public void testCallbacks() throws Exception {
+	Recorder alice = new Recorder();
+	Recorder bob = new Recorder();
+
+	// Joining returns at once; the board comes once the room fills
+	server.joinGame("alice", alice);
+	assert !alice.board.isDone();
+	server.joinGame("bob", bob);
+	BoggleBoard board = alice.board.get(10, TimeUnit.SECONDS);
+	BoggleBoard bobsBoard = bob.board.get(10, TimeUnit.SECONDS);
+	assert bobsBoard == board;
+
+	WordList words = new WordList();
+	words.add("xyzzy");
+	server.submitWords("alice", words);
+	assert !alice.results.isDone();
+	server.submitWords("bob", new WordList());
+
+	GameResults results = alice.results.get(10, TimeUnit.SECONDS);
+	GameResults bobsResults = bob.results.get(10, TimeUnit.SECONDS);
+	assert bobsResults == results;
+	assert results.getClientNames().equals(
+	    new HashSet<String>(Arrays.asList("alice", "bob")));
+	assert results.getClientResult("alice").getRejectedWords()
+	    .contains("xyzzy");
+	assert !alice.error.isDone() && !bob.error.isDone();
+
+	// Both names are free again
+	try {
+	    server.submitWords("alice", new WordList());
+	    assert false : "submitted after the round was over";
+	}
+	catch (PlayerException e) {
+	    // Expected
+	}
+	server.joinGame("alice", new Recorder());
+    }
+
+    @Test(groups = {"basic"}) public void testMetrics() throws Exception {
+	MBeanServer mbeans = MBeanServerFactory.newMBeanServer();
+	new ServerMetrics(server).register(mbeans);
+
+	Recorder alice = new Recorder();
+	Recorder bob = new Recorder();
+	server.joinGame("alice", alice);
+	server.joinGame("bob", bob);
+	bob.board.get(10, TimeUnit.SECONDS);
+	assert (Integer) mbeans.getAttribute(
+	    new ObjectName("boggle:type=Server"), "ActiveRooms") == 1;
+
+	WordList words = new WordList();
+	words.add("tea");
+	words.add("xyzzy");
+	server.submitWords("alice", words);
+	server.submitWords("bob", new WordList());
+	alice.results.get(10, TimeUnit.SECONDS);
+
+	ObjectName stats = new ObjectName("boggle:type=Server");
+	assert (Long) mbeans.getAttribute(stats, "WordLookups") == 2;
+	assert (Long) mbeans.getAttribute(new ObjectName(
+	    "boggle:type=Histogram,name=StartWait"), "Count") == 2;
+	assert (Long) mbeans.getAttribute(new ObjectName(
+	    "boggle:type=Histogram,name=LobbySize"), "Max") == 2;
+
+	// The room's histograms are recorded once it is forgotten
+	ObjectName bytes =
+	    new ObjectName("boggle:type=Histogram,name=ResultsBytes");
+	long deadline = System.currentTimeMillis() + 10000;
+	while ((Long) mbeans.getAttribute(bytes, "Count") == 0 &&
+	       System.currentTimeMillis() < deadline) {
+	    Thread.sleep(10);
+	}
+	assert (Long) mbeans.getAttribute(stats, "FinishedRooms") == 1;
+	assert (Long) mbeans.getAttribute(bytes, "Max") > 0;
+	assert (Long) mbeans.getAttribute(new ObjectName(
+	    "boggle:type=Histogram,name=RoundTime"), "Count") == 1;
+    }
+
+    @Test(groups = {"basic"}) public void testLeaseExpiry() throws Exception {
+	BoggleServerApp leased = new BoggleServerApp(new BoardPipeline(
+	    new BoggleSolver(dictionary), BoggleBoard.DEFAULT_SIZE, 4, 1, 0,
+	    Integer.MAX_VALUE), 2, 0, 200);
+	Recorder alice = new Recorder();
+	Recorder bob = new Recorder();
+	leased.joinGame("alice", alice);
+	leased.joinGame("bob", bob);
+	bob.board.get(10, TimeUnit.SECONDS);
+
+	// Bob sends one heartbeat and goes quiet; the room has no deadline,
+	// so only his lease running out lets Alice get her results
+	leased.streamWords("bob", new WordList());
+	leased.submitWords("alice", new WordList());
+	GameResults results = alice.results.get(10, TimeUnit.SECONDS);
+	assert results.getClientNames().contains("bob");
+	assert !bob.results.isDone();
+
+	// Bob's name is freed once the room is done with him
+	long deadline = System.currentTimeMillis() + 10000;
+	while (true) {
+	    try {
+		leased.joinGame("bob", new Recorder());
+		break;
+	    }
+	    catch (PlayerException e) {
+		assert System.currentTimeMillis() < deadline : e;
+		Thread.sleep(10);
+	    }
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testDuplicateName()
+	throws Exception {
+	server.joinGame("carol", new Recorder());
+	try {
+	    server.joinGame("carol", new Recorder());
+	    assert false : "joined under a name in use";
+	}
+	catch (PlayerException e) {
+	    // Expected
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testConcurrentJoins()
+	throws Exception {
+	// Threads race to join under the same names; each name goes to one
+	final int names = 50;
+	final CountDownLatch go = new CountDownLatch(1);
+	ExecutorService runner = Executors.newFixedThreadPool(4);
+	List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+	for (int t = 0; t < 4; t++) {
+	    futures.add(runner.submit(new Callable<Integer>() {
+		    public Integer call() throws Exception {
+			go.await();
+			int joined = 0;
+			for (int i = 0; i < names; i++) {
+			    try {
+				server.joinGame("racer" + i, new Recorder());
+				joined++;
+			    }
+			    catch (PlayerException e) {
+				// Another thread has the name
+			    }
+			}
+			return joined;
+		    }
+		}));
+	}
+	go.countDown();
+	int joined = 0;
+	for (Future<Integer> f : futures) {
+	    joined += f.get(10, TimeUnit.SECONDS);
+	}
+	runner.shutdown();
+	assert joined == names : joined;
+	assert server.getClientCount() == names;
+    }
+
+    @Test(groups = {"basic"}) public void testBlockingAdapter()
+	throws Exception {
+	final BoggleServer blocking = new BlockingServerAdapter(server);
+	ExecutorService runner = Executors.newFixedThreadPool(2);
+	List<Future<GameResults>> futures = new ArrayList<Future<GameResults>>();
+	for (final String name : new String[] {"dave", "erin"}) {
+	    futures.add(runner.submit(new Callable<GameResults>() {
+		    public GameResults call() throws Exception {
+			blocking.startGame(name);
+			return blocking.gameOver(name, new WordList());
+		    }
+		}));
+	}
+	for (Future<GameResults> f : futures) {
+	    GameResults results = f.get(10, TimeUnit.SECONDS);
+	    assert results.getClientNames().equals(
+		new HashSet<String>(Arrays.asList("dave", "erin")));
+	}
+	runner.shutdown();
+
+	try {
+	    blocking.gameOver("dave", new WordList());
+	    assert false : "submitted without joining";
+	}
+	catch (PlayerException e) {
+	    // Expected
+	}
+    }
+}
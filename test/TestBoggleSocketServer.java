@@ -0,0 +1,218 @@
+import java.util.*;
+import java.util.concurrent.*;
+import org.testng.annotations.*;
+
+public class TestBoggleSocketServer {
+
+    /** Common short words, so most random boards have at least one */
+    private static final Dawg dictionary = TestDictionaries.SHORT_WORDS;
+
+    /**
+     * Game served by the socket server; its rooms hold two players, and its
+     * boards have at least one word
+     */
+    private BoggleServerApp game;
+
+    /** Server under test */
+    private BoggleSocketServer server;
+
+    @BeforeClass public void setUp() throws Exception {
+	game = new BoggleServerApp(new BoardPipeline(
+	    new BoggleSolver(dictionary), BoggleBoard.DEFAULT_SIZE, 4, 1, 1,
+	    Integer.MAX_VALUE), 2);
+	server = new BoggleSocketServer(game, 0);
+	server.start();
+    }
+
+    @AfterClass public void tearDown() throws Exception {
+	server.close();
+    }
+
+    /**
+     * Plays a round for one client on another thread
+     */
+    private static Future<GameResults> play(BoggleSocketClient socket,
+					    final String name,
+					    final String... words) {
+	final BoggleServer client = new BlockingServerAdapter(socket);
+	ExecutorService runner = Executors.newSingleThreadExecutor();
+	Future<GameResults> results = runner.submit(new Callable<GameResults>() {
+		public GameResults call() throws Exception {
+		    BoggleBoard board = client.startGame(name);
+		    assert board.size() == BoggleBoard.DEFAULT_SIZE;
+		    assert board.getWordHashes() != null;
+
+		    WordList list = new WordList();
+		    for (String w : words) {
+			list.add(w);
+		    }
+		    return client.gameOver(name, list);
+		}
+	    });
+	runner.shutdown();
+	return results;
+    }
+
+    @Test(groups = {"basic"}) public void testRound() throws Exception {
+	// Alice has the server's dictionary, so she sends words as ordinals
+	BoggleSocketClient alice =
+	    new BoggleSocketClient("localhost", server.getPort(), dictionary);
+	BoggleSocketClient bob =
+	    new BoggleSocketClient("localhost", server.getPort());
+
+	// Both clients share a room, and get the same results back
+	for (int round = 0; round < 2; round++) {
+	    Future<GameResults> a = play(alice, "alice", "xyzzy", "ate", "tea");
+	    Future<GameResults> b = play(bob, "bob");
+	    GameResults ra = a.get(10, TimeUnit.SECONDS);
+	    GameResults rb = b.get(10, TimeUnit.SECONDS);
+
+	    assert ra.getClientNames().equals(
+		new HashSet<String>(Arrays.asList("alice", "bob")));
+	    assert rb.getClientNames().equals(ra.getClientNames());
+
+	    ClientInfo info = ra.getClientResult("alice");
+	    assert info.getWords().size() == 3;
+	    assert info.getWords().contains("xyzzy");
+	    assert info.getWords().contains("tea");
+	    assert info.getRejectedWords().contains("xyzzy");
+	    assert info.getFilteredWords().size() ==
+		info.getWords().size() - info.getRejectedWords().size();
+	    assert rb.getClientResult("bob").getWords().size() == 0;
+	}
+	alice.close();
+	bob.close();
+    }
+
+    @Test(groups = {"basic"}) public void testWordHashes() throws Exception {
+	// Dave has no dictionary, so the board's words are all he can check
+	BoggleSocketClient daveSocket =
+	    new BoggleSocketClient("localhost", server.getPort());
+	BoggleSocketClient faySocket =
+	    new BoggleSocketClient("localhost", server.getPort(), dictionary);
+	final BoggleServer dave = new BlockingServerAdapter(daveSocket);
+	final BoggleServer fay = new BlockingServerAdapter(faySocket);
+	ExecutorService runner = Executors.newFixedThreadPool(2);
+	Future<BoggleBoard> daves = runner.submit(new Callable<BoggleBoard>() {
+		public BoggleBoard call() throws Exception {
+		    return dave.startGame("dave");
+		}
+	    });
+	Future<BoggleBoard> fays = runner.submit(new Callable<BoggleBoard>() {
+		public BoggleBoard call() throws Exception {
+		    return fay.startGame("fay");
+		}
+	    });
+	BoggleBoard daveBoard = daves.get(10, TimeUnit.SECONDS);
+	BoggleBoard fayBoard = fays.get(10, TimeUnit.SECONDS);
+
+	// Both get every word of the board, whether they have the dictionary
+	// or not
+	List<String> solution =
+	    new BoggleSolver(dictionary).solve(daveBoard).getWords();
+	assert !solution.isEmpty();
+	WordHashes daveWords = daveBoard.getWordHashes();
+	WordHashes fayWords = fayBoard.getWordHashes();
+	assert daveWords.size() == solution.size();
+	assert fayWords.size() == daveWords.size();
+	for (String w : solution) {
+	    assert daveWords.contains(w) : w;
+	    assert fayWords.contains(w) : w;
+	}
+
+	Future<GameResults> daveResults = runner.submit(
+	    new Callable<GameResults>() {
+		public GameResults call() throws Exception {
+		    return dave.gameOver("dave", new WordList());
+		}
+	    });
+	runner.shutdown();
+	GameResults results = fay.gameOver("fay", new WordList());
+	assert results.getClientNames().contains("dave");
+	daveResults.get(10, TimeUnit.SECONDS);
+	daveSocket.close();
+	faySocket.close();
+    }
+
+    @Test(groups = {"basic"}) public void testDuplicateName()
+	throws Exception {
+	BoggleSocketClient first =
+	    new BoggleSocketClient("localhost", server.getPort());
+	BoggleSocketClient second =
+	    new BoggleSocketClient("localhost", server.getPort());
+
+	Future<GameResults> waiting = play(first, "carol");
+	Thread.sleep(200); // let the first client join
+	try {
+	    new BlockingServerAdapter(second).startGame("carol");
+	    assert false : "joined under a name in use";
+	}
+	catch (PlayerException e) {
+	    // Expected
+	}
+
+	// Leaving takes the first client out of the lobby, freeing the name
+	first.close();
+	long deadline = System.currentTimeMillis() + 10000;
+	while (server.getConnectionCount() > 1 &&
+	       System.currentTimeMillis() < deadline) {
+	    Thread.sleep(10);
+	}
+	Future<GameResults> again = play(second, "carol");
+	BoggleSocketClient third =
+	    new BoggleSocketClient("localhost", server.getPort());
+	play(third, "erin").get(10, TimeUnit.SECONDS);
+	GameResults results = again.get(10, TimeUnit.SECONDS);
+	assert results.getClientNames().equals(
+	    new HashSet<String>(Arrays.asList("carol", "erin")));
+	second.close();
+	third.close();
+    }
+
+    @Test(groups = {"basic"}) public void testUnexpectedError()
+	throws Exception {
+	// A game that fails with an unchecked exception for one client
+	BoggleServerApp faulty = new BoggleServerApp(new BoardPipeline(
+	    new BoggleSolver(dictionary), BoggleBoard.DEFAULT_SIZE, 4, 1, 0,
+	    Integer.MAX_VALUE), 2) {
+		@Override public CompletableFuture<BoggleBoard>
+		    startGameAsync(String clientName) {
+		    if (clientName.equals("mallory")) {
+			throw new IllegalStateException("broken");
+		    }
+		    return super.startGameAsync(clientName);
+		}
+	    };
+	BoggleSocketServer other = new BoggleSocketServer(faulty, 0);
+	other.start();
+	try {
+	    // Only the failing client is dropped
+	    BoggleSocketClient bad =
+		new BoggleSocketClient("localhost", other.getPort());
+	    try {
+		new BlockingServerAdapter(bad).startGame("mallory");
+		assert false : "joined despite the error";
+	    }
+	    catch (PlayerException e) {
+		// Expected
+	    }
+	    bad.close();
+
+	    BoggleSocketClient a =
+		new BoggleSocketClient("localhost", other.getPort());
+	    BoggleSocketClient b =
+		new BoggleSocketClient("localhost", other.getPort());
+	    Future<GameResults> ra = play(a, "trent");
+	    GameResults results = play(b, "victor").get(10, TimeUnit.SECONDS);
+	    GameResults resultsOfA = ra.get(10, TimeUnit.SECONDS);
+	    assert results.getClientNames().equals(
+		new HashSet<String>(Arrays.asList("trent", "victor")));
+	    assert resultsOfA.getClientNames().equals(results.getClientNames());
+	    a.close();
+	    b.close();
+	}
+	finally {
+	    other.close();
+	}
+    }
+}
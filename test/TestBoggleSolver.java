@@ -0,0 +1,107 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import org.testng.annotations.*;
+
+public class TestBoggleSolver {
+
+    /** A fixed board, indexed by (x,y) */
+    private static final String[][] cells = {
+	{ "T", "A", "P", "S" },
+	{ "O", "A", "E", "X" },
+	{ "P", "X", "Qu", "I" },
+	{ "S", "X", "X", "T" }
+    };
+
+    /** Dictionary with words that are and aren't on the board */
+    private static final Dawg dictionary = Dawg.fromWords(Arrays.asList(
+	"at", "oat", "pat", "qat", "quat", "quit", "quite", "sap", "tap",
+	"taps", "top", "tops"));
+
+    /** Words from the dictionary that can be spelled on the board */
+    private static final List<String> expected = Arrays.asList(
+	"oat", "pat", "quat", "quit", "tap", "taps", "top", "tops");
+
+    @Test(groups = {"basic"}) public void testSolve() {
+	BoggleBoard b = new BoggleBoard(cells);
+	BoggleSolution s = new BoggleSolver(dictionary).solve(b);
+
+	assert s.getBoard() == b;
+	assert s.getWords().equals(expected) : s.getWords();
+	assert s.size() == expected.size();
+
+	assert s.contains("quit");
+	assert !s.contains("at");     // too short
+	assert !s.contains("qat");    // "Qu" can't be a plain "Q"
+	assert !s.contains("quite");  // letters not adjacent
+	assert s.getPath("sap") == null;
+    }
+
+    @Test(groups = {"basic"}) public void testPaths() {
+	BoggleBoard b = new BoggleBoard(cells);
+	BoggleSolution s = new BoggleSolver(dictionary).solve(b);
+
+	for (String w : s.getWords()) {
+	    int[] path = s.getPath(w);
+	    String spelled = "";
+	    Set<Integer> used = new HashSet<Integer>();
+
+	    for (int i = 0; i < path.length; i++) {
+		int x = path[i] / b.size();
+		int y = path[i] % b.size();
+		spelled += b.getCell(x, y).toLowerCase();
+
+		assert used.add(path[i]) : w;
+		if (i > 0) {
+		    int px = path[i - 1] / b.size();
+		    int py = path[i - 1] % b.size();
+		    assert Math.abs(px - x) <= 1 && Math.abs(py - y) <= 1 : w;
+		}
+	    }
+	    assert spelled.equals(w) : w;
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testNeighbors() {
+	int[][] n = BoggleSolver.neighbors(4);
+
+	assert n.length == 16;
+	assert n[0].length == 3;   // corner
+	assert n[1].length == 5;   // edge
+	assert n[5].length == 8;   // middle
+	assert BoggleSolver.neighbors(4) == n;
+    }
+
+    @Test(groups = {"basic"}) public void testLargeBoard() {
+	// Every word found on a random board must be in the dictionary
+	BoggleBoard b = new BoggleBoard(10);
+	Dawg d = Dawg.fromWords(Arrays.asList("ab", "abe", "eat", "tea", "set"));
+	BoggleSolution s = new BoggleSolver(d).solve(b);
+
+	for (String w : s.getWords()) {
+	    assert d.contains(w) : w;
+	    assert w.length() >= BoggleSolver.MIN_WORD_LENGTH : w;
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testParallel() {
+	Dawg d = Dawg.fromWords(Arrays.asList(
+	    "ate", "eat", "east", "seat", "sea", "tea", "teas", "set", "rest",
+	    "stare", "tear", "rate", "rates", "quest", "quiet", "quite"));
+	BoggleSolver solver = new BoggleSolver(d);
+	ForkJoinPool pool = new ForkJoinPool(4);
+
+	for (int size : new int[] { 4, 10 }) {
+	    BoggleBoard b = new BoggleBoard(size);
+	    BoggleSolution serial = solver.solve(b);
+	    BoggleSolution parallel = solver.solve(b, pool);
+
+	    assert parallel.getWords().equals(serial.getWords());
+	}
+
+	BoggleSolution fixed = new BoggleSolver(dictionary)
+	    .solve(new BoggleBoard(cells), pool);
+	assert fixed.getWords().equals(expected) : fixed.getWords();
+
+	pool.shutdown();
+    }
+}
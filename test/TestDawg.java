@@ -0,0 +1,151 @@
+import java.util.*;
+import java.io.*;
+import org.testng.annotations.*;
+
+public class TestDawg {
+
+    /** Small dictionary with shared prefixes and suffixes */
+    private static final List<String> words = Arrays.asList(
+	"tap", "taps", "top", "tops", "stop", "stops", "cat", "cats", "a", "quit");
+
+    @Test(groups = {"basic"}) public void testEmpty() {
+	Dawg d = Dawg.fromWords(new ArrayList<String>());
+
+	assert d.size() == 0;
+	assert !d.contains("a");
+	assert !d.isPrefix("");
+	assert !d.isPrefix("a");
+    }
+
+    @Test(groups = {"basic"}) public void testContains() {
+	Dawg d = Dawg.fromWords(words);
+
+	assert d.size() == words.size();
+	for (String w : words) {
+	    assert d.contains(w) : w;
+	}
+
+	assert !d.contains("");
+	assert !d.contains("ta");
+	assert !d.contains("tapss");
+	assert !d.contains("dog");
+	assert !d.contains("qu");
+    }
+
+    @Test(groups = {"basic"}) public void testPrefix() {
+	Dawg d = Dawg.fromWords(words);
+
+	assert d.isPrefix("");
+	assert d.isPrefix("t");
+	assert d.isPrefix("sto");
+	assert d.isPrefix("stops");
+	assert d.isPrefix("qu");
+
+	assert !d.isPrefix("x");
+	assert !d.isPrefix("stopz");
+	assert !d.isPrefix("cab");
+    }
+
+    @Test(groups = {"basic"}) public void testPreprocess() {
+	Dawg d = Dawg.fromWords(Arrays.asList("  Apple ", "BANANA", "apple", ""));
+
+	assert d.size() == 2;
+	assert d.contains("apple");
+	assert d.contains("APPLE");
+	assert d.contains("Banana");
+	assert !d.contains("apple ");
+    }
+
+    @Test(groups = {"basic"}) public void testMinimized() {
+	// "tap", "top" and "cat" only differ in a letter or two, so they should
+	// share almost all of their nodes
+	Dawg d = Dawg.fromWords(Arrays.asList("taps", "tops", "cats", "cops"));
+
+	assert d.edgeCount() < 10 : d.edgeCount();
+    }
+
+    @Test(groups = {"basic"}) public void testWalk() {
+	Dawg d = Dawg.fromWords(words);
+
+	int edge = d.findEdge(Dawg.ROOT, 'q');
+	assert edge != Dawg.NONE;
+	assert !d.isFinal(edge);
+
+	edge = d.findEdge(d.target(edge), 'u');
+	assert edge != Dawg.NONE;
+
+	assert d.findEdge(Dawg.ROOT, 'z') == Dawg.NONE;
+	assert d.findEdge(Dawg.ROOT, '?') == Dawg.NONE;
+
+	edge = d.findEdge(Dawg.ROOT, 'a');
+	assert d.isFinal(edge);
+	assert d.target(edge) == Dawg.ROOT; // "a" doesn't continue
+    }
+
+    @Test(groups = {"basic"},
+	  expectedExceptions = {IllegalArgumentException.class})
+	public void testInvalidWord() {
+	Dawg.fromWords(Arrays.asList("it's"));
+    }
+
+    @Test(groups = {"basic"}) public void testOrdinals() {
+	Dawg d = Dawg.fromWords(words);
+	List<String> sorted = new ArrayList<String>(words);
+	Collections.sort(sorted);
+
+	// Ordinals are positions in sorted order, and map back to the words
+	for (int i = 0; i < sorted.size(); i++) {
+	    assert d.ordinal(sorted.get(i)) == i : sorted.get(i);
+	    assert d.word(i).equals(sorted.get(i));
+	}
+	assert d.ordinal("TAPS") == sorted.indexOf("taps");
+	assert d.ordinal("ta") == -1;
+	assert d.ordinal("tapsx") == -1;
+	assert d.ordinal("") == -1;
+    }
+
+    @Test(groups = {"basic"},
+	  expectedExceptions = {IndexOutOfBoundsException.class})
+	public void testWordOutOfRange() {
+	Dawg.fromWords(words).word(words.size());
+    }
+
+    @Test(groups = {"basic"}) public void testFingerprint() {
+	Dawg d = Dawg.fromWords(words);
+	assert d.fingerprint() != 0;
+	assert d.fingerprint() == Dawg.fromWords(words).fingerprint();
+
+	List<String> more = new ArrayList<String>(words);
+	more.add("spot");
+	assert d.fingerprint() != Dawg.fromWords(more).fingerprint();
+    }
+
+    @Test(groups = {"basic", "fileio"}) public void testSaveAndLoad()
+	throws IOException {
+	File image = File.createTempFile("dawg", ".dawg");
+	image.deleteOnExit();
+
+	Dawg.fromWords(words).save(image.getPath());
+	Dawg d = Dawg.load(image.getPath());
+
+	assert d.size() == words.size();
+	for (String w : words) {
+	    assert d.contains(w) : w;
+	}
+	assert !d.contains("ta");
+	assert d.isPrefix("sto");
+    }
+
+    @Test(groups = {"fileio"},
+	  expectedExceptions = {IOException.class})
+	public void testLoadNotAnImage() throws IOException {
+	File notImage = File.createTempFile("dawg", ".txt");
+	notImage.deleteOnExit();
+
+	FileWriter writer = new FileWriter(notImage);
+	writer.write("apple\nbanana\ncarrot\ndog\n");
+	writer.close();
+
+	Dawg.load(notImage.getPath());
+    }
+}
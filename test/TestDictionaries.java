@@ -0,0 +1,15 @@
+import java.util.Arrays;
+
+/**
+ * Dictionaries shared by the tests
+ */
+final class TestDictionaries {
+
+    /** Common short words, so most random boards have at least one */
+    static final Dawg SHORT_WORDS = Dawg.fromWords(Arrays.asList(
+	"ate", "eat", "tea", "set", "sea", "ten", "net", "tin", "ear", "era",
+	"are", "art", "rat", "tar", "ant", "tan", "nit", "one", "son", "not"));
+
+    private TestDictionaries() {
+    }
+}
@@ -0,0 +1,184 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import org.testng.annotations.*;
+
+public class TestGameResults {
+
+    /** A fixed board, indexed by (x,y) */
+    private static final String[][] cells = {
+	{ "T", "A", "P", "S" },
+	{ "O", "A", "E", "X" },
+	{ "P", "X", "Qu", "I" },
+	{ "S", "X", "X", "T" }
+    };
+
+    /** Dictionary with words that are and aren't on the board */
+    private static final Dawg dictionary = Dawg.fromWords(Arrays.asList(
+	"oat", "pat", "quit", "quite", "sap", "tap", "taps", "top", "tops"));
+
+    /**
+     * Helper method that makes a client who has submitted the given words
+     */
+    private static ClientInfo player(String name, String... words) {
+	WordList list = new WordList();
+	for (String w : words) {
+	    list.add(w);
+	}
+
+	ClientInfo info = new ClientInfo(name);
+	info.setPlaying();
+	info.setWords(list);
+	return info;
+    }
+
+    @Test(groups = {"basic"}) public void testValidation() {
+	BoggleSolution solution =
+	    new BoggleSolver(dictionary).solve(new BoggleBoard(cells));
+
+	ClientInfo alice = player("alice", "tap", "top", "quit", "xyzzy", "sap");
+	ClientInfo bob = player("bob", "tap", "PAT", "quite");
+
+	GameResults results = new GameResults();
+	results.computeResults(Arrays.asList(alice, bob), solution);
+
+	assert results.getClientNames().size() == 2;
+	assert results.getClientResult("alice") == alice;
+
+	// Made-up words and words not on the board are rejected
+	assert alice.getRejectedWords().size() == 2;
+	assert alice.getRejectedWords().contains("xyzzy");
+	assert alice.getRejectedWords().contains("sap");
+	assert bob.getRejectedWords().size() == 1;
+	assert bob.getRejectedWords().contains("quite");
+
+	// Only valid words that nobody else found are scored
+	assert alice.getFilteredWords().size() == 2;
+	assert alice.getFilteredWords().contains("top");
+	assert alice.getFilteredWords().contains("quit");
+	assert alice.getScore() == 2;
+
+	assert bob.getFilteredWords().size() == 1;
+	assert bob.getFilteredWords().contains("pat");
+	assert bob.getScore() == 1;
+
+	// The submitted lists are left as they were
+	assert alice.getWords().size() == 5;
+	assert bob.getWords().size() == 3;
+    }
+
+    @Test(groups = {"basic"}) public void testSharedWordsDontScore() {
+	BoggleSolution solution =
+	    new BoggleSolver(dictionary).solve(new BoggleBoard(cells));
+
+	ClientInfo alice = player("alice", "taps", "tops");
+	ClientInfo bob = player("bob", "taps", "oat");
+	ClientInfo carol = player("carol", "tops", "oat");
+
+	GameResults results = new GameResults();
+	results.computeResults(Arrays.asList(alice, bob, carol), solution);
+
+	assert alice.getScore() == 0;
+	assert bob.getScore() == 0;
+	assert carol.getScore() == 0;
+	assert alice.getFilteredWords().size() == 0;
+    }
+
+    /**
+     * Helper method that serializes and deserializes results, as RMI does
+     */
+    private static GameResults copy(GameResults results) throws Exception {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(results);
+	out.close();
+	return (GameResults) new ObjectInputStream(
+	    new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    /**
+     * Helper method that checks two clients' results are the same
+     */
+    private static void assertSame(ClientInfo a, ClientInfo b) {
+	assert a.getName().equals(b.getName());
+	assert a.getScore() == b.getScore();
+	assertSame(a.getWords(), b.getWords());
+	assertSame(a.getFilteredWords(), b.getFilteredWords());
+	assertSame(a.getRejectedWords(), b.getRejectedWords());
+    }
+
+    /**
+     * Helper method that checks two word lists hold the same words
+     */
+    private static void assertSame(WordList a, WordList b) {
+	assert a.size() == b.size();
+	for (String word : a) {
+	    assert b.contains(word);
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testEncoded() throws Exception {
+	BoggleSolution solution =
+	    new BoggleSolver(dictionary).solve(new BoggleBoard(cells));
+	ClientInfo alice = player("alice", "tap", "top", "xyzzy");
+	ClientInfo bob = player("bob", "tap", "pat");
+
+	GameResults results = new GameResults();
+	results.computeResults(Arrays.asList(alice, bob), solution);
+	GameResults plain = copy(results);
+	results.encode();
+
+	// Encoded results read back the same as ones serialized field by field
+	GameResults encoded = copy(results);
+	assert encoded.getClientNames().equals(plain.getClientNames());
+	for (String name : plain.getClientNames()) {
+	    assertSame(encoded.getClientResult(name),
+		       plain.getClientResult(name));
+	}
+
+	// Every client's frame shares the same bytes
+	ByteBuffer first = BoggleProtocol.results(results);
+	ByteBuffer second = BoggleProtocol.results(results);
+	assert first.array() == second.array();
+	first.position(BoggleProtocol.HEADER_SIZE + 1);
+	GameResults read = BoggleProtocol.readResults(
+	    BoggleProtocol.reader(first));
+	assertSame(read.getClientResult("bob"), bob);
+    }
+
+    @Test(groups = {"basic"}) public void testSummary() throws Exception {
+	BoggleSolution solution =
+	    new BoggleSolver(dictionary).solve(new BoggleBoard(cells));
+	ClientInfo alice = player("alice", "tap", "top", "xyzzy");
+	ClientInfo bob = player("bob", "tap", "pat");
+	ClientInfo carol = player("carol", "oat");
+
+	GameResults results = new GameResults();
+	results.computeResults(Arrays.asList(alice, bob, carol), solution);
+	results.encode();
+
+	// The summary, sent either way, has every score but only one player's
+	// word lists
+	GameResults summary = results.summaryFor("bob");
+	ByteBuffer frame = BoggleProtocol.results(summary);
+	frame.position(BoggleProtocol.HEADER_SIZE + 1);
+	for (GameResults r : Arrays.asList(summary, copy(summary),
+		     BoggleProtocol.readResults(BoggleProtocol.reader(frame)))) {
+	    assert r.getClientNames().size() == 3;
+	    assertSame(r.getClientResult("bob"), bob);
+	    ClientInfo a = r.getClientResult("alice");
+	    assert a.getScore() == alice.getScore() && a.getScore() > 0;
+	    assert a.getWords().size() == 0;
+	    assert a.getFilteredWords().size() == 0;
+	    assert r.getClientResult("carol").getScore() == carol.getScore();
+	}
+
+	try {
+	    results.summaryFor("dave");
+	    assert false : "summary for a client who didn't play";
+	}
+	catch (IllegalArgumentException e) {
+	    // Expected
+	}
+    }
+}
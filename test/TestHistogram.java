@@ -0,0 +1,88 @@
+import java.util.*;
+import java.util.concurrent.*;
+import org.testng.annotations.*;
+
+public class TestHistogram {
+
+    @Test(groups = {"basic"}) public void testEmpty() {
+	Histogram h = new Histogram("us");
+
+	assert h.getCount() == 0;
+	assert h.getMean() == 0;
+	assert h.getMax() == 0;
+	assert h.get99thPercentile() == 0;
+	assert h.getUnit().equals("us");
+    }
+
+    @Test(groups = {"basic"}) public void testBuckets() {
+	// Every value falls in a bucket that holds it, and the buckets are
+	// never wider than 1/SUB_BUCKETS of their values
+	Random rand = new Random(5);
+	for (int i = 0; i < 100000; i++) {
+	    long value = rand.nextLong() >>> (1 + rand.nextInt(63));
+	    int index = Histogram.index(value);
+	    assert Histogram.highest(index) >= value : value;
+	    assert index == 0 || Histogram.highest(index - 1) < value : value;
+	    assert Histogram.highest(index) - value <=
+		value / Histogram.SUB_BUCKETS : value;
+	}
+	assert Histogram.highest(Histogram.index(Long.MAX_VALUE)) ==
+	    Long.MAX_VALUE;
+    }
+
+    @Test(groups = {"basic"}) public void testPercentiles() {
+	Histogram h = new Histogram("us");
+	for (int v = 1; v <= 10000; v++) {
+	    h.record(v);
+	}
+	h.record(-5); // counted as 0
+
+	assert h.getCount() == 10001;
+	assert h.getMax() == 10000;
+	assert Math.abs(h.getMean() - 5000) < 1;
+	assertClose(h.get50thPercentile(), 5000);
+	assertClose(h.get90thPercentile(), 9000);
+	assertClose(h.get99thPercentile(), 9900);
+	assert h.getPercentile(100) == 10000;
+	assert h.getPercentile(0) == 0;
+
+	// Small values are exact
+	Histogram small = new Histogram("players");
+	small.record(2);
+	small.record(8);
+	assert small.get50thPercentile() == 2;
+	assert small.get99thPercentile() == 8;
+    }
+
+    /** Helper method that checks a percentile is within bucket precision */
+    private static void assertClose(long actual, long expected) {
+	assert actual >= expected &&
+	    actual <= expected + expected / Histogram.SUB_BUCKETS :
+	    actual + " isn't close to " + expected;
+    }
+
+    @Test(groups = {"basic"}) public void testConcurrentRecording()
+	throws Exception {
+	final Histogram h = new Histogram("us");
+	ExecutorService pool = Executors.newFixedThreadPool(4);
+	List<Future<?>> done = new ArrayList<Future<?>>();
+	for (int t = 0; t < 4; t++) {
+	    final int thread = t;
+	    done.add(pool.submit(new Runnable() {
+		    public void run() {
+			for (int i = 0; i < 10000; i++) {
+			    h.record(thread * 10000 + i);
+			}
+		    }
+		}));
+	}
+	for (Future<?> f : done) {
+	    f.get(10, TimeUnit.SECONDS);
+	}
+	pool.shutdown();
+
+	assert h.getCount() == 40000;
+	assert h.getMax() == 39999;
+	assert h.getPercentile(100) == 39999;
+    }
+}
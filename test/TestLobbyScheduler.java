@@ -0,0 +1,152 @@
+import java.util.*;
+import java.util.concurrent.*;
+import org.testng.annotations.*;
+
+public class TestLobbyScheduler {
+
+    /** Start timeout used by the tests, in milliseconds */
+    private static final long TIMEOUT = 200;
+
+    /** Runs the lobbies' start timeouts */
+    private ScheduledExecutorService scheduler;
+
+    /** Rounds formed by the lobby under test */
+    private BlockingQueue<List<ClientInfo>> rounds;
+
+    /** Puts each round formed on {@link #rounds} */
+    private LobbyScheduler.RoundListener listener =
+	new LobbyScheduler.RoundListener() {
+	    public void roundFormed(List<ClientInfo> players) {
+		rounds.add(players);
+	    }
+	};
+
+    @BeforeClass public void setUp() {
+	scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterClass public void tearDown() {
+	scheduler.shutdownNow();
+    }
+
+    @BeforeMethod public void clearRounds() {
+	rounds = new LinkedBlockingQueue<List<ClientInfo>>();
+    }
+
+    @Test(groups = {"basic"}) public void testRound() throws Exception {
+	LobbyScheduler lobby =
+	    new LobbyScheduler(scheduler, TIMEOUT, 2, 10, listener);
+	ClientInfo a = new ClientInfo("a");
+	ClientInfo b = new ClientInfo("b");
+
+	long start = System.nanoTime();
+	Future<BoggleBoard> boardA = lobby.join(a);
+	Future<BoggleBoard> boardB = lobby.join(b);
+	assert lobby.getWaitingCount() == 2;
+
+	List<ClientInfo> players = rounds.poll(5, TimeUnit.SECONDS);
+	long elapsed = (System.nanoTime() - start) / 1000000;
+
+	assert players.equals(Arrays.asList(a, b));
+	assert elapsed >= TIMEOUT;
+	assert lobby.getWaitingCount() == 0;
+
+	// Players only wake up once the round is started
+	assert !boardA.isDone() && !boardB.isDone();
+	BoggleBoard board = new BoggleBoard();
+	lobby.startRound(players, board);
+	BoggleBoard boardOfA = boardA.get(5, TimeUnit.SECONDS);
+	BoggleBoard boardOfB = boardB.get(5, TimeUnit.SECONDS);
+	assert boardOfA == board;
+	assert boardOfB == board;
+    }
+
+    @Test(groups = {"basic"}) public void testMinPlayers() throws Exception {
+	LobbyScheduler lobby =
+	    new LobbyScheduler(scheduler, TIMEOUT, 2, 10, listener);
+	ClientInfo a = new ClientInfo("a");
+	lobby.join(a);
+
+	// A lone player waits past the timeout
+	List<ClientInfo> round = rounds.poll(2 * TIMEOUT, TimeUnit.MILLISECONDS);
+	assert round == null;
+
+	ClientInfo b = new ClientInfo("b");
+	lobby.join(b);
+	round = rounds.poll(5, TimeUnit.SECONDS);
+	assert round.equals(Arrays.asList(a, b));
+    }
+
+    @Test(groups = {"basic"}) public void testJoinReschedules()
+	throws Exception {
+	LobbyScheduler lobby =
+	    new LobbyScheduler(scheduler, TIMEOUT, 2, 10, listener);
+
+	long start = System.nanoTime();
+	lobby.join(new ClientInfo("a"));
+	lobby.join(new ClientInfo("b"));
+
+	// Each join pushes back the start of the round
+	for (int i = 0; i < 4; i++) {
+	    Thread.sleep(TIMEOUT / 2);
+	    lobby.join(new ClientInfo("c" + i));
+	}
+	List<ClientInfo> players = rounds.poll(5, TimeUnit.SECONDS);
+	long elapsed = (System.nanoTime() - start) / 1000000;
+
+	assert players.size() == 6;
+	assert elapsed >= 2 * TIMEOUT + TIMEOUT;
+    }
+
+    @Test(groups = {"basic"}) public void testFullRooms() throws Exception {
+	LobbyScheduler lobby =
+	    new LobbyScheduler(scheduler, 60 * 1000, 2, 3, listener);
+
+	// Full rooms start right away, without waiting for the timeout
+	ArrayList<ClientInfo> clients = new ArrayList<ClientInfo>();
+	ArrayList<CompletableFuture<BoggleBoard>> boards =
+	    new ArrayList<CompletableFuture<BoggleBoard>>();
+	for (int i = 0; i < 7; i++) {
+	    ClientInfo c = new ClientInfo("c" + i);
+	    clients.add(c);
+	    boards.add(lobby.join(c));
+	}
+	assert rounds.size() == 2;
+	assert lobby.getWaitingCount() == 1;
+
+	List<ClientInfo> first = rounds.take();
+	List<ClientInfo> second = rounds.take();
+	assert first.equals(clients.subList(0, 3));
+	assert second.equals(clients.subList(3, 6));
+
+	// Rounds start independently of each other
+	BoggleBoard board = new BoggleBoard();
+	lobby.startRound(second, board);
+	for (int i = 0; i < 7; i++) {
+	    assert boards.get(i).isDone() == (i >= 3 && i < 6);
+	}
+
+	lobby.abortRound(first, new InterruptedException());
+	for (int i = 0; i < 3; i++) {
+	    assert boards.get(i).isCompletedExceptionally();
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testLeave() throws Exception {
+	LobbyScheduler lobby =
+	    new LobbyScheduler(scheduler, TIMEOUT, 1, 10, listener);
+	ClientInfo a = new ClientInfo("a");
+	Future<BoggleBoard> board = lobby.join(a);
+
+	boolean left = lobby.leave(a);
+	boolean leftAgain = lobby.leave(a);
+	assert left;
+	assert !leftAgain;
+	assert board.isCancelled();
+	assert lobby.getWaitingCount() == 0;
+
+	// Nobody is left to play
+	List<ClientInfo> round = rounds.poll(2 * TIMEOUT, TimeUnit.MILLISECONDS);
+	assert round == null;
+    }
+}
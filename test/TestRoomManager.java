@@ -0,0 +1,360 @@
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.*;
+
+public class TestRoomManager {
+
+    /** Common short words, so most random boards have at least one */
+    private static final Dawg dictionary = TestDictionaries.SHORT_WORDS;
+
+    /** Solves the rooms' boards */
+    private BoardPipeline pipeline;
+
+    /** Runs the lobby's start timeout */
+    private ScheduledExecutorService scheduler;
+
+    /** Starts and scores the rooms */
+    private ExecutorService executor;
+
+    @BeforeClass public void setUp() {
+	pipeline = new BoardPipeline(new BoggleSolver(dictionary),
+	    BoggleBoard.DEFAULT_SIZE, 16, 1, 0, Integer.MAX_VALUE);
+	pipeline.start();
+	scheduler = Executors.newSingleThreadScheduledExecutor();
+	executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterClass public void tearDown() {
+	pipeline.shutdown();
+	scheduler.shutdownNow();
+	executor.shutdownNow();
+    }
+
+    /**
+     * Submits every word on a player's board
+     */
+    private static WordList allWords(BoggleSolution solution) {
+	WordList words = new WordList();
+	for (String w : solution.getWords()) {
+	    words.add(w);
+	}
+	return words;
+    }
+
+    @Test(groups = {"basic"}) public void testConcurrentRooms()
+	throws Exception {
+	RoomManager rooms =
+	    new RoomManager(pipeline, scheduler, executor, 60 * 1000, 2, 2);
+
+	// Six players fill three rooms, which all play at the same time
+	ClientInfo[] players = new ClientInfo[6];
+	List<Future<BoggleBoard>> boards = new ArrayList<Future<BoggleBoard>>();
+	for (int i = 0; i < players.length; i++) {
+	    players[i] = new ClientInfo("p" + i);
+	    boards.add(rooms.join(players[i]));
+	}
+	for (int i = 0; i < players.length; i++) {
+	    BoggleBoard board = boards.get(i).get(10, TimeUnit.SECONDS);
+	    assert board == rooms.getRoom(players[i]).getBoard();
+	}
+	assert rooms.getActiveCount() == 3;
+	assert rooms.getWaitingCount() == 0;
+
+	GameRoom room = rooms.getRoom(players[0]);
+	assert room == rooms.getRoom(players[1]);
+	assert room != rooms.getRoom(players[2]);
+	assert room.getPlayers().equals(Arrays.asList(players[0], players[1]));
+	assert room.getState() == GameRoom.State.PLAYING;
+
+	// Finishing one room doesn't wait for the others
+	Future<GameResults> first =
+	    rooms.submit(players[0], allWords(room.getSolution()));
+	assert !first.isDone();
+	Future<GameResults> second = rooms.submit(players[1], new WordList());
+	GameResults results = first.get(10, TimeUnit.SECONDS);
+
+	assert second.get() == results;
+	assert results.getClientNames().equals(
+	    new HashSet<String>(Arrays.asList("p0", "p1")));
+	assert players[0].getScore() == room.getSolution().getTotalScore();
+	assert players[1].getScore() == 0;
+	assert room.getState() == GameRoom.State.FINISHED;
+
+	assert rooms.getRoom(players[0]) == null;
+	assert rooms.getActiveCount() == 2;
+	assert rooms.getFinishedCount() == 1;
+	assert rooms.getRoom(players[2]).getState() == GameRoom.State.PLAYING;
+    }
+
+    @Test(groups = {"basic"}) public void testStreamedWords()
+	throws Exception {
+	// Boards with a few words, so the batches aren't empty
+	BoardPipeline wordy = new BoardPipeline(new BoggleSolver(dictionary),
+	    BoggleBoard.DEFAULT_SIZE, 1, 1, 4, Integer.MAX_VALUE);
+	wordy.start();
+	RoomManager rooms =
+	    new RoomManager(wordy, scheduler, executor, 60 * 1000, 2, 2);
+	ClientInfo a = new ClientInfo("a");
+	ClientInfo b = new ClientInfo("b");
+	rooms.join(a);
+	rooms.join(b).get(10, TimeUnit.SECONDS);
+	BoggleSolution solution = rooms.getRoom(a).getSolution();
+	List<String> found = solution.getWords();
+
+	// Alice sends her words in batches that repeat each other, then
+	// submits nothing new; Bob submits half of them in one go
+	WordList first = new WordList();
+	WordList second = new WordList();
+	WordList bobs = new WordList();
+	for (int i = 0; i < found.size(); i++) {
+	    (i % 2 == 0 ? first : second).add(found.get(i));
+	    if (i < found.size() / 2) {
+		bobs.add(found.get(i));
+	    }
+	}
+	first.add("xyzzy");
+	second.add(found.get(0));
+	second.add("xyzzy");
+	rooms.addWords(a, first);
+	rooms.addWords(a, second);
+	rooms.addWords(a, new WordList());
+
+	Future<GameResults> ra = rooms.submit(a, second);
+	GameResults results = rooms.submit(b, bobs).get(10, TimeUnit.SECONDS);
+	assert ra.get() == results;
+
+	int score = 0;
+	for (int i = found.size() / 2; i < found.size(); i++) {
+	    score += GameResults.wordScore(found.get(i).length());
+	}
+	assert a.getWords().size() == found.size() + 1;
+	assert a.getRejectedWords().size() == 1;
+	assert a.getRejectedWords().contains("xyzzy");
+	assert a.getFilteredWords().size() == found.size() - found.size() / 2;
+	assert a.getScore() == score;
+	assert b.getScore() == 0;
+
+	// Words can't be added once the round is over
+	try {
+	    rooms.addWords(a, first);
+	    assert false : "added words after submitting";
+	}
+	catch (IllegalStateException e) {
+	    // Expected
+	}
+	wordy.shutdown();
+    }
+
+    @Test(groups = {"basic"}) public void testDeadline() throws Exception {
+	RoomManager rooms =
+	    new RoomManager(pipeline, scheduler, executor, 60 * 1000, 3, 3, 300);
+	ClientInfo a = new ClientInfo("a");
+	ClientInfo b = new ClientInfo("b");
+	ClientInfo c = new ClientInfo("c");
+	rooms.join(a);
+	rooms.join(b);
+	rooms.join(c).get(10, TimeUnit.SECONDS);
+	GameRoom room = rooms.getRoom(a);
+
+	// Alice submits, Bob only streams, and Carol is never heard from
+	WordList streamed = new WordList();
+	streamed.add("xyzzy");
+	rooms.addWords(b, streamed);
+	Future<GameResults> ra = rooms.submit(a, new WordList());
+	GameResults results = ra.get(10, TimeUnit.SECONDS);
+
+	assert results.getClientNames().equals(
+	    new HashSet<String>(Arrays.asList("a", "b", "c")));
+	assert b.getRejectedWords().contains("xyzzy");
+	assert c.getWords().size() == 0;
+	assert room.isCutOff(b) && room.isCutOff(c);
+	assert !room.isCutOff(a);
+
+	// The cutoff is counted once the scheduler is done closing the room
+	long deadline = System.currentTimeMillis() + 10000;
+	while ((rooms.getCutOffCount() < 2 || rooms.getRoom(a) != null) &&
+	       System.currentTimeMillis() < deadline) {
+	    Thread.sleep(10);
+	}
+	assert rooms.getCutOffCount() == 2;
+	assert rooms.getRoom(a) == null;
+
+	// Bob catches up late and gets the results without his late words;
+	// Carol leaves
+	WordList late = new WordList();
+	late.add("late");
+	GameResults lateResults = rooms.submit(b, late).get(10, TimeUnit.SECONDS);
+	assert lateResults == results;
+	assert !b.getWords().contains("late");
+	assert rooms.getRoom(b) == null;
+	boolean left = rooms.leave(c);
+	assert left;
+	assert rooms.getRoom(c) == null;
+	assert rooms.getActiveCount() == 0;
+    }
+
+    @Test(groups = {"basic"}) public void testStagesOverlap()
+	throws Exception {
+	// The only scoring thread is kept busy, and starting has a thread of
+	// its own
+	final CountDownLatch release = new CountDownLatch(1);
+	ExecutorService scorer = Executors.newSingleThreadExecutor();
+	scorer.execute(new Runnable() {
+		public void run() {
+		    try {
+			release.await();
+		    }
+		    catch (InterruptedException e) {
+			// Done
+		    }
+		}
+	    });
+	ExecutorService starter = Executors.newSingleThreadExecutor();
+	RoomManager rooms = new RoomManager(pipeline, scheduler, starter,
+					    scorer, 60 * 1000, 2, 2, 0);
+
+	ClientInfo a = new ClientInfo("a");
+	ClientInfo b = new ClientInfo("b");
+	rooms.join(a);
+	rooms.join(b).get(10, TimeUnit.SECONDS);
+	rooms.submit(a, new WordList());
+	Future<GameResults> scored = rooms.submit(b, new WordList());
+
+	// A room forms and starts while the first one waits to be scored
+	ClientInfo c = new ClientInfo("c");
+	ClientInfo d = new ClientInfo("d");
+	rooms.join(c);
+	rooms.join(d).get(10, TimeUnit.SECONDS);
+	assert rooms.getRoom(c).getState() == GameRoom.State.PLAYING;
+	assert !scored.isDone();
+
+	release.countDown();
+	GameResults results = scored.get(10, TimeUnit.SECONDS);
+	assert results.getClientNames().size() == 2;
+	scorer.shutdown();
+	starter.shutdown();
+    }
+
+    @Test(groups = {"basic"}) public void testStartRejected()
+	throws Exception {
+	// A starting stage that can't take any more rooms
+	Executor full = new Executor() {
+		public void execute(Runnable task) {
+		    throw new RejectedExecutionException("Full");
+		}
+	    };
+	RoomManager rooms = new RoomManager(pipeline, scheduler, full, executor,
+					    60 * 1000, 2, 2, 0);
+	ClientInfo a = new ClientInfo("a");
+	rooms.join(a);
+	try {
+	    rooms.join(new ClientInfo("b")).get(10, TimeUnit.SECONDS);
+	    assert false : "started a room that was turned away";
+	}
+	catch (ExecutionException e) {
+	    assert e.getCause() instanceof RejectedExecutionException;
+	}
+	assert rooms.getWaitingCount() == 0;
+	assert rooms.getRoom(a) == null;
+    }
+
+    @Test(groups = {"basic"}) public void testStartFails() throws Exception {
+	// A stopped scheduler can't take the room's deadline
+	ScheduledExecutorService stopped =
+	    Executors.newSingleThreadScheduledExecutor();
+	stopped.shutdown();
+	RoomManager rooms = new RoomManager(pipeline, stopped, executor,
+	    executor, 60 * 1000, 1, 1, 1000);
+	ClientInfo a = new ClientInfo("a");
+	Future<BoggleBoard> board = rooms.join(a);
+
+	// The player is told, instead of waiting forever
+	try {
+	    board.get(10, TimeUnit.SECONDS);
+	    assert false : "started a room without its deadline";
+	}
+	catch (ExecutionException e) {
+	    assert e.getCause() instanceof RejectedExecutionException;
+	}
+	assert rooms.getRoom(a) == null;
+	assert rooms.getActiveCount() == 0;
+    }
+
+    @Test(groups = {"basic"}) public void testNotPlaying() throws Exception {
+	RoomManager rooms =
+	    new RoomManager(pipeline, scheduler, executor, 60 * 1000, 2, 2);
+	ClientInfo a = new ClientInfo("a");
+	rooms.join(a);
+
+	try {
+	    rooms.submit(a, new WordList());
+	    assert false : "submitted without a room";
+	}
+	catch (IllegalStateException e) {
+	    // Expected
+	}
+	boolean left = rooms.leave(a);
+	assert left;
+    }
+
+    @Test(groups = {"basic"}) public void testFlightRecorderEvents()
+	throws Exception {
+	RoomManager rooms =
+	    new RoomManager(pipeline, scheduler, executor, 60 * 1000, 2, 2);
+	Recording recording = new Recording(
+	    Configuration.create(Paths.get("res", "boggle.jfc")));
+	recording.start();
+
+	ClientInfo a = new ClientInfo("a");
+	ClientInfo b = new ClientInfo("b");
+	Future<BoggleBoard> board = rooms.join(a);
+	rooms.join(b);
+	board.get(10, TimeUnit.SECONDS);
+	GameRoom room = rooms.getRoom(a);
+	WordList words = allWords(room.getSolution());
+	rooms.submit(a, words);
+	rooms.submit(b, new WordList()).get(10, TimeUnit.SECONDS);
+
+	// The round's event is recorded just before the room is forgotten
+	long deadline = System.currentTimeMillis() + 10 * 1000;
+	while (rooms.getFinishedCount() == 0 &&
+	       System.currentTimeMillis() < deadline) {
+	    Thread.sleep(10);
+	}
+	recording.stop();
+	File file = File.createTempFile("boggle", ".jfr");
+	file.deleteOnExit();
+	recording.dump(file.toPath());
+	recording.close();
+
+	Map<String, RecordedEvent> events = new HashMap<String, RecordedEvent>();
+	for (RecordedEvent e : RecordingFile.readAllEvents(file.toPath())) {
+	    if (e.getInt("room") == room.getId()) {
+		events.put(e.getEventType().getName(), e);
+	    }
+	}
+	assert events.keySet().equals(new HashSet<String>(Arrays.asList(
+	    "boggle.RoomStart", "boggle.Round", "boggle.Scoring",
+	    "boggle.Encode"))) : events.keySet();
+
+	RecordedEvent start = events.get("boggle.RoomStart");
+	assert start.getInt("players") == 2;
+	assert start.getInt("boardWords") == room.getSolution().size();
+
+	RecordedEvent round = events.get("boggle.Round");
+	assert round.getInt("submittedWords") == words.size();
+	assert round.getInt("cutOff") == 0;
+	assert round.getBoolean("scored");
+
+	RecordedEvent scoring = events.get("boggle.Scoring");
+	assert scoring.getInt("validWords") == words.size();
+	assert scoring.getInt("uniqueWords") == words.size();
+	assert events.get("boggle.Encode").getLong("bytes") > 0;
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.*;
+import java.util.*;
+import org.testng.annotations.*;
+
+/**
+ * Round trips of the objects clients and servers exchange, through Java
+ * serialization as RMI uses it.
+ */
+public class TestSerialization {
+
+    /** Common short words, so most random boards have at least one */
+    private static final Dawg dictionary = TestDictionaries.SHORT_WORDS;
+
+    /** Helper method that serializes an object into bytes */
+    private static byte[] serialize(Object o) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(o);
+	out.close();
+	return bytes.toByteArray();
+    }
+
+    /** Helper method that reads back an object serialized into bytes */
+    private static Object deserialize(byte[] bytes) throws Exception {
+	return new ObjectInputStream(
+	    new ByteArrayInputStream(bytes)).readObject();
+    }
+
+    /** Helper method that serializes an object and reads it back */
+    private static Object copy(Object o) throws Exception {
+	return deserialize(serialize(o));
+    }
+
+    /** Helper method that makes a list of words */
+    private static WordList words(String... words) {
+	WordList list = new WordList();
+	for (String w : words) {
+	    list.add(w);
+	}
+	return list;
+    }
+
+    /** Helper method that checks two word lists hold the same words */
+    private static void assertSameWords(WordList a, WordList b) {
+	if (a == null || b == null) {
+	    assert a == b;
+	    return;
+	}
+	assert a.size() == b.size();
+	for (String word : a) {
+	    assert b.contains(word) : word;
+	}
+    }
+
+    /** Helper method that checks two clients' information is the same */
+    private static void assertSameClient(ClientInfo a, ClientInfo b) {
+	assert a.getName().equals(b.getName());
+	assert a.getScore() == b.getScore();
+	assertSameWords(a.getWords(), b.getWords());
+	assertSameWords(a.getFilteredWords(), b.getFilteredWords());
+	assertSameWords(a.getRejectedWords(), b.getRejectedWords());
+    }
+
+    /** Helper method that makes a room's scored results */
+    private static GameResults results(int players) {
+	BoggleSolution solution =
+	    new BoggleSolver(dictionary).solve(new BoardGenerator(3).generate(4));
+	List<ClientInfo> room = new ArrayList<ClientInfo>();
+	for (int p = 0; p < players; p++) {
+	    ClientInfo info = new ClientInfo("player" + p);
+	    info.setPlaying();
+	    info.setWords(words("ate", "tea", "xyzzy" + p, "ten"));
+	    room.add(info);
+	}
+	GameResults results = new GameResults();
+	results.computeResults(room, solution);
+	return results;
+    }
+
+    @Test(groups = {"basic"}) public void testBoard() throws Exception {
+	for (int size : new int[] { 1, 4, 10, BoggleBoard.MAX_SIZE }) {
+	    BoggleBoard b1 = new BoardGenerator(size).generate(size);
+	    BoggleBoard b2 = (BoggleBoard) copy(b1);
+
+	    assert b2.size() == size;
+	    for (int cell = 0; cell < size * size; cell++) {
+		assert b2.getLetterCode(cell) == b1.getLetterCode(cell);
+	    }
+	    assert b2.getWordHashes() == null;
+	}
+
+	// A solved board carries its words to the client
+	BoggleSolution solution =
+	    new BoggleSolver(dictionary).solve(new BoardGenerator(3).generate(4));
+	BoggleBoard board = solution.getBoard();
+	board.setWordHashes(WordHashes.of(solution.getWords()));
+	WordHashes words = ((BoggleBoard) copy(board)).getWordHashes();
+	assert words.size() == solution.size();
+	for (String word : solution.getWords()) {
+	    assert words.contains(word) : word;
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testClientInfo() throws Exception {
+	// A client that has just joined has no word lists yet
+	ClientInfo waiting = new ClientInfo("alice");
+	ClientInfo read = (ClientInfo) copy(waiting);
+	assert read.isWaiting();
+	assertSameClient(read, waiting);
+
+	ClientInfo finished = new ClientInfo("bob");
+	finished.setPlaying();
+	finished.setWords(words("tea", "ten", "xyzzy"));
+	finished.setFilteredWords(words("tea"));
+	finished.setRejectedWords(words("xyzzy"));
+	finished.setScore(1);
+	read = (ClientInfo) copy(finished);
+	assert read.getState() == ClientInfo.State.FINISHED;
+	assertSameClient(read, finished);
+    }
+
+    @Test(groups = {"basic"}) public void testResults() throws Exception {
+	for (int players : new int[] { 0, 1, 2, 50 }) {
+	    GameResults results = results(players);
+	    GameResults plain = (GameResults) copy(results);
+	    results.encode();
+	    GameResults encoded = (GameResults) copy(results);
+
+	    for (GameResults r : Arrays.asList(plain, encoded)) {
+		assert r.getClientNames().equals(results.getClientNames());
+		for (String name : results.getClientNames()) {
+		    assertSameClient(r.getClientResult(name),
+				     results.getClientResult(name));
+		}
+	    }
+
+	    // Results read back can be sent on again
+	    assert ((GameResults) copy(encoded)).getClientNames()
+		.equals(results.getClientNames());
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testSummary() throws Exception {
+	GameResults results = results(3);
+	results.encode();
+	GameResults summary = (GameResults) copy(results.summaryFor("player1"));
+
+	assertSameClient(summary.getClientResult("player1"),
+			 results.getClientResult("player1"));
+	ClientInfo other = summary.getClientResult("player2");
+	assert other.getScore() == results.getClientResult("player2").getScore();
+	assert other.getWords().size() == 0;
+    }
+
+    /**
+     * Test that a reader refuses a form version it doesn't know
+     */
+    @Test(groups = {"basic"},
+	  expectedExceptions = {InvalidObjectException.class})
+	public void testUnknownVersion() throws Exception {
+	byte[] bytes = serialize(new BoardGenerator(1).generate(4));
+
+	// The board's data is a block of 19 bytes: version, size, 16 cells,
+	// and the flag saying it has no word hashes
+	for (int i = 0; i + 3 < bytes.length; i++) {
+	    if (bytes[i] == 0x77 && bytes[i + 1] == 19 &&
+		bytes[i + 2] == BoggleBoard.SERIAL_VERSION && bytes[i + 3] == 4) {
+		bytes[i + 2] = BoggleBoard.SERIAL_VERSION + 1;
+		deserialize(bytes);
+		return;
+	    }
+	}
+	assert false : "board data not found";
+    }
+
+    /**
+     * Test that a word list refuses a form version it doesn't know
+     */
+    @Test(groups = {"basic"},
+	  expectedExceptions = {InvalidObjectException.class})
+	public void testUnknownListVersion() throws Exception {
+	WordList list = words("cat", "dog");
+	byte[] bytes = serialize(list);
+
+	// The list's data is a block of the version, then its compact form
+	ByteArrayOutputStream form = new ByteArrayOutputStream();
+	list.write(new DataOutputStream(form), null);
+	int length = 1 + form.size();
+	for (int i = 0; i + 2 < bytes.length; i++) {
+	    if (bytes[i] == 0x77 && bytes[i + 1] == length &&
+		bytes[i + 2] == WordList.SERIAL_VERSION) {
+		bytes[i + 2] = WordList.SERIAL_VERSION + 1;
+		deserialize(bytes);
+		return;
+	    }
+	}
+	assert false : "list data not found";
+    }
+}
@@ -0,0 +1,67 @@
+import java.io.*;
+import java.util.*;
+import org.testng.annotations.*;
+
+public class TestWordHashes {
+
+    /** Helper method that makes every three-letter string */
+    private static List<String> threeLetters() {
+	List<String> words = new ArrayList<String>();
+	for (char a = 'a'; a <= 'z'; a++) {
+	    for (char b = 'a'; b <= 'z'; b++) {
+		for (char c = 'a'; c <= 'z'; c++) {
+		    words.add("" + a + b + c);
+		}
+	    }
+	}
+	return words;
+    }
+
+    @Test(groups = {"basic"}) public void testContains() {
+	// A board's worth of words, and the rest as words not on the board
+	List<String> all = threeLetters();
+	Collections.shuffle(all, new Random(7));
+	List<String> board = all.subList(0, 500);
+	WordHashes words = WordHashes.of(board);
+
+	assert words.size() == board.size();
+	for (String w : board) {
+	    assert words.contains(w) : w;
+	}
+	int falseMatches = 0;
+	for (String w : all.subList(board.size(), all.size())) {
+	    if (words.contains(w)) {
+		falseMatches++;
+	    }
+	}
+	assert falseMatches == 0 : falseMatches;
+	assert !WordHashes.of(new ArrayList<String>()).contains("ate");
+    }
+
+    @Test(groups = {"basic"}) public void testRoundTrip() throws Exception {
+	List<String> board = threeLetters().subList(0, 300);
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	WordHashes.of(board).write(new DataOutputStream(bytes));
+
+	// Two bytes of count, then four bytes per word
+	assert bytes.size() == 2 + 4 * board.size();
+	WordHashes read = WordHashes.read(new DataInputStream(
+	    new ByteArrayInputStream(bytes.toByteArray())));
+	assert read.size() == board.size();
+	for (String w : board) {
+	    assert read.contains(w) : w;
+	}
+    }
+
+    @Test(groups = {"basic"},
+	  expectedExceptions = {StreamCorruptedException.class})
+	public void testOutOfOrder() throws Exception {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	DataOutputStream out = new DataOutputStream(bytes);
+	out.writeByte(2);
+	out.writeInt(5);
+	out.writeInt(4);
+	WordHashes.read(new DataInputStream(
+	    new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -1,4 +1,5 @@
 import java.io.*;
+import java.util.*;
 import org.testng.annotations.*;
 
 public class TestWordList {
@@ -33,6 +34,67 @@ public class TestWordList {
 	assert w1.contains("c");
     }
     
+    /**
+     * Helper method that writes a list in its compact form, and reads it back
+     */
+    private static WordList copy(WordList list, Dawg writer, Dawg reader)
+	throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	list.write(new DataOutputStream(bytes), writer);
+	return WordList.read(new DataInputStream(
+	    new ByteArrayInputStream(bytes.toByteArray())), reader);
+    }
+
+    /**
+     * Helper method that checks two lists hold the same words
+     */
+    private static void assertSameWords(WordList a, WordList b) {
+	assert a.size() == b.size();
+	for (String word : a) {
+	    assert b.contains(word) : word;
+	}
+    }
+
+    @Test(groups = {"basic"}) public void testCompactForm() throws IOException {
+	Dawg dictionary = Dawg.fromWords(Arrays.asList(
+	    "tap", "taps", "top", "tops", "stop", "stops", "cat", "cats"));
+	WordList w1 = new WordList();
+	for (String word : new String[] {"taps", "stop", "cat", "xyzzy",
+					 "tapestry", "caf\u00e9"}) {
+	    w1.add(word);
+	}
+
+	// Front-coded, with ordinals, and through Java serialization
+	assertSameWords(copy(w1, null, null), w1);
+	assertSameWords(copy(w1, dictionary, dictionary), w1);
+	assertSameWords(copy(new WordList(), dictionary, dictionary),
+			new WordList());
+
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ObjectOutputStream out = new ObjectOutputStream(bytes);
+	out.writeObject(w1);
+	out.close();
+	Object read;
+	try {
+	    read = new ObjectInputStream(
+		new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	}
+	catch (ClassNotFoundException e) {
+	    throw new AssertionError(e);
+	}
+	assertSameWords((WordList) read, w1);
+    }
+
+    @Test(groups = {"basic"},
+	  expectedExceptions = {StreamCorruptedException.class})
+	public void testOtherDictionary() throws IOException {
+	WordList w1 = new WordList();
+	w1.add("cat");
+
+	copy(w1, Dawg.fromWords(Arrays.asList("cat", "dog")),
+	     Dawg.fromWords(Arrays.asList("cat", "cow")));
+    }
+
     @Test(groups = {"basic", "fileio"}) public void testFileCtor() {
 	try {
 	    WordList w2 = new WordList("/Users/joeyhong/java/advlabs/boggle/res/test.txt");